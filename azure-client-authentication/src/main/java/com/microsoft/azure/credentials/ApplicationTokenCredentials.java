@@ -13,6 +13,7 @@ import com.microsoft.aad.adal4j.AuthenticationException;
 import com.microsoft.aad.adal4j.AuthenticationResult;
 import com.microsoft.aad.adal4j.ClientCredential;
 import com.microsoft.azure.AzureEnvironment;
+import com.microsoft.rest.metrics.RuntimeEvents;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -136,7 +137,11 @@ public class ApplicationTokenCredentials extends AzureTokenCredentials {
     public synchronized String getToken(String resource) throws IOException {
         AuthenticationResult authenticationResult = tokens.get(resource);
         if (authenticationResult == null || authenticationResult.getExpiresOnDate().before(new Date())) {
+            long startNs = System.nanoTime();
             authenticationResult = acquireAccessToken(resource);
+            RuntimeEvents.tokenAcquired(resource, System.nanoTime() - startNs);
+        } else {
+            RuntimeEvents.tokenCacheHit(resource);
         }
         tokens.put(resource, authenticationResult);
         return authenticationResult.getAccessToken();
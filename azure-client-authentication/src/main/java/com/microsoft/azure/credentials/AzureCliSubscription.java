@@ -9,6 +9,7 @@ package com.microsoft.azure.credentials;
 import com.microsoft.aad.adal4j.AuthenticationResult;
 import com.microsoft.azure.AzureEnvironment;
 import com.microsoft.azure.management.apigeneration.Beta;
+import com.microsoft.rest.metrics.RuntimeEvents;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -111,6 +112,7 @@ final class AzureCliSubscription {
                     }
                     // Exact match and token hasn't expired
                     if (token != null && !token.expired()) {
+                        RuntimeEvents.tokenCacheHit(resource);
                         return token.accessToken();
                     }
                     // If found then refresh
@@ -121,10 +123,12 @@ final class AzureCliSubscription {
                         shouldRefresh = token.isMRRT();
                     }
                     if (shouldRefresh) {
+                        long startNs = System.nanoTime();
                         AuthenticationResult authenticationResult = acquireAccessTokenFromRefreshToken(resource, token.refreshToken(), token.isMRRT());
                         if (authenticationResult == null) {
                             return null;
                         }
+                        RuntimeEvents.tokenAcquired(resource, System.nanoTime() - startNs);
                         try {
                             AzureCliToken newToken = token.clone().withResource(resource).withAuthenticationResult(authenticationResult);
                             userTokens.put(resource, newToken);
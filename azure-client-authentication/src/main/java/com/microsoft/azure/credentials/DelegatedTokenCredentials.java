@@ -13,6 +13,7 @@ import com.microsoft.aad.adal4j.AuthenticationResult;
 import com.microsoft.aad.adal4j.ClientCredential;
 import com.microsoft.azure.management.apigeneration.Beta;
 import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
+import com.microsoft.rest.metrics.RuntimeEvents;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -134,8 +135,10 @@ public class DelegatedTokenCredentials extends AzureTokenCredentials {
         AuthenticationResult authenticationResult = tokens.get(resource);
         // Return if found and not expired
         if (authenticationResult != null && authenticationResult.getExpiresOnDate().after(new Date())) {
+            RuntimeEvents.tokenCacheHit(resource);
             return authenticationResult.getAccessToken();
         }
+        long startNs = System.nanoTime();
         // If found then refresh
         boolean shouldRefresh = authenticationResult != null;
         // If not found for the resource, but is MRRT then also refresh
@@ -151,6 +154,7 @@ public class DelegatedTokenCredentials extends AzureTokenCredentials {
         if (authenticationResult == null) {
             authenticationResult = acquireNewAccessToken(resource);
         }
+        RuntimeEvents.tokenAcquired(resource, System.nanoTime() - startNs);
         tokens.put(resource, authenticationResult);
         return authenticationResult.getAccessToken();
     }
@@ -10,6 +10,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.microsoft.azure.AzureEnvironment;
 import com.microsoft.azure.management.apigeneration.Beta;
 import com.microsoft.azure.serializer.AzureJacksonAdapter;
+import com.microsoft.rest.metrics.RuntimeEvents;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -109,6 +110,7 @@ public class MSICredentials extends AzureTokenCredentials {
 
     @Override
     public String getToken(String resource) throws IOException {
+        long startNs = System.nanoTime();
         URL url = new URL(String.format("http://localhost:%d/oauth2/token", this.msiPort));
         String postData = String.format("resource=%s", this.resource);
         if (this.objectId != null) {
@@ -140,6 +142,7 @@ public class MSICredentials extends AzureTokenCredentials {
             String result = reader.readLine();
 
             MSIToken msiToken = adapter.deserialize(result, MSIToken.class);
+            RuntimeEvents.tokenAcquired(resource, System.nanoTime() - startNs);
             return msiToken.accessToken;
         } catch (Exception e) {
             e.printStackTrace();
@@ -9,6 +9,7 @@ package com.microsoft.azure.credentials;
 import com.microsoft.aad.adal4j.AuthenticationContext;
 import com.microsoft.aad.adal4j.AuthenticationResult;
 import com.microsoft.azure.AzureEnvironment;
+import com.microsoft.rest.metrics.RuntimeEvents;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -76,8 +77,10 @@ public class UserTokenCredentials extends AzureTokenCredentials {
         AuthenticationResult authenticationResult = tokens.get(resource);
         // Return if found and not expired
         if (authenticationResult != null && authenticationResult.getExpiresOnDate().after(new Date())) {
+            RuntimeEvents.tokenCacheHit(resource);
             return authenticationResult.getAccessToken();
         }
+        long startNs = System.nanoTime();
         // If found then refresh
         boolean shouldRefresh = authenticationResult != null;
         // If not found for the resource, but is MRRT then also refresh
@@ -93,6 +96,7 @@ public class UserTokenCredentials extends AzureTokenCredentials {
         if (authenticationResult == null) {
             authenticationResult = acquireNewAccessToken(resource);
         }
+        RuntimeEvents.tokenAcquired(resource, System.nanoTime() - startNs);
         tokens.put(resource, authenticationResult);
         return authenticationResult.getAccessToken();
     }
@@ -8,11 +8,16 @@ package com.microsoft.azure.credentials;
 
 import com.microsoft.aad.adal4j.AuthenticationResult;
 import com.microsoft.azure.AzureEnvironment;
+import com.microsoft.rest.metrics.RuntimeEventListener;
+import com.microsoft.rest.metrics.RuntimeEvents;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 public class UserTokenCredentialsTests {
     private static MockUserTokenCredentials credentials = new MockUserTokenCredentials(
@@ -31,6 +36,35 @@ public class UserTokenCredentialsTests {
         Assert.assertEquals("token2", credentials.getToken((String)null));
     }
 
+    @Test
+    public void reportsCacheHits() throws Exception {
+        final List<String> events = new ArrayList<>();
+        RuntimeEvents.withListener(new RuntimeEventListener() {
+            @Override
+            public void onTokenAcquired(String resource, long durationNanos) {
+                events.add("acquired " + resource);
+            }
+
+            @Override
+            public void onTokenCacheHit(String resource) {
+                events.add("hit " + resource);
+            }
+        });
+        try {
+            UserTokenCredentials cached = new UserTokenCredentials("clientId", "domain", "username", "password", AzureEnvironment.AZURE) {
+                @Override
+                AuthenticationResult acquireNewAccessToken(String resource) throws IOException {
+                    return new AuthenticationResult(null, "token", "refresh", 3600, null, null, false);
+                }
+            };
+            Assert.assertEquals("token", cached.getToken("resource"));
+            Assert.assertEquals("token", cached.getToken("resource"));
+        } finally {
+            RuntimeEvents.withListener(null);
+        }
+        Assert.assertEquals(Arrays.asList("acquired resource", "hit resource"), events);
+    }
+
     public static class MockUserTokenCredentials extends UserTokenCredentials {
         private AuthenticationResult authenticationResult;
 
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default {@link PollingPolicy}: polls soon after the operation starts,
+ * then backs off geometrically up to a maximum delay. It learns the typical
+ * duration of the operations by HTTP method and resource type from the ones
+ * that succeeded, and waits until an operation is about as old as its
+ * typical duration before polling it, backing off again from the initial
+ * delay from then on, so that short operations complete sooner and long ones
+ * are polled less.
+ */
+public final class AdaptivePollingPolicy extends PollingPolicy {
+    /** The default delay before the first poll, in milliseconds. */
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 1000;
+    /** The default factor applied to the delay after each poll. */
+    public static final double DEFAULT_MULTIPLIER = 2;
+    /** The default maximum delay, in milliseconds. */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = AzureAsyncOperation.DEFAULT_DELAY * 1000;
+    /** The weight of the last duration in the typical duration of its operation. */
+    private static final double LEARNING_RATE = 0.2;
+
+    /** The delay before the first poll, in milliseconds. */
+    private final long initialDelayMillis;
+    /** The factor applied to the delay after each poll. */
+    private final double multiplier;
+    /** The maximum delay, in milliseconds. */
+    private final long maxDelayMillis;
+    /** The typical duration in milliseconds of the operations, by HTTP method and resource type. */
+    private final ConcurrentMap<String, AtomicLong> typicalDurations;
+
+    /**
+     * Initializes an instance of {@link AdaptivePollingPolicy} class with the
+     * default delays, from 1 second doubling up to 30 seconds.
+     */
+    public AdaptivePollingPolicy() {
+        this(DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MULTIPLIER, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Initializes an instance of {@link AdaptivePollingPolicy} class.
+     *
+     * @param initialDelayMillis the delay before the first poll, in milliseconds
+     * @param multiplier the factor applied to the delay after each poll
+     * @param maxDelayMillis the maximum delay, in milliseconds
+     */
+    public AdaptivePollingPolicy(long initialDelayMillis, double multiplier, long maxDelayMillis) {
+        if (initialDelayMillis < 0) {
+            throw new IllegalArgumentException("initialDelayMillis < 0: " + initialDelayMillis);
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier < 1: " + multiplier);
+        }
+        if (maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("maxDelayMillis < initialDelayMillis: " + maxDelayMillis);
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.multiplier = multiplier;
+        this.maxDelayMillis = maxDelayMillis;
+        this.typicalDurations = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public long delayInMilliseconds(PollingState<?> pollingState) {
+        long typical = typicalDurationInMilliseconds(pollingState);
+        if (typical < 0) {
+            return backoff(Math.max(pollingState.pollCount() - 1, 0));
+        }
+        // No need to poll before the operation is as old as the ones like it were when they completed
+        long remaining = typical - pollingState.elapsedInMilliseconds();
+        if (remaining > 0) {
+            return Math.min(remaining, maxDelayMillis);
+        }
+        // From then on, back off from the initial delay as if the polls had started at the typical age
+        long since = -remaining;
+        int attempt = 0;
+        long delay = backoff(0);
+        while (multiplier > 1 && delay > 0 && delay < maxDelayMillis && since >= delay) {
+            since -= delay;
+            attempt++;
+            delay = backoff(attempt);
+        }
+        return delay;
+    }
+
+    @Override
+    public void onCompleted(PollingState<?> pollingState) {
+        if (!pollingState.isStatusSucceeded()) {
+            return;
+        }
+        long duration = pollingState.durationInMilliseconds();
+        String key = key(pollingState);
+        AtomicLong typical = typicalDurations.get(key);
+        if (typical == null) {
+            AtomicLong first = new AtomicLong(duration);
+            typical = typicalDurations.putIfAbsent(key, first);
+            if (typical == null) {
+                return;
+            }
+        }
+        for (;;) {
+            long current = typical.get();
+            long updated = Math.round(current + LEARNING_RATE * (duration - current));
+            if (typical.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the typical duration of the operations like one, learned from the
+     * ones that succeeded.
+     *
+     * @param pollingState the polling state of the operation
+     * @return the typical duration in milliseconds, or -1 if no operation like it succeeded yet
+     */
+    public long typicalDurationInMilliseconds(PollingState<?> pollingState) {
+        AtomicLong typical = typicalDurations.get(key(pollingState));
+        return typical != null ? typical.get() : -1;
+    }
+
+    private long backoff(int attempt) {
+        return (long) Math.min(initialDelayMillis * Math.pow(multiplier, attempt), maxDelayMillis);
+    }
+
+    private static String key(PollingState<?> pollingState) {
+        return pollingState.initialHttpMethod() + " " + pollingState.resourceType();
+    }
+}
@@ -8,6 +8,7 @@ package com.microsoft.azure;
 
 import com.microsoft.rest.ServiceResponse;
 import com.microsoft.rest.ServiceResponseWithHeaders;
+import com.microsoft.rest.metrics.RuntimeEvents;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 import retrofit2.http.GET;
@@ -16,6 +17,7 @@ import retrofit2.http.Url;
 import rx.Observable;
 import rx.Single;
 import rx.exceptions.Exceptions;
+import rx.functions.Action1;
 import rx.functions.Func1;
 import rx.schedulers.Schedulers;
 
@@ -32,10 +34,17 @@ import java.util.concurrent.TimeUnit;
  */
 public final class AzureClient extends AzureServiceClient {
     /**
-     * The interval time between two long running operation polls. Default is 30 seconds.
+     * The interval time between two long running operation polls. Default is to let
+     * the {@link #pollingPolicy} decide.
      */
     private int longRunningOperationRetryTimeout = -1;
 
+    /**
+     * The policy deciding the interval between two long running operation polls
+     * when neither the service nor {@link #longRunningOperationRetryTimeout} sets it.
+     */
+    private PollingPolicy pollingPolicy = new AdaptivePollingPolicy();
+
     /**
      * The user agent from the service client that owns this Azure Client.
      */
@@ -61,7 +70,7 @@ public final class AzureClient extends AzureServiceClient {
     }
 
     /**
-     * Sets the interval time between two long running operation polls. Default is 30 seconds.
+     * Sets the interval time between two long running operation polls, instead of the polling policy.
      * Set to any negative value to let AzureClient ignore this setting.
      *
      * @param longRunningOperationRetryTimeout the time in seconds. Set to any negative value to let AzureClient ignore this setting.
@@ -73,6 +82,29 @@ public final class AzureClient extends AzureServiceClient {
         this.longRunningOperationRetryTimeout = longRunningOperationRetryTimeout;
     }
 
+    /**
+     * Gets the policy deciding the interval between two long running operation
+     * polls when the service gives no Retry-After header and no interval is set
+     * with {@link #setLongRunningOperationRetryTimeout(int)}.
+     *
+     * @return the polling policy, an {@link AdaptivePollingPolicy} by default.
+     */
+    public PollingPolicy pollingPolicy() {
+        return pollingPolicy;
+    }
+
+    /**
+     * Sets the policy deciding the interval between two long running operation polls.
+     *
+     * @param pollingPolicy the polling policy.
+     */
+    public void setPollingPolicy(PollingPolicy pollingPolicy) {
+        if (pollingPolicy == null) {
+            throw new NullPointerException("pollingPolicy == null");
+        }
+        this.pollingPolicy = pollingPolicy;
+    }
+
     /**
      * Handles an initial response from a PUT or PATCH operation response by polling
      * the status of the operation until the long running operation terminates.
@@ -196,7 +228,7 @@ public final class AzureClient extends AzureServiceClient {
             }
             return Single.just(pollingState);
         }
-        return putOrPatchPollingDispatcher(pollingState, pollingState.putOrPatchResourceUri())
+        return withPollEvent(putOrPatchPollingDispatcher(pollingState, pollingState.putOrPatchResourceUri()), pollingState)
                 .map(new Func1<PollingState<T>, PollingState<T>>() {
                     @Override
                     public PollingState<T> call(PollingState<T> tPollingState) {
@@ -221,7 +253,9 @@ public final class AzureClient extends AzureServiceClient {
      * when subscribed to it, a series of polling will be performed and emits each polling state to downstream.
      * Polling will completes when the operation finish with success, failure or exception.
      *
-     * Note: this method implicitly runs the polling on rx IO scheduler.
+     * Note: the delays between the polls are waited on the timer scheduler of
+     * the REST client, which only tells when a poll is due; the polls run on
+     * the I/O scheduler, so that they do not hold the threads of the timer.
      *
      * @param pollingState the current polling state
      * @param <T> the type of the resource
@@ -235,7 +269,8 @@ public final class AzureClient extends AzureServiceClient {
                 .flatMap(new Func1<Boolean, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Boolean aBoolean) {
-                        return pollPutOrPatchSingleAsync(pollingState, resourceType).toObservable();
+                        // the polls run on the I/O scheduler, never on the threads of the timer
+                        return pollPutOrPatchSingleAsync(pollingState, resourceType).toObservable().subscribeOn(Schedulers.io());
                     }
                 }).repeatWhen(new Func1<Observable<? extends Void>, Observable<?>>() {
                     @Override
@@ -243,15 +278,19 @@ public final class AzureClient extends AzureServiceClient {
                         return observable.flatMap(new Func1<Void, Observable<Long>>() {
                             @Override
                             public Observable<Long> call(Void aVoid) {
-                                return Observable.timer(pollingState.delayInMilliseconds(),
-                                        TimeUnit.MILLISECONDS, Schedulers.immediate());
+                                return Observable.timer(pollingState.delayInMilliseconds(pollingPolicy),
+                                        TimeUnit.MILLISECONDS, restClient().timerScheduler());
                             }
                         });
                     }
                 }).takeUntil(new Func1<PollingState<T>, Boolean>() {
                     @Override
                     public Boolean call(PollingState<T> tPollingState) {
-                        return pollingState.isStatusTerminal();
+                        if (pollingState.isStatusTerminal()) {
+                            pollingPolicy.onCompleted(pollingState);
+                            return true;
+                        }
+                        return false;
                     }
                 });
     }
@@ -403,7 +442,7 @@ public final class AzureClient extends AzureServiceClient {
             }
             return Single.just(pollingState);
         }
-        return postOrDeletePollingDispatcher(pollingState)
+        return withPollEvent(postOrDeletePollingDispatcher(pollingState), pollingState)
                 .map(new Func1<PollingState<T>, PollingState<T>>() {
                     @Override
                     public PollingState<T> call(PollingState<T> tPollingState) {
@@ -440,7 +479,8 @@ public final class AzureClient extends AzureServiceClient {
                 .flatMap(new Func1<Boolean, Observable<PollingState<T>>>() {
                     @Override
                     public Observable<PollingState<T>> call(Boolean aBoolean) {
-                        return pollPostOrDeleteSingleAsync(pollingState, resourceType).toObservable();
+                        // the polls run on the I/O scheduler, never on the threads of the timer
+                        return pollPostOrDeleteSingleAsync(pollingState, resourceType).toObservable().subscribeOn(Schedulers.io());
                     }
                 }).repeatWhen(new Func1<Observable<? extends Void>, Observable<?>>() {
                     @Override
@@ -448,15 +488,19 @@ public final class AzureClient extends AzureServiceClient {
                         return observable.flatMap(new Func1<Void, Observable<Long>>() {
                             @Override
                             public Observable<Long> call(Void aVoid) {
-                                return Observable.timer(pollingState.delayInMilliseconds(),
-                                        TimeUnit.MILLISECONDS, Schedulers.immediate());
+                                return Observable.timer(pollingState.delayInMilliseconds(pollingPolicy),
+                                        TimeUnit.MILLISECONDS, restClient().timerScheduler());
                             }
                         });
                     }
                 }).takeUntil(new Func1<PollingState<T>, Boolean>() {
                     @Override
                     public Boolean call(PollingState<T> tPollingState) {
-                        return pollingState.isStatusTerminal();
+                        if (pollingState.isStatusTerminal()) {
+                            pollingPolicy.onCompleted(pollingState);
+                            return true;
+                        }
+                        return false;
                     }
                 });
     }
@@ -689,7 +733,7 @@ public final class AzureClient extends AzureServiceClient {
         } catch (MalformedURLException e) {
             return Observable.error(e);
         }
-        AsyncService service = restClient().retrofit().create(AsyncService.class);
+        AsyncService service = restClient().service(AsyncService.class);
         if (loggingContext != null && !loggingContext.endsWith(" (poll)")) {
             loggingContext += " (poll)";
         }
@@ -734,6 +778,36 @@ public final class AzureClient extends AzureServiceClient {
         return null;
     }
 
+    /**
+     * Emits a poll of a long running operation as a runtime event once it completes.
+     *
+     * @param poll the poll
+     * @param pollingState the polling state before the poll
+     * @param <T> the type of the resource
+     * @return the poll emitting the event
+     */
+    private <T> Observable<PollingState<T>> withPollEvent(Observable<PollingState<T>> poll, PollingState<T> pollingState) {
+        if (!RuntimeEvents.enabled()) {
+            return poll;
+        }
+        final String previousStatus = pollingState.status();
+        final long startNs = System.nanoTime();
+        final String url;
+        if (pollingState.azureAsyncOperationHeaderLink() != null) {
+            url = pollingState.azureAsyncOperationHeaderLink();
+        } else if (pollingState.locationHeaderLink() != null) {
+            url = pollingState.locationHeaderLink();
+        } else {
+            url = pollingState.putOrPatchResourceUri();
+        }
+        return poll.doOnNext(new Action1<PollingState<T>>() {
+            @Override
+            public void call(PollingState<T> polled) {
+                RuntimeEvents.poll(url, previousStatus, polled.status(), System.nanoTime() - startNs);
+            }
+        });
+    }
+
     private <T> Observable<PollingState<T>> putOrPatchPollingDispatcher(PollingState<T> pollingState, String url) {
         if (pollingState.azureAsyncOperationHeaderLink() != null) {
             return updateStateFromAzureAsyncOperationHeaderOnPutAsync(pollingState);
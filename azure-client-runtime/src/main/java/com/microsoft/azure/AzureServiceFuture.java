@@ -13,6 +13,7 @@ import rx.Observable;
 import rx.Subscriber;
 import rx.functions.Func1;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,7 +28,9 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
     }
 
     /**
-     * Creates a ServiceCall from a paging operation.
+     * Creates a ServiceCall from a paging operation. The pages are fetched one
+     * at a time, each after the callback handled the previous one, and the
+     * future completes with the items of all the pages loaded.
      *
      * @param first the observable to the first page
      * @param next the observable to poll subsequent pages
@@ -37,10 +40,8 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
      */
     public static <E> ServiceFuture<List<E>> fromPageResponse(Observable<ServiceResponse<Page<E>>> first, final Func1<String, Observable<ServiceResponse<Page<E>>>> next, final ListOperationCallback<E> callback) {
         final AzureServiceFuture<List<E>> serviceCall = new AzureServiceFuture<>();
-        final PagingSubscriber<E> subscriber = new PagingSubscriber<>(serviceCall, next, callback);
-        serviceCall.setSubscription(first
-            .single()
-            .subscribe(subscriber));
+        final PagingSubscriber<E> subscriber = new PagingSubscriber<>(serviceCall, callback);
+        serviceCall.setSubscription(PagedObservable.pages(first, next).subscribe(subscriber));
         return serviceCall;
     }
 
@@ -55,45 +56,49 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
      * @return the future based ServiceCall
      */
     public static <E, V> ServiceFuture<List<E>> fromHeaderPageResponse(Observable<ServiceResponseWithHeaders<Page<E>, V>> first, final Func1<String, Observable<ServiceResponseWithHeaders<Page<E>, V>>> next, final ListOperationCallback<E> callback) {
-        final AzureServiceFuture<List<E>> serviceCall = new AzureServiceFuture<>();
-        final PagingSubscriber<E> subscriber = new PagingSubscriber<>(serviceCall, new Func1<String, Observable<ServiceResponse<Page<E>>>>() {
+        final Func1<ServiceResponseWithHeaders<Page<E>, V>, ServiceResponse<Page<E>>> withoutHeaders =
+                new Func1<ServiceResponseWithHeaders<Page<E>, V>, ServiceResponse<Page<E>>>() {
+                    @Override
+                    public ServiceResponse<Page<E>> call(ServiceResponseWithHeaders<Page<E>, V> pageVServiceResponseWithHeaders) {
+                        return pageVServiceResponseWithHeaders;
+                    }
+                };
+        return fromPageResponse(first.map(withoutHeaders), new Func1<String, Observable<ServiceResponse<Page<E>>>>() {
             @Override
             public Observable<ServiceResponse<Page<E>>> call(String s) {
-                return next.call(s)
-                        .map(new Func1<ServiceResponseWithHeaders<Page<E>, V>, ServiceResponse<Page<E>>>() {
-                            @Override
-                            public ServiceResponse<Page<E>> call(ServiceResponseWithHeaders<Page<E>, V> pageVServiceResponseWithHeaders) {
-                                return pageVServiceResponseWithHeaders;
-                            }
-                        });
+                return next.call(s).map(withoutHeaders);
             }
         }, callback);
-        serviceCall.setSubscription(first
-                .single()
-                .subscribe(subscriber));
-        return serviceCall;
     }
 
     /**
-     * The subscriber that handles user callback and automatically subscribes to the next page.
+     * The subscriber that handles user callback and requests the next page
+     * once the callback is done with the current one.
      *
      * @param <E> the element type
      */
     private static final class PagingSubscriber<E> extends Subscriber<ServiceResponse<Page<E>>> {
         private AzureServiceFuture<List<E>> serviceCall;
-        private Func1<String, Observable<ServiceResponse<Page<E>>>> next;
         private ListOperationCallback<E> callback;
-        private ServiceResponse<Page<E>> lastResponse;
+        /** The items of the pages loaded so far. */
+        private List<E> items = new ArrayList<>();
 
-        PagingSubscriber(final AzureServiceFuture<List<E>> serviceCall, final Func1<String, Observable<ServiceResponse<Page<E>>>> next, final ListOperationCallback<E> callback) {
+        PagingSubscriber(final AzureServiceFuture<List<E>> serviceCall, final ListOperationCallback<E> callback) {
             this.serviceCall = serviceCall;
-            this.next = next;
             this.callback = callback;
         }
 
+        @Override
+        public void onStart() {
+            request(1);
+        }
+
         @Override
         public void onCompleted() {
-            // do nothing
+            if (callback != null) {
+                callback.success();
+            }
+            serviceCall.set(items);
         }
 
         @Override
@@ -106,19 +111,17 @@ public final class AzureServiceFuture<T> extends ServiceFuture<T> {
 
         @Override
         public void onNext(ServiceResponse<Page<E>> serviceResponse) {
-            lastResponse = serviceResponse;
-            ListOperationCallback.PagingBehavior behavior = ListOperationCallback.PagingBehavior.CONTINUE;
-            if (callback != null) {
-                behavior = callback.progress(serviceResponse.body().items());
-                if (behavior == ListOperationCallback.PagingBehavior.STOP || serviceResponse.body().nextPageLink() == null) {
-                    callback.success();
-                }
+            List<E> pageItems = serviceResponse.body().items();
+            if (pageItems != null) {
+                items.addAll(pageItems);
             }
-            if (behavior == ListOperationCallback.PagingBehavior.STOP || serviceResponse.body().nextPageLink() == null) {
-                serviceCall.set(lastResponse.body().items());
-            } else {
-                serviceCall.setSubscription(next.call(serviceResponse.body().nextPageLink()).single().subscribe(this));
+            if (callback != null
+                    && callback.progress(pageItems) == ListOperationCallback.PagingBehavior.STOP) {
+                unsubscribe();
+                onCompleted();
+                return;
             }
+            request(1);
         }
     }
 }
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands the items of a paging operation out to many threads, as a work
+ * queue for a thread pool. Each item is handed out once: the threads claim
+ * the items of the current page without locking, and at the end of a page
+ * a single thread fetches the next one while the others wait for it. A page
+ * that failed to load throws its error, wrapped into a Java Runtime
+ * exception, to the threads reaching it.
+ *
+ * @param <E> the element type, whose items are not null
+ */
+public final class ConcurrentPagedQueue<E> {
+    /** The paging operation fetching the pages. */
+    private final PagedList<E> source;
+    /** The page whose items are being handed out. */
+    private final AtomicReference<Segment> current;
+
+    /**
+     * Initializes an instance of {@link ConcurrentPagedQueue} class.
+     *
+     * @param source the paging operation fetching the pages
+     * @param items the items to hand out first
+     * @param following the page fetched after the items, or null if there is none
+     */
+    ConcurrentPagedQueue(PagedList<E> source, List<E> items, Page<E> following) {
+        this.source = source;
+        this.current = new AtomicReference<>(new Segment(items, following, null));
+    }
+
+    /**
+     * Takes the next item, fetching the next page at the end of a page.
+     *
+     * @return the item, or null after the last item
+     */
+    public E poll() {
+        for (;;) {
+            Segment segment = current.get();
+            if (segment.claimed.get() < segment.items.size()) {
+                int index = segment.claimed.getAndIncrement();
+                if (index < segment.items.size()) {
+                    return segment.items.get(index);
+                }
+            }
+            Segment next = segment.next();
+            if (next == null) {
+                return null;
+            }
+            current.compareAndSet(segment, next);
+        }
+    }
+
+    /**
+     * The items of a page, and the page after it once fetched.
+     */
+    private final class Segment {
+        /** The items of the page. */
+        private final List<E> items;
+        /** The page after this one if it is already fetched, or null. */
+        private final Page<E> following;
+        /** The link of the page after this one, or null after the last page. */
+        private final String nextPageLink;
+        /** The number of items claimed, beyond the number of items once they are all claimed. */
+        private final AtomicInteger claimed = new AtomicInteger();
+        /** Whether a thread took on moving to the next page. */
+        private final AtomicBoolean advancing = new AtomicBoolean();
+        /** Released once the next page is known. */
+        private final CountDownLatch advanced = new CountDownLatch(1);
+        /** The next page, or null after the last page. */
+        private volatile Segment next;
+        /** The error fetching the next page. */
+        private volatile RuntimeException error;
+
+        Segment(List<E> items, Page<E> following, String nextPageLink) {
+            this.items = items != null ? items : Collections.<E>emptyList();
+            this.following = following;
+            this.nextPageLink = nextPageLink;
+        }
+
+        /**
+         * Gets the next page, fetching it on the first thread asking.
+         */
+        Segment next() {
+            if (advancing.compareAndSet(false, true)) {
+                try {
+                    next = advance();
+                } catch (RuntimeException e) {
+                    error = e;
+                } finally {
+                    advanced.countDown();
+                }
+            } else {
+                try {
+                    advanced.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(new InterruptedIOException("Interrupted while waiting for page " + nextPageLink));
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return next;
+        }
+
+        private Segment advance() {
+            if (following != null) {
+                return new Segment(following.items(), null, following.nextPageLink());
+            }
+            if (nextPageLink == null || nextPageLink.isEmpty()) {
+                return null;
+            }
+            Page<E> page;
+            try {
+                page = source.fetchPage(nextPageLink);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            return page != null ? new Segment(page.items(), null, page.nextPageLink()) : null;
+        }
+    }
+}
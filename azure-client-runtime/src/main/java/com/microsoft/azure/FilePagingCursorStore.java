@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A {@link PagingCursorStore} keeping the last checkpoint in a file. The
+ * checkpoint is written to a temporary file first then moved over the
+ * file, so a crash while saving leaves the previous checkpoint whole.
+ */
+public final class FilePagingCursorStore implements PagingCursorStore {
+    /** The encoding of the file. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The file keeping the checkpoint. */
+    private final Path path;
+
+    /**
+     * Initializes an instance of {@link FilePagingCursorStore} class.
+     *
+     * @param file the file keeping the checkpoint
+     */
+    public FilePagingCursorStore(File file) {
+        if (file == null) {
+            throw new NullPointerException("file == null");
+        }
+        this.path = file.getAbsoluteFile().toPath();
+    }
+
+    /**
+     * @return the file keeping the checkpoint
+     */
+    public File file() {
+        return path.toFile();
+    }
+
+    @Override
+    public void save(PagingCursor cursor) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporary, cursor.toString().getBytes(UTF_8));
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public PagingCursor load() throws IOException {
+        try {
+            return PagingCursor.parse(new String(Files.readAllBytes(path), UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A read-only view of the items of a paging operation for random access,
+ * holding at most a number of items in memory. The pages are kept in a
+ * least recently used cache; an evicted page is fetched again from the link
+ * it was first fetched from when one of its items is needed. Only the links
+ * and the sizes of the pages before an index are kept once it is reached.
+ * The first page of the operation is never evicted, as it has no link.
+ *
+ * The view assumes the listing does not change while it is used: a page
+ * fetched again with a different number of items throws a
+ * {@link ConcurrentModificationException}.
+ *
+ * @param <E> the element type
+ */
+public final class PageCachedList<E> extends AbstractList<E> implements RandomAccess {
+    /** The paging operation fetching the pages. */
+    private final PagedList<E> source;
+    /** The maximum number of items in the cached pages. */
+    private final int maxItems;
+    /** The link each non-empty page known was fetched from, null for the first page. */
+    private final List<String> links = new ArrayList<>();
+    /** The index of the first item of each non-empty page known. */
+    private final List<Integer> starts = new ArrayList<>();
+    /** The items of the pages cached by page number, least recently used first. */
+    private final LinkedHashMap<Integer, List<E>> cache = new LinkedHashMap<>(16, 0.75f, true);
+    /** The number of items in the cached pages. */
+    private int cachedItems;
+    /** The number of items in the pages known. */
+    private int knownItems;
+    /** The link of the page after the ones known, or null after the last page. */
+    private String nextPageLink;
+
+    /**
+     * Initializes an instance of {@link PageCachedList} class starting at the
+     * current page of a paged list.
+     *
+     * @param source the paged list fetching the pages
+     * @param firstPageLink the link the current page was fetched from, or null for the first page
+     * @param maxItems the maximum number of items in the cached pages
+     */
+    PageCachedList(PagedList<E> source, String firstPageLink, int maxItems) {
+        if (maxItems < 1) {
+            throw new IllegalArgumentException("maxItems < 1: " + maxItems);
+        }
+        this.source = source;
+        this.maxItems = maxItems;
+        Page<E> first = source.currentPage();
+        if (first != null) {
+            add(firstPageLink, first);
+        }
+    }
+
+    /**
+     * @return the maximum number of items in the cached pages
+     */
+    public int maxItems() {
+        return maxItems;
+    }
+
+    /**
+     * @return the number of items in the cached pages
+     */
+    public int cachedItems() {
+        return cachedItems;
+    }
+
+    @Override
+    public E get(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        while (index >= knownItems && nextPageLink != null) {
+            String link = nextPageLink;
+            add(link, fetch(link));
+        }
+        if (index >= knownItems) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + knownItems);
+        }
+        int pageNumber = Collections.binarySearch(starts, index);
+        if (pageNumber < 0) {
+            pageNumber = -pageNumber - 2;
+        }
+        return page(pageNumber).get(index - starts.get(pageNumber));
+    }
+
+    @Override
+    public int size() {
+        while (nextPageLink != null) {
+            String link = nextPageLink;
+            add(link, fetch(link));
+        }
+        return knownItems;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        while (knownItems == 0 && nextPageLink != null) {
+            String link = nextPageLink;
+            add(link, fetch(link));
+        }
+        return knownItems == 0;
+    }
+
+    /**
+     * Gets the items of a page known, fetching it again if it was evicted.
+     */
+    private List<E> page(int pageNumber) {
+        List<E> items = cache.get(pageNumber);
+        if (items != null) {
+            return items;
+        }
+        Page<E> page = fetch(links.get(pageNumber));
+        items = page != null && page.items() != null ? page.items() : Collections.<E>emptyList();
+        int expected = (pageNumber + 1 < starts.size() ? starts.get(pageNumber + 1) : knownItems) - starts.get(pageNumber);
+        if (items.size() != expected) {
+            throw new ConcurrentModificationException("Page " + pageNumber + " has " + items.size()
+                    + " items instead of " + expected);
+        }
+        cache(pageNumber, items);
+        return items;
+    }
+
+    /**
+     * Records a page after the ones known, and caches its items.
+     */
+    private void add(String link, Page<E> page) {
+        nextPageLink = null;
+        if (page == null) {
+            return;
+        }
+        List<E> items = page.items();
+        if (items != null && !items.isEmpty()) {
+            links.add(link);
+            starts.add(knownItems);
+            knownItems += items.size();
+            cache(links.size() - 1, items);
+        }
+        String next = page.nextPageLink();
+        if (next != null && !next.isEmpty()) {
+            nextPageLink = next;
+        }
+    }
+
+    /**
+     * Caches the items of a page, evicting the least recently used pages
+     * beyond the maximum number of items. The page itself is always kept.
+     */
+    private void cache(int pageNumber, List<E> items) {
+        cache.put(pageNumber, items);
+        cachedItems += items.size();
+        Iterator<Map.Entry<Integer, List<E>>> eldest = cache.entrySet().iterator();
+        while (cachedItems > maxItems && eldest.hasNext()) {
+            Map.Entry<Integer, List<E>> entry = eldest.next();
+            if (entry.getKey() != pageNumber && links.get(entry.getKey()) != null) {
+                cachedItems -= entry.getValue().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    private Page<E> fetch(String link) {
+        try {
+            return source.fetchPage(link);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
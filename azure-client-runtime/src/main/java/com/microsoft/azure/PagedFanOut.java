@@ -0,0 +1,583 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.microsoft.rest.ServiceResponse;
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.exceptions.CompositeException;
+import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+import rx.functions.Action2;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+import rx.subscriptions.Subscriptions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lists the same kind of items from many paging operations at once, such as
+ * the resources of a type across subscriptions, and merges their pages into
+ * one observable or one {@link PagedList}. At most a number of the paging
+ * operations run at once, each on a scheduler.
+ *
+ * By default, the pages are merged as they arrive and a failing operation
+ * does not stop the others: its error is raised once they complete. With
+ * {@link #withErrorHandler(Action2)}, the errors are handed over instead.
+ *
+ * @param <E> the element type
+ */
+public final class PagedFanOut<E> {
+    /**
+     * The order of the merged pages.
+     */
+    public enum Order {
+        /** The pages as they arrive, interleaving the operations. */
+        ARRIVAL,
+        /** All the pages of an operation before the pages of the next one, in the order they were added. */
+        SOURCE
+    }
+
+    /** The default number of paging operations running at once. */
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    /** The pages of each paging operation. */
+    private final List<Observable<ServiceResponse<Page<E>>>> sources;
+    /** The maximum number of paging operations running at once. */
+    private int maxConcurrency;
+    /** The order of the merged pages. */
+    private Order order;
+    /** The scheduler to run the paging operations on. */
+    private Scheduler scheduler;
+    /** The handler of the errors of the paging operations, or null to raise them at the end. */
+    private Action2<Integer, Throwable> errorHandler;
+
+    /**
+     * Initializes an instance of {@link PagedFanOut} class with no paging operation.
+     */
+    public PagedFanOut() {
+        this.sources = new ArrayList<>();
+        this.maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        this.order = Order.ARRIVAL;
+        this.scheduler = Schedulers.io();
+    }
+
+    /**
+     * Adds a paging operation.
+     *
+     * @param first the observable to the first page
+     * @param next the observable to a page from its link
+     * @return the fan-out itself
+     */
+    public PagedFanOut<E> withSource(Observable<ServiceResponse<Page<E>>> first,
+                                     Func1<String, Observable<ServiceResponse<Page<E>>>> next) {
+        sources.add(PagedObservable.pages(first, next));
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of paging operations running at once. Default is {@link #DEFAULT_MAX_CONCURRENCY}.
+     *
+     * @param maxConcurrency the maximum number of paging operations running at once
+     * @return the fan-out itself
+     */
+    public PagedFanOut<E> withMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency < 1: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * Sets the order of the merged pages. Default is {@link Order#ARRIVAL}.
+     *
+     * @param order the order of the merged pages
+     * @return the fan-out itself
+     */
+    public PagedFanOut<E> withOrder(Order order) {
+        if (order == null) {
+            throw new NullPointerException("order == null");
+        }
+        this.order = order;
+        return this;
+    }
+
+    /**
+     * Sets the scheduler to run the paging operations on. Default is {@link Schedulers#io()}.
+     *
+     * @param scheduler the scheduler
+     * @return the fan-out itself
+     */
+    public PagedFanOut<E> withScheduler(Scheduler scheduler) {
+        if (scheduler == null) {
+            throw new NullPointerException("scheduler == null");
+        }
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Sets the handler of the errors of the paging operations, called with
+     * the index of the failed operation in the order they were added. The
+     * pages of a failed operation end at its error. Default is to raise the
+     * errors once the other operations complete.
+     *
+     * @param errorHandler the handler of the errors, or null to raise them
+     * @return the fan-out itself
+     */
+    public PagedFanOut<E> withErrorHandler(Action2<Integer, Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+        return this;
+    }
+
+    /**
+     * @return the number of paging operations
+     */
+    public int sourceCount() {
+        return sources.size();
+    }
+
+    /**
+     * Gets the merged pages of the paging operations. Like the
+     * {@link #toPagedList()}, the observable fetches the pages of each
+     * running operation at most one page ahead of the ones requested.
+     *
+     * @return the observable of the pages
+     */
+    public Observable<ServiceResponse<Page<E>>> pages() {
+        final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        final List<Observable<ServiceResponse<Page<E>>>> isolated = isolate(errors);
+        final Order order = this.order;
+        final int maxConcurrency = this.maxConcurrency;
+        return Observable.create(new Observable.OnSubscribe<ServiceResponse<Page<E>>>() {
+            @Override
+            public void call(Subscriber<? super ServiceResponse<Page<E>>> subscriber) {
+                final MergedPages<E> pages = new MergedPages<>(isolated, errors, order, maxConcurrency);
+                MergedPagesProducer<E> producer = new MergedPagesProducer<>(pages, subscriber);
+                pages.listener = producer;
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        pages.cancel();
+                    }
+                }));
+                subscriber.setProducer(producer);
+            }
+        });
+    }
+
+    /**
+     * Gets the merged items of the paging operations.
+     *
+     * @return the observable of the items
+     */
+    public Observable<E> items() {
+        return pages().concatMapIterable(new Func1<ServiceResponse<Page<E>>, Iterable<E>>() {
+            @Override
+            public Iterable<E> call(ServiceResponse<Page<E>> response) {
+                List<E> items = response.body().items();
+                return items != null ? items : Collections.<E>emptyList();
+            }
+        });
+    }
+
+    /**
+     * Gets the merged pages of the paging operations as a {@link PagedList},
+     * waiting for the first page. The list fetches the pages of each
+     * running operation at most one page ahead of the ones it reached.
+     * Closing the list cancels the operations of a listing abandoned before
+     * its end.
+     *
+     * @return the paged list
+     */
+    public MergedPagedList<E> toPagedList() {
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        return new MergedPagedList<>(new MergedPages<>(isolate(errors), errors, order, maxConcurrency));
+    }
+
+    /**
+     * Runs the paging operations on the scheduler, handing their errors over
+     * to the error handler or collecting them.
+     *
+     * @param errors the collected errors
+     * @return the pages of each paging operation, ending at its error
+     */
+    private List<Observable<ServiceResponse<Page<E>>>> isolate(final Queue<Throwable> errors) {
+        final Action2<Integer, Throwable> handler = this.errorHandler;
+        List<Observable<ServiceResponse<Page<E>>>> isolated = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            final int index = i;
+            isolated.add(sources.get(i)
+                    .subscribeOn(scheduler)
+                    .onErrorResumeNext(new Func1<Throwable, Observable<ServiceResponse<Page<E>>>>() {
+                        @Override
+                        public Observable<ServiceResponse<Page<E>>> call(Throwable throwable) {
+                            if (handler != null) {
+                                handler.call(index, throwable);
+                            } else {
+                                errors.add(throwable);
+                            }
+                            return Observable.empty();
+                        }
+                    }));
+        }
+        return isolated;
+    }
+
+    private static Throwable error(Queue<Throwable> errors) {
+        if (errors.isEmpty()) {
+            return null;
+        } else if (errors.size() == 1) {
+            return errors.peek();
+        }
+        return new CompositeException(errors);
+    }
+
+    /**
+     * A {@link PagedList} of merged pages.
+     *
+     * @param <E> the element type
+     */
+    public static final class MergedPagedList<E> extends PagedList<E> implements Closeable {
+        /** The merged pages not reached yet. */
+        private final MergedPages<E> pages;
+
+        private MergedPagedList(MergedPages<E> pages) {
+            this.pages = pages;
+            // the merged pages are linked by index, so looking ahead does not wait for the second page
+            setCurrentPage(new MergedPage<>(new ArrayList<E>(), "0"));
+        }
+
+        @Override
+        public Page<E> nextPage(String nextPageLink) throws IOException {
+            Page<E> page = pages.take();
+            if (page == null) {
+                return null;
+            }
+            List<E> items = page.items();
+            return new MergedPage<>(items != null ? items : new ArrayList<E>(),
+                    Integer.toString(Integer.parseInt(nextPageLink) + 1));
+        }
+
+        /**
+         * Cancels the paging operations. The list ends at the pages already reached.
+         */
+        @Override
+        public void close() {
+            pages.cancel();
+        }
+    }
+
+    /**
+     * The merged pages of the paging operations, handed to a consumer
+     * thread or to a subscriber. Each running operation fetches its next
+     * page once the consumer took the previous one.
+     *
+     * @param <E> the element type
+     */
+    private static final class MergedPages<E> {
+        /** The pages of each paging operation, ending at its error. */
+        private final List<Observable<ServiceResponse<Page<E>>>> sources;
+        /** The errors collected from the paging operations. */
+        private final Queue<Throwable> errors;
+        /** The order of the merged pages. */
+        private final Order order;
+        /** The maximum number of paging operations running at once. */
+        private final int maxConcurrency;
+        /** The running paging operations, in the order they were added; guarded by itself. */
+        private final List<SourceSubscriber<E>> running = new ArrayList<>();
+        /** The number of paging operations started. */
+        private int started;
+        /** Whether the consumer cancelled the pages. */
+        private boolean cancelled;
+        /** The callback run once a page arrives or an operation ends, or null. */
+        private volatile Runnable listener;
+
+        MergedPages(List<Observable<ServiceResponse<Page<E>>>> sources, Queue<Throwable> errors,
+                    Order order, int maxConcurrency) {
+            this.sources = sources;
+            this.errors = errors;
+            this.order = order;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        /**
+         * Takes the next page, waiting for it.
+         *
+         * @return the page, or null after the last page or once cancelled
+         * @throws IOException if the thread is interrupted
+         */
+        Page<E> take() throws IOException {
+            SourceSubscriber<E> from;
+            ServiceResponse<Page<E>> response;
+            synchronized (running) {
+                for (;;) {
+                    from = next();
+                    if (from != null) {
+                        response = from.response;
+                        from.response = null;
+                        break;
+                    }
+                    if (ended()) {
+                        Throwable error = cancelled ? null : error(errors);
+                        if (error != null) {
+                            throw Exceptions.propagate(error);
+                        }
+                        return null;
+                    }
+                    try {
+                        running.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for a page");
+                    }
+                }
+            }
+            from.requestNext();
+            return response.body();
+        }
+
+        /**
+         * Finds the running operation holding the next page, starting the
+         * waiting operations as the running ones end. Guarded by running.
+         *
+         * @return the operation, or null if the next page did not arrive yet or the pages ended
+         */
+        private SourceSubscriber<E> next() {
+            for (;;) {
+                if (cancelled) {
+                    return null;
+                }
+                while (running.size() < maxConcurrency && started < sources.size()) {
+                    SourceSubscriber<E> subscriber = new SourceSubscriber<>(this);
+                    running.add(subscriber);
+                    sources.get(started++).subscribe(subscriber);
+                }
+                boolean ended = false;
+                Iterator<SourceSubscriber<E>> iterator = running.iterator();
+                while (iterator.hasNext()) {
+                    SourceSubscriber<E> subscriber = iterator.next();
+                    if (subscriber.response != null) {
+                        return subscriber;
+                    } else if (subscriber.done) {
+                        iterator.remove();
+                        ended = true;
+                    } else if (order == Order.SOURCE) {
+                        break;
+                    }
+                }
+                if (!ended || started == sources.size()) {
+                    return null;
+                }
+                // start the operations waiting for the ended ones
+            }
+        }
+
+        /**
+         * @return whether the pages ended or were cancelled; guarded by running
+         */
+        private boolean ended() {
+            return cancelled || running.isEmpty() && started == sources.size();
+        }
+
+        void cancel() {
+            synchronized (running) {
+                cancelled = true;
+                for (SourceSubscriber<E> subscriber : running) {
+                    subscriber.unsubscribe();
+                }
+                running.clear();
+                running.notifyAll();
+            }
+        }
+
+        /**
+         * Wakes up the consumer once a page arrives or an operation ends.
+         */
+        private void signal() {
+            synchronized (running) {
+                running.notifyAll();
+            }
+            Runnable listener = this.listener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Emits the merged pages to a subscriber as it requests them, without
+     * waiting for them on its thread.
+     *
+     * @param <E> the element type
+     */
+    private static final class MergedPagesProducer<E> implements Producer, Runnable {
+        /** The merged pages. */
+        private final MergedPages<E> pages;
+        /** The subscriber to the merged pages. */
+        private final Subscriber<? super ServiceResponse<Page<E>>> subscriber;
+        /** The number of pages requested and not emitted yet. */
+        private final AtomicLong requested = new AtomicLong();
+        /** The number of emission passes missed while one ran. */
+        private final AtomicInteger missed = new AtomicInteger();
+        /** Whether the subscriber was completed or failed, accessed by the emission pass only. */
+        private boolean terminated;
+
+        MergedPagesProducer(MergedPages<E> pages, Subscriber<? super ServiceResponse<Page<E>>> subscriber) {
+            this.pages = pages;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n < 0: " + n);
+            }
+            for (;;) {
+                long current = requested.get();
+                long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            run();
+        }
+
+        /**
+         * Emits the pages arrived while requested, then the end of the pages.
+         */
+        @Override
+        public void run() {
+            if (missed.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!terminated && !subscriber.isUnsubscribed()) {
+                    SourceSubscriber<E> from;
+                    ServiceResponse<Page<E>> response = null;
+                    boolean ended = false;
+                    synchronized (pages.running) {
+                        from = pages.next();
+                        if (from == null) {
+                            ended = pages.ended();
+                        } else if (requested.get() > 0) {
+                            response = from.response;
+                            from.response = null;
+                        }
+                    }
+                    if (response != null) {
+                        subscriber.onNext(response);
+                        if (requested.get() != Long.MAX_VALUE) {
+                            requested.decrementAndGet();
+                        }
+                        from.requestNext();
+                    } else if (ended) {
+                        terminated = true;
+                        Throwable error = error(pages.errors);
+                        if (error != null) {
+                            subscriber.onError(error);
+                        } else {
+                            subscriber.onCompleted();
+                        }
+                    } else {
+                        break;
+                    }
+                }
+            } while (missed.decrementAndGet() != 0);
+        }
+    }
+
+    /**
+     * A subscriber to the pages of a paging operation, holding at most one page.
+     *
+     * @param <E> the element type
+     */
+    private static final class SourceSubscriber<E> extends Subscriber<ServiceResponse<Page<E>>> {
+        /** The merged pages, notified of the pages and the completion. */
+        private final MergedPages<E> parent;
+        /** The page not taken yet, guarded by the lock of the merged pages. */
+        private ServiceResponse<Page<E>> response;
+        /** Whether the pages ended, guarded by the lock of the merged pages. */
+        private boolean done;
+
+        SourceSubscriber(MergedPages<E> parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public void onStart() {
+            request(1);
+        }
+
+        void requestNext() {
+            request(1);
+        }
+
+        @Override
+        public void onNext(ServiceResponse<Page<E>> response) {
+            synchronized (parent.running) {
+                this.response = response;
+            }
+            parent.signal();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (parent.running) {
+                done = true;
+            }
+            parent.signal();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // the errors of the paging operations are isolated, this is an error of their handler
+            parent.errors.add(throwable);
+            onCompleted();
+        }
+    }
+
+    /**
+     * A page of the merged pages, linked to the next one by its index.
+     *
+     * @param <E> the element type
+     */
+    private static final class MergedPage<E> implements Page<E> {
+        /** The items of the page. */
+        private final List<E> items;
+        /** The index of the next page; the page after the last one is null. */
+        private final String nextPageLink;
+
+        private MergedPage(List<E> items, String nextPageLink) {
+            this.items = items;
+            this.nextPageLink = nextPageLink;
+        }
+
+        @Override
+        public String nextPageLink() {
+            return nextPageLink;
+        }
+
+        @Override
+        public List<E> items() {
+            return items;
+        }
+    }
+}
@@ -7,19 +7,35 @@
 package com.microsoft.azure;
 
 import com.microsoft.rest.RestException;
+import com.microsoft.rest.metrics.RuntimeEvents;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
 
 /**
  * Defines a list response from a paging operation. The pages are
- * lazy initialized when an instance of this class is iterated.
+ * lazy initialized when an instance of this class is iterated, or fetched
+ * ahead in the background with {@link #withPrefetch(int, Executor)}. To
+ * stream through a large listing once, use {@link #withForwardOnly()} so
+ * that the pages are dropped once consumed. A long enumeration can be
+ * resumed after a crash from its {@link #cursor()}, saved periodically with
+ * {@link #withCheckpoints(PagingCursorStore, int)}. For random access into
+ * a large listing within a fixed number of items held, use
+ * {@link #toPageCachedList(int)}.
+ *
+ * A PagedList is not safe to use from several threads. To hand its items
+ * out to a thread pool, use {@link #toConcurrentQueue()}.
  *
  * @param <E> the element type.
  */
@@ -30,6 +46,24 @@ public abstract class PagedList<E> implements List<E> {
     private Page<E> currentPage;
     /** Cached page right after the current one. */
     private Page<E> cachedPage;
+    /** Fetches the pages after the cached one in the background, or null to fetch them when needed. */
+    private Prefetcher prefetcher;
+    /** Whether the items of a page are dropped once the list moves to the next page. */
+    private boolean forwardOnly;
+    /** The number of items dropped in forward-only mode, before the first item held. */
+    private int dropped;
+    /** The link the cached page was fetched from. */
+    private String cachedPageLink;
+    /** Where each page loaded starts in the list, and the link it was fetched from. */
+    private final List<PageMark> marks = new ArrayList<>();
+    /** The index of the item after the last one returned by an iterator. */
+    private int consumed;
+    /** The store of the checkpoints, or null to not save them. */
+    private PagingCursorStore checkpointStore;
+    /** The number of pages loaded between checkpoints. */
+    private int checkpointPages;
+    /** The number of pages loaded since the last checkpoint. */
+    private int pagesSinceCheckpoint;
 
     /**
      * Creates an instance of Pagedlist.
@@ -49,6 +83,7 @@ public abstract class PagedList<E> implements List<E> {
             return;
         }
         List<E> retrievedItems = page.items();
+        marks.add(new PageMark(0, null));
         if (retrievedItems != null) {
             items.addAll(retrievedItems);
         }
@@ -59,7 +94,12 @@ public abstract class PagedList<E> implements List<E> {
     private void cachePage(String nextPageLink) {
         try {
             while (nextPageLink != null && nextPageLink != "") {
-                cachedPage = nextPage(nextPageLink);
+                if (prefetcher != null) {
+                    cachedPage = prefetcher.take(nextPageLink);
+                } else {
+                    cachedPage = fetchPage(nextPageLink);
+                }
+                cachedPageLink = nextPageLink;
                 if (cachedPage == null) {
                     break;
                 }
@@ -74,6 +114,199 @@ public abstract class PagedList<E> implements List<E> {
         }
     }
 
+    Page<E> fetchPage(String nextPageLink) throws IOException {
+        long startNs = System.nanoTime();
+        Page<E> page = nextPage(nextPageLink);
+        if (page != null && RuntimeEvents.enabled()) {
+            int itemCount = page.items() != null ? page.items().size() : 0;
+            RuntimeEvents.pageFetched(nextPageLink, itemCount, System.nanoTime() - startNs);
+        }
+        return page;
+    }
+
+    /**
+     * Fetches the next pages in the background on an executor while the
+     * current ones are consumed, at most a number of pages ahead of the one
+     * cached after the current page. A page that failed to load throws its
+     * error when it is reached.
+     *
+     * @param pages the number of pages to fetch ahead
+     * @param executor the executor to fetch the pages on
+     * @return the list itself
+     */
+    public PagedList<E> withPrefetch(int pages, Executor executor) {
+        if (pages < 1) {
+            throw new IllegalArgumentException("pages < 1: " + pages);
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor == null");
+        }
+        this.prefetcher = new Prefetcher(pages, executor);
+        if (cachedPage != null) {
+            prefetcher.start(cachedPage.nextPageLink());
+        }
+        return this;
+    }
+
+    /**
+     * Switches the list to forward-only mode, where the items of a page are
+     * dropped once the list moves to the next page. Enumerating the list then
+     * holds at most the current page, the cached one and the ones prefetched.
+     * The list can be iterated only once, and the operations needing all the
+     * items, such as {@link #get(int)}, {@link #size()} and {@link #toArray()},
+     * throw an {@link UnsupportedOperationException}.
+     *
+     * @return the list itself
+     */
+    public PagedList<E> withForwardOnly() {
+        this.forwardOnly = true;
+        return this;
+    }
+
+    /**
+     * @return true if the items of a page are dropped once the list moves to the next page
+     */
+    public boolean isForwardOnly() {
+        return forwardOnly;
+    }
+
+    /**
+     * Saves a checkpoint of the enumeration to a store every number of pages
+     * loaded, to resume it with {@link #resume(PagingCursor)} after a crash.
+     * A checkpoint that cannot be saved throws its error wrapped into a
+     * Java Runtime exception.
+     *
+     * @param store the store of the checkpoints
+     * @param pages the number of pages loaded between checkpoints
+     * @return the list itself
+     */
+    public PagedList<E> withCheckpoints(PagingCursorStore store, int pages) {
+        if (store == null) {
+            throw new NullPointerException("store == null");
+        }
+        if (pages < 1) {
+            throw new IllegalArgumentException("pages < 1: " + pages);
+        }
+        this.checkpointStore = store;
+        this.checkpointPages = pages;
+        this.pagesSinceCheckpoint = 0;
+        return this;
+    }
+
+    /**
+     * Gets the position of the enumeration: the link of the page holding the
+     * item after the last one returned by an iterator, and the offset of that
+     * item in the page. The position assumes the list was not modified.
+     *
+     * @return the cursor to resume the enumeration from
+     */
+    public PagingCursor cursor() {
+        for (int i = marks.size() - 1; i >= 0; i--) {
+            PageMark mark = marks.get(i);
+            if (mark.start <= consumed || i == 0) {
+                return new PagingCursor(mark.link, consumed - mark.start);
+            }
+        }
+        return new PagingCursor(null, consumed);
+    }
+
+    /**
+     * Resumes an enumeration from its cursor, before the list is iterated.
+     * The list then starts at the item of the cursor: the page of the cursor
+     * is fetched from its link, or for a cursor on the first page the items
+     * before the cursor are skipped. To resume without fetching the first
+     * page, create the list with no page then resume it.
+     *
+     * @param cursor the cursor, from {@link #cursor()} or a {@link PagingCursorStore}
+     * @return the list itself
+     */
+    public PagedList<E> resume(PagingCursor cursor) {
+        if (cursor == null) {
+            throw new NullPointerException("cursor == null");
+        }
+        if (consumed > 0 || dropped > 0 || marks.size() > 1) {
+            throw new IllegalStateException("A PagedList can be resumed only before it is iterated");
+        }
+        if (cursor.pageLink() != null) {
+            Page<E> page;
+            try {
+                page = fetchPage(cursor.pageLink());
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            items.clear();
+            marks.clear();
+            cachedPage = null;
+            currentPage = page;
+            marks.add(new PageMark(0, cursor.pageLink()));
+            if (page != null) {
+                if (page.items() != null) {
+                    items.addAll(page.items());
+                }
+                cachePage(page.nextPageLink());
+            }
+        }
+        // The items before the cursor were consumed before the crash
+        int skipped = Math.min(cursor.offset(), items.size());
+        items.subList(0, skipped).clear();
+        if (!marks.isEmpty()) {
+            marks.get(0).start = -skipped;
+        }
+        return this;
+    }
+
+    /**
+     * Saves the position of the enumeration to the store of the checkpoints.
+     */
+    private void checkpoint() {
+        try {
+            checkpointStore.save(cursor());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets a read-only view of the items from the current page on, for
+     * random access with {@link List#get(int)} and {@link List#subList(int, int)},
+     * holding the pages in a least recently used cache of at most a number of
+     * items. The evicted pages are fetched again from their links when needed.
+     * The view is created before the list moves past its current page.
+     *
+     * @param maxItems the maximum number of items in the cached pages
+     * @return the view of the items
+     */
+    public PageCachedList<E> toPageCachedList(int maxItems) {
+        if (marks.size() > 1 || dropped > 0) {
+            throw new IllegalStateException("A PagedList can be cached only before it moves past its first page");
+        }
+        return new PageCachedList<>(this, marks.isEmpty() ? null : marks.get(0).link, maxItems);
+    }
+
+    /**
+     * Gets a queue handing the items out to many threads, each item once:
+     * the items held, then the items of the pages after them. The queue
+     * fetches the pages by itself, and the list should not be used while it
+     * is consumed.
+     *
+     * @return the queue of the items
+     */
+    public ConcurrentPagedQueue<E> toConcurrentQueue() {
+        return new ConcurrentPagedQueue<>(this, new ArrayList<>(items), cachedPage);
+    }
+
+    private void requireAllItems(String operation) {
+        if (forwardOnly) {
+            throw new UnsupportedOperationException(operation + " is not supported by a forward-only PagedList");
+        }
+    }
+
+    private void requireNotIterated() {
+        if (dropped > 0) {
+            throw new IllegalStateException("A forward-only PagedList can be iterated only once");
+        }
+    }
+
     /**
      * Override this method to load the next page of items from a next page link.
      *
@@ -100,10 +333,41 @@ public abstract class PagedList<E> implements List<E> {
     public void loadNextPage() {
         this.currentPage = cachedPage;
         cachedPage = null;
+        if (forwardOnly) {
+            dropped += items.size();
+            items.clear();
+        }
+        addMark(new PageMark(dropped + items.size(), cachedPageLink));
         this.items.addAll(currentPage.items());
+        if (checkpointStore != null) {
+            pagesSinceCheckpoint++;
+            if (pagesSinceCheckpoint >= checkpointPages) {
+                pagesSinceCheckpoint = 0;
+                checkpoint();
+            }
+        }
         cachePage(currentPage.nextPageLink());
     }
 
+    /**
+     * @return the number of pages whose start and link the list keeps
+     */
+    int markCount() {
+        return marks.size();
+    }
+
+    private void addMark(PageMark mark) {
+        marks.add(mark);
+        if (forwardOnly) {
+            // The list is iterated once, so the pages before the one of the cursor are never reached again
+            int first = marks.size() - 1;
+            while (first > 0 && marks.get(first).start > consumed) {
+                first--;
+            }
+            marks.subList(0, first).clear();
+        }
+    }
+
     /**
      * Keep loading the next page from the next page link until all items are loaded.
      */
@@ -113,6 +377,54 @@ public abstract class PagedList<E> implements List<E> {
         }
     }
 
+    /**
+     * Gets the items of the list page by page, fetching each page when
+     * reached. The first page holds the items already loaded. Handing the
+     * pages to an executor processes the items of the pages fetched while
+     * the next ones load, in parallel with {@link #withPrefetch(int, Executor)};
+     * on Java 8, the iterator also makes a stream of pages with
+     * {@code Spliterators.spliteratorUnknownSize}.
+     *
+     * @return the pages of items, which cannot be modified
+     */
+    public Iterable<List<E>> pages() {
+        return new Iterable<List<E>>() {
+            @Override
+            public Iterator<List<E>> iterator() {
+                requireNotIterated();
+                return new Iterator<List<E>>() {
+                    /** Whether the items already loaded were returned. */
+                    private boolean started;
+
+                    @Override
+                    public boolean hasNext() {
+                        return !started || hasNextPage();
+                    }
+
+                    @Override
+                    public List<E> next() {
+                        if (!started) {
+                            started = true;
+                            consumed = dropped + items.size();
+                            return Collections.unmodifiableList(new ArrayList<>(items));
+                        }
+                        if (!hasNextPage()) {
+                            throw new NoSuchElementException();
+                        }
+                        loadNextPage();
+                        consumed = dropped + items.size();
+                        return Collections.unmodifiableList(currentPage.items());
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("remove");
+                    }
+                };
+            }
+        };
+    }
+
     /**
      * Gets the latest page fetched.
      *
@@ -129,6 +441,7 @@ public abstract class PagedList<E> implements List<E> {
      */
     protected void setCurrentPage(Page<E> currentPage) {
         this.currentPage = currentPage;
+        addMark(new PageMark(dropped + items.size(), null));
         List<E> retrievedItems = currentPage.items();
         if (retrievedItems != null) {
             items.addAll(retrievedItems);
@@ -136,6 +449,145 @@ public abstract class PagedList<E> implements List<E> {
         cachePage(currentPage.nextPageLink());
     }
 
+    /**
+     * Where a page loaded starts in the list, and the link it was fetched from.
+     */
+    private static final class PageMark {
+        /** The index in the list of the first item of the page. */
+        private int start;
+        /** The link the page was fetched from, or null for the first page. */
+        private final String link;
+
+        PageMark(int start, String link) {
+            this.start = start;
+            this.link = link;
+        }
+    }
+
+    /**
+     * A page fetched in the background, or the error fetching it.
+     */
+    private final class Fetched {
+        /** The link the page was fetched from. */
+        private final String link;
+        /** The page, or null if there is none. */
+        private final Page<E> page;
+        /** The error fetching the page, or null if it was fetched. */
+        private final Exception error;
+
+        Fetched(String link, Page<E> page, Exception error) {
+            this.link = link;
+            this.page = page;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Fetches the pages one after the other on an executor, and holds at most
+     * a number of them until they are taken. The fetches run one at a time and
+     * do not hold a thread of the executor while waiting for room.
+     */
+    private final class Prefetcher implements Runnable {
+        /** The maximum number of pages held. */
+        private final int depth;
+        /** The executor to fetch the pages on. */
+        private final Executor executor;
+        /** The pages fetched and not taken yet, in order. */
+        private final Deque<Fetched> fetched = new ArrayDeque<>();
+        /** The link of the next page to fetch, or null after the last page. */
+        private String nextLink;
+        /** Whether a fetch is running. */
+        private boolean fetching;
+        /** Incremented on restart, to discard the page of a fetch started before. */
+        private int generation;
+
+        Prefetcher(int depth, Executor executor) {
+            this.depth = depth;
+            this.executor = executor;
+        }
+
+        synchronized void start(String link) {
+            fetched.clear();
+            nextLink = link;
+            generation++;
+            schedule();
+        }
+
+        private void schedule() {
+            if (fetching || nextLink == null || nextLink.isEmpty() || fetched.size() >= depth) {
+                return;
+            }
+            fetching = true;
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                fetching = false;
+                fetched.add(new Fetched(nextLink, null, e));
+                nextLink = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            String link;
+            int started;
+            synchronized (this) {
+                link = nextLink;
+                started = generation;
+            }
+            Page<E> page = null;
+            Exception error = null;
+            try {
+                page = fetchPage(link);
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+            synchronized (this) {
+                fetching = false;
+                if (started == generation) {
+                    fetched.add(new Fetched(link, page, error));
+                    nextLink = error == null && page != null ? page.nextPageLink() : null;
+                }
+                schedule();
+                notifyAll();
+            }
+        }
+
+        /**
+         * Takes the page fetched from a link, waiting for it if needed.
+         *
+         * @param link the link of the page
+         * @return the page, or null if there is none
+         * @throws IOException the error fetching the page
+         */
+        synchronized Page<E> take(String link) throws IOException {
+            Fetched head = fetched.peekFirst();
+            if (head != null ? !link.equals(head.link) : !link.equals(nextLink)) {
+                // The pages were changed by the subclass, so fetch from the link asked for
+                start(link);
+            }
+            while (fetched.isEmpty()) {
+                if (!fetching && (nextLink == null || nextLink.isEmpty())) {
+                    return null;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for page " + link);
+                }
+            }
+            Fetched taken = fetched.pollFirst();
+            schedule();
+            if (taken.error instanceof IOException) {
+                throw (IOException) taken.error;
+            } else if (taken.error != null) {
+                throw (RuntimeException) taken.error;
+            }
+            return taken.page;
+        }
+    }
+
     /**
      * The implementation of {@link ListIterator} for PagedList.
      */
@@ -158,14 +610,27 @@ public abstract class PagedList<E> implements List<E> {
             this.nextIndex = index;
         }
 
+        /**
+         * Gets the position in the items held of an index in the list.
+         *
+         * @param index the index in the list
+         * @return the position in the items held
+         */
+        private int position(int index) {
+            if (index < dropped) {
+                throw new IllegalStateException("Item " + index + " was dropped by the forward-only PagedList");
+            }
+            return index - dropped;
+        }
+
         @Override
         public boolean hasNext() {
-            return this.nextIndex != items.size() || hasNextPage();
+            return this.nextIndex != dropped + items.size() || hasNextPage();
         }
 
         @Override
         public E next() {
-            if (this.nextIndex >= items.size()) {
+            if (this.nextIndex >= dropped + items.size()) {
                 if (!hasNextPage()) {
                     throw new NoSuchElementException();
                 } else {
@@ -175,9 +640,10 @@ public abstract class PagedList<E> implements List<E> {
                 return next();
             } else {
                 try {
-                    E nextItem = items.get(this.nextIndex);
+                    E nextItem = items.get(position(this.nextIndex));
                     this.lastRetIndex = this.nextIndex;
                     this.nextIndex = this.nextIndex + 1;
+                    consumed = this.nextIndex;
                     return nextItem;
                 } catch (IndexOutOfBoundsException ex) {
                     // The nextIndex got invalid means a different instance of iterator
@@ -193,7 +659,7 @@ public abstract class PagedList<E> implements List<E> {
                 throw new IllegalStateException();
             } else {
                 try {
-                    items.remove(this.lastRetIndex);
+                    items.remove(position(this.lastRetIndex));
                     this.nextIndex = this.lastRetIndex;
                     this.lastRetIndex = -1;
                 } catch (IndexOutOfBoundsException ex) {
@@ -212,13 +678,13 @@ public abstract class PagedList<E> implements List<E> {
             int i = this.nextIndex - 1;
             if (i < 0) {
                 throw new NoSuchElementException();
-            } else if (i >= items.size()) {
+            } else if (i >= dropped + items.size()) {
                     throw new ConcurrentModificationException();
             } else {
                 try {
                     this.nextIndex = i;
                     this.lastRetIndex = i;
-                    return items.get(this.lastRetIndex);
+                    return items.get(position(this.lastRetIndex));
                 } catch (IndexOutOfBoundsException ex) {
                     throw new ConcurrentModificationException();
                 }
@@ -241,7 +707,7 @@ public abstract class PagedList<E> implements List<E> {
                 throw new IllegalStateException();
             } else {
                 try {
-                    items.set(this.lastRetIndex, e);
+                    items.set(position(this.lastRetIndex), e);
                 } catch (IndexOutOfBoundsException ex) {
                     throw new ConcurrentModificationException();
                 }
@@ -251,7 +717,7 @@ public abstract class PagedList<E> implements List<E> {
         @Override
         public void add(E e) {
             try {
-                items.add(this.nextIndex, e);
+                items.add(position(this.nextIndex), e);
                 this.nextIndex = this.nextIndex + 1;
                 this.lastRetIndex = -1;
             } catch (IndexOutOfBoundsException ex) {
@@ -262,6 +728,7 @@ public abstract class PagedList<E> implements List<E> {
 
     @Override
     public int size() {
+        requireAllItems("size()");
         loadAll();
         return items.size();
     }
@@ -273,38 +740,45 @@ public abstract class PagedList<E> implements List<E> {
 
     @Override
     public boolean contains(Object o) {
+        requireAllItems("contains(Object)");
         return indexOf(o) >= 0;
     }
 
     @Override
     public Iterator<E> iterator() {
+        requireNotIterated();
         return new ListItr(0);
     }
 
     @Override
     public Object[] toArray() {
+        requireAllItems("toArray()");
         loadAll();
         return items.toArray();
     }
 
     @Override
     public <T> T[] toArray(T[] a) {
+        requireAllItems("toArray(T[])");
         loadAll();
         return items.toArray(a);
     }
 
     @Override
     public boolean add(E e) {
+        requireAllItems("add(E)");
         return items.add(e);
     }
 
     @Override
     public boolean remove(Object o) {
+        requireAllItems("remove(Object)");
         return items.remove(o);
     }
 
     @Override
     public boolean containsAll(Collection<?> c) {
+        requireAllItems("containsAll(Collection)");
         for (Object e : c) {
             if (!contains(e)) {
                 return false;
@@ -315,21 +789,25 @@ public abstract class PagedList<E> implements List<E> {
 
     @Override
     public boolean addAll(Collection<? extends E> c) {
+        requireAllItems("addAll(Collection)");
         return items.addAll(c);
     }
 
     @Override
     public boolean addAll(int index, Collection<? extends E> c) {
+        requireAllItems("addAll(int, Collection)");
         return items.addAll(index, c);
     }
 
     @Override
     public boolean removeAll(Collection<?> c) {
+        requireAllItems("removeAll(Collection)");
         return items.removeAll(c);
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
+        requireAllItems("retainAll(Collection)");
         return items.retainAll(c);
     }
 
@@ -340,6 +818,7 @@ public abstract class PagedList<E> implements List<E> {
 
     @Override
     public E get(int index) {
+        requireAllItems("get(int)");
         while (index >= items.size() && hasNextPage()) {
             loadNextPage();
         }
@@ -348,21 +827,25 @@ public abstract class PagedList<E> implements List<E> {
 
     @Override
     public E set(int index, E element) {
+        requireAllItems("set(int, E)");
         return items.set(index, element);
     }
 
     @Override
     public void add(int index, E element) {
+        requireAllItems("add(int, E)");
         items.add(index, element);
     }
 
     @Override
     public E remove(int index) {
+        requireAllItems("remove(int)");
         return items.remove(index);
     }
 
     @Override
     public int indexOf(Object o) {
+        requireAllItems("indexOf(Object)");
         int index = 0;
         if (o == null) {
             for (E item : this) {
@@ -384,17 +867,20 @@ public abstract class PagedList<E> implements List<E> {
 
     @Override
     public int lastIndexOf(Object o) {
+        requireAllItems("lastIndexOf(Object)");
         loadAll();
         return items.lastIndexOf(o);
     }
 
     @Override
     public ListIterator<E> listIterator() {
+        requireNotIterated();
         return new ListItr(0);
     }
 
     @Override
     public ListIterator<E> listIterator(int index) {
+        requireAllItems("listIterator(int)");
         while (index >= items.size() && hasNextPage()) {
             loadNextPage();
         }
@@ -403,6 +889,7 @@ public abstract class PagedList<E> implements List<E> {
 
     @Override
     public List<E> subList(int fromIndex, int toIndex) {
+        requireAllItems("subList(int, int)");
         while ((fromIndex >= items.size()
                 || toIndex >= items.size())
                 && hasNextPage()) {
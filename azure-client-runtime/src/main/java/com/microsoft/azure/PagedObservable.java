@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.microsoft.rest.ServiceResponse;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Func1;
+import rx.subscriptions.SerialSubscription;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Reactive sources over the pages of a paging operation, fetching the pages
+ * one after the other as the subscribers request them. A page is fetched
+ * only when requested, or when it is within the number of pages to fetch
+ * ahead, so that slow subscribers hold back the fetches. Unsubscribing
+ * cancels the fetch in progress.
+ */
+public final class PagedObservable {
+    private PagedObservable() {
+    }
+
+    /**
+     * Gets the pages of a paging operation, fetching each page when requested.
+     *
+     * @param first the observable to the first page
+     * @param next the observable to a page from its link
+     * @param <E> the element type
+     * @return the observable of the pages
+     */
+    public static <E> Observable<ServiceResponse<Page<E>>> pages(Observable<ServiceResponse<Page<E>>> first,
+                                                                 Func1<String, Observable<ServiceResponse<Page<E>>>> next) {
+        return pages(first, next, 0);
+    }
+
+    /**
+     * Gets the pages of a paging operation, fetching each page when requested
+     * or when it is at most a number of pages ahead of the ones requested.
+     *
+     * @param first the observable to the first page
+     * @param next the observable to a page from its link
+     * @param prefetch the number of pages to fetch ahead of the requests
+     * @param <E> the element type
+     * @return the observable of the pages
+     */
+    public static <E> Observable<ServiceResponse<Page<E>>> pages(final Observable<ServiceResponse<Page<E>>> first,
+                                                                 final Func1<String, Observable<ServiceResponse<Page<E>>>> next,
+                                                                 final int prefetch) {
+        if (first == null) {
+            throw new NullPointerException("first == null");
+        }
+        if (next == null) {
+            throw new NullPointerException("next == null");
+        }
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch < 0: " + prefetch);
+        }
+        return Observable.create(new Observable.OnSubscribe<ServiceResponse<Page<E>>>() {
+            @Override
+            public void call(Subscriber<? super ServiceResponse<Page<E>>> child) {
+                PageProducer<E> producer = new PageProducer<>(child, first, next, prefetch);
+                child.add(producer.fetch);
+                child.setProducer(producer);
+            }
+        });
+    }
+
+    /**
+     * Gets the items of a paging operation, fetching the pages as the items are requested.
+     *
+     * @param first the observable to the first page
+     * @param next the observable to a page from its link
+     * @param <E> the element type
+     * @return the observable of the items
+     */
+    public static <E> Observable<E> items(Observable<ServiceResponse<Page<E>>> first,
+                                          Func1<String, Observable<ServiceResponse<Page<E>>>> next) {
+        return items(first, next, 0);
+    }
+
+    /**
+     * Gets the items of a paging operation, fetching the pages as the items
+     * are requested and at most a number of pages ahead.
+     *
+     * @param first the observable to the first page
+     * @param next the observable to a page from its link
+     * @param prefetch the number of pages to fetch ahead of the requests
+     * @param <E> the element type
+     * @return the observable of the items
+     */
+    public static <E> Observable<E> items(Observable<ServiceResponse<Page<E>>> first,
+                                          Func1<String, Observable<ServiceResponse<Page<E>>>> next,
+                                          int prefetch) {
+        // Flattening one page at a time keeps the page requests within a couple of pages of the item requests
+        return pages(first, next, prefetch).flatMapIterable(new Func1<ServiceResponse<Page<E>>, Iterable<E>>() {
+            @Override
+            public Iterable<E> call(ServiceResponse<Page<E>> response) {
+                List<E> items = response.body().items();
+                return items != null ? items : Collections.<E>emptyList();
+            }
+        }, 1);
+    }
+
+    /**
+     * Fetches the pages for a subscriber as it requests them, one fetch at a time.
+     *
+     * @param <E> the element type
+     */
+    private static final class PageProducer<E> implements Producer {
+        /** The subscriber of the pages. */
+        private final Subscriber<? super ServiceResponse<Page<E>>> child;
+        /** The observable to a page from its link. */
+        private final Func1<String, Observable<ServiceResponse<Page<E>>>> next;
+        /** The number of pages to fetch ahead of the requests. */
+        private final int prefetch;
+        /** The fetch in progress, unsubscribed with the subscriber. */
+        private final SerialSubscription fetch = new SerialSubscription();
+        /** The pages fetched and not emitted yet. */
+        private final Deque<ServiceResponse<Page<E>>> ready = new ArrayDeque<>();
+        /** The number of pages requested and not emitted yet. */
+        private long requested;
+        /** The next page to fetch, or null after the last page. */
+        private Observable<ServiceResponse<Page<E>>> pending;
+        /** Whether a fetch is in progress. */
+        private boolean fetching;
+        /** The error fetching a page. */
+        private Throwable error;
+        /** Whether a thread is draining. */
+        private boolean emitting;
+        /** Whether draining should go round again. */
+        private boolean missed;
+
+        PageProducer(Subscriber<? super ServiceResponse<Page<E>>> child, Observable<ServiceResponse<Page<E>>> first,
+                     Func1<String, Observable<ServiceResponse<Page<E>>>> next, int prefetch) {
+            this.child = child;
+            this.next = next;
+            this.prefetch = prefetch;
+            this.pending = first;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("n < 0: " + n);
+            }
+            if (n == 0) {
+                return;
+            }
+            synchronized (this) {
+                requested += n;
+                if (requested < 0) {
+                    requested = Long.MAX_VALUE;
+                }
+            }
+            drain();
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (emitting) {
+                    missed = true;
+                    return;
+                }
+                emitting = true;
+            }
+            for (;;) {
+                ServiceResponse<Page<E>> page = null;
+                Throwable failure = null;
+                boolean completed = false;
+                Observable<ServiceResponse<Page<E>>> toFetch = null;
+                synchronized (this) {
+                    if (child.isUnsubscribed()) {
+                        emitting = false;
+                        return;
+                    }
+                    if (requested > 0 && !ready.isEmpty()) {
+                        page = ready.poll();
+                        if (requested != Long.MAX_VALUE) {
+                            requested--;
+                        }
+                    } else if (ready.isEmpty() && error != null) {
+                        failure = error;
+                    } else if (ready.isEmpty() && pending == null && !fetching) {
+                        completed = true;
+                    } else if (!fetching && pending != null && (ready.size() < prefetch || ready.size() < requested)) {
+                        toFetch = pending;
+                        pending = null;
+                        fetching = true;
+                    } else if (!missed) {
+                        emitting = false;
+                        return;
+                    } else {
+                        missed = false;
+                        continue;
+                    }
+                }
+                if (page != null) {
+                    child.onNext(page);
+                } else if (failure != null) {
+                    child.onError(failure);
+                    return;
+                } else if (completed) {
+                    child.onCompleted();
+                    return;
+                } else {
+                    subscribe(toFetch);
+                }
+            }
+        }
+
+        private void subscribe(Observable<ServiceResponse<Page<E>>> page) {
+            fetch.set(page.single().subscribe(new Subscriber<ServiceResponse<Page<E>>>() {
+                @Override
+                public void onNext(ServiceResponse<Page<E>> response) {
+                    String nextPageLink = response.body().nextPageLink();
+                    synchronized (PageProducer.this) {
+                        ready.add(response);
+                        if (nextPageLink != null) {
+                            pending = next.call(nextPageLink);
+                        }
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    synchronized (PageProducer.this) {
+                        fetching = false;
+                    }
+                    drain();
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    synchronized (PageProducer.this) {
+                        error = e;
+                        pending = null;
+                        fetching = false;
+                    }
+                    drain();
+                }
+            }));
+        }
+    }
+}
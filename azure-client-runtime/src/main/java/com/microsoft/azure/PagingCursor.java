@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+/**
+ * The position of an enumeration over a {@link PagedList}: the link the
+ * page of the next item was fetched from, and the offset of the item in the
+ * page. A cursor resumes the enumeration with {@link PagedList#resume(PagingCursor)},
+ * and its string form is compact enough to be stored often.
+ */
+public final class PagingCursor {
+    /** The link the page was fetched from, or null for the first page. */
+    private final String pageLink;
+    /** The offset of the next item in the page. */
+    private final int offset;
+
+    /**
+     * Initializes an instance of {@link PagingCursor} class.
+     *
+     * @param pageLink the link the page was fetched from, or null for the first page
+     * @param offset the offset of the next item in the page
+     */
+    public PagingCursor(String pageLink, int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset < 0: " + offset);
+        }
+        this.pageLink = pageLink == null || pageLink.isEmpty() ? null : pageLink;
+        this.offset = offset;
+    }
+
+    /**
+     * Parses the string form of a cursor.
+     *
+     * @param cursor the string form of the cursor, as returned by {@link #toString()}
+     * @return the cursor
+     */
+    public static PagingCursor parse(String cursor) {
+        if (cursor == null) {
+            throw new NullPointerException("cursor == null");
+        }
+        int separator = cursor.indexOf(' ');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid paging cursor: " + cursor);
+        }
+        try {
+            return new PagingCursor(cursor.substring(separator + 1), Integer.parseInt(cursor.substring(0, separator)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid paging cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * @return the link the page was fetched from, or null for the first page
+     */
+    public String pageLink() {
+        return pageLink;
+    }
+
+    /**
+     * @return the offset of the next item in the page
+     */
+    public int offset() {
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PagingCursor)) {
+            return false;
+        }
+        PagingCursor other = (PagingCursor) o;
+        return offset == other.offset && (pageLink == null ? other.pageLink == null : pageLink.equals(other.pageLink));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * offset + (pageLink == null ? 0 : pageLink.hashCode());
+    }
+
+    /**
+     * @return the offset and the link separated by a space, the string form parsed by {@link #parse(String)}
+     */
+    @Override
+    public String toString() {
+        return offset + " " + (pageLink == null ? "" : pageLink);
+    }
+}
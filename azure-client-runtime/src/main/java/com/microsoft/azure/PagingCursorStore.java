@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import java.io.IOException;
+
+/**
+ * Stores the checkpoints of an enumeration over a {@link PagedList}, to
+ * resume it after a crash. {@link FilePagingCursorStore} keeps them in a file.
+ */
+public interface PagingCursorStore {
+    /**
+     * Saves a checkpoint, replacing the previous one.
+     *
+     * @param cursor the position of the enumeration
+     * @throws IOException thrown if the checkpoint cannot be saved
+     */
+    void save(PagingCursor cursor) throws IOException;
+
+    /**
+     * Loads the last checkpoint.
+     *
+     * @return the position of the enumeration, or null if there is no checkpoint
+     * @throws IOException thrown if the checkpoint cannot be loaded
+     */
+    PagingCursor load() throws IOException;
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+/**
+ * Decides how long to wait between two polls of a long running operation
+ * when the service gives no Retry-After header and no fixed interval is set
+ * with {@link AzureClient#setLongRunningOperationRetryTimeout(int)}. The
+ * policy is shared by all the operations of an {@link AzureClient}, so it
+ * must be safe to use from several threads.
+ */
+public abstract class PollingPolicy {
+    /**
+     * Gets the delay before the next poll of an operation.
+     *
+     * @param pollingState the polling state of the operation, after its last response
+     * @return the delay in milliseconds
+     */
+    public abstract long delayInMilliseconds(PollingState<?> pollingState);
+
+    /**
+     * Called once an operation reaches a terminal status, for the policy to
+     * learn from it. Does nothing by default.
+     *
+     * @param pollingState the polling state of the operation
+     */
+    public void onCompleted(PollingState<?> pollingState) {
+    }
+}
@@ -15,6 +15,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.google.common.base.Ticker;
 import com.microsoft.rest.protocol.SerializerAdapter;
 import com.microsoft.rest.serializer.Base64UrlSerializer;
 import com.microsoft.rest.serializer.ByteArraySerializer;
@@ -26,6 +27,7 @@ import retrofit2.Response;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An instance of this class defines polling status of a long running operation.
@@ -76,6 +78,21 @@ public class PollingState<T> {
     /** The adapter for a custom serializer. */
     @JsonIgnore
     private SerializerAdapter<?> serializerAdapter;
+    /** A time not reached yet. */
+    @JsonIgnore
+    private static final long UNSET = Long.MIN_VALUE;
+    /** The monotonic clock timing the operation. */
+    @JsonIgnore
+    private Ticker ticker = Ticker.systemTicker();
+    /** When the polling started, in {@link #ticker} nanoseconds. */
+    @JsonIgnore
+    private long startedAtNanos = UNSET;
+    /** The number of polls so far. */
+    @JsonIgnore
+    private int pollCount;
+    /** When a response last found the operation running, in {@link #ticker} nanoseconds. */
+    @JsonIgnore
+    private long runningAtNanos = UNSET;
 
     /**
      * Default constructor.
@@ -95,8 +112,27 @@ public class PollingState<T> {
      * @throws IOException thrown by deserialization
      */
     public static <T> PollingState<T> create(Response<ResponseBody> response, int defaultRetryTimeout, Type resourceType, SerializerAdapter<?> serializerAdapter) throws IOException {
+        return create(response, defaultRetryTimeout, resourceType, serializerAdapter, Ticker.systemTicker());
+    }
+
+    /**
+     * Creates a polling state timed by a given clock.
+     *
+     * @param response the response from Retrofit REST call that initiate the long running operation.
+     * @param defaultRetryTimeout the long running operation retry timeout.
+     * @param resourceType the type of the resource the long running operation returns
+     * @param serializerAdapter the adapter for the Jackson object mapper
+     * @param ticker the monotonic clock timing the operation
+     * @param <T> the result type
+     * @return the polling state
+     * @throws IOException thrown by deserialization
+     */
+    static <T> PollingState<T> create(Response<ResponseBody> response, int defaultRetryTimeout, Type resourceType,
+                                      SerializerAdapter<?> serializerAdapter, Ticker ticker) throws IOException {
         PollingState<T> pollingState = new PollingState<>();
         pollingState.initialHttpMethod = response.raw().request().method();
+        pollingState.ticker = ticker;
+        pollingState.startedAtNanos = ticker.read();
         pollingState.defaultRetryTimeout = defaultRetryTimeout;
         pollingState.withResponse(response);
         pollingState.resourceType = resourceType;
@@ -171,6 +207,10 @@ public class PollingState<T> {
         pollingState.putOrPatchResourceUri = other.putOrPatchResourceUri();
         pollingState.defaultRetryTimeout = other.defaultRetryTimeout;
         pollingState.retryTimeout = other.retryTimeout;
+        pollingState.ticker = other.ticker;
+        pollingState.startedAtNanos = other.startedAtNanos;
+        pollingState.pollCount = other.pollCount;
+        pollingState.runningAtNanos = other.runningAtNanos;
         pollingState.loggingContext = other.loggingContext;
         return pollingState;
     }
@@ -300,18 +340,66 @@ public class PollingState<T> {
     }
 
     /**
-     * Gets long running operation delay in milliseconds.
+     * Gets long running operation delay in milliseconds before the next poll,
+     * counting the poll. The Retry-After header of the last response comes
+     * first, then the interval set on the client, then the polling policy.
      *
+     * @param pollingPolicy the policy deciding the delay otherwise
      * @return the delay in milliseconds.
      */
-    int delayInMilliseconds() {
+    long delayInMilliseconds(PollingPolicy pollingPolicy) {
+        long now = ticker.read();
+        if (this.startedAtNanos == UNSET) {
+            // a polling state created from JSON starts polling now
+            this.startedAtNanos = now;
+        }
+        // the next poll is only asked for after a response finding the operation running
+        this.runningAtNanos = now;
+        this.pollCount++;
         if (this.retryTimeout >= 0) {
             return this.retryTimeout;
         }
         if (this.defaultRetryTimeout >= 0) {
-            return this.defaultRetryTimeout * 1000;
+            return this.defaultRetryTimeout * 1000L;
+        }
+        return pollingPolicy.delayInMilliseconds(this);
+    }
+
+    /**
+     * Gets the number of polls so far, including the one about to be made.
+     *
+     * @return the number of polls.
+     */
+    public int pollCount() {
+        return pollCount;
+    }
+
+    /**
+     * Gets how long the operation has been polled, since it started or since
+     * the polling state was restored from JSON.
+     *
+     * @return the time in milliseconds.
+     */
+    public long elapsedInMilliseconds() {
+        return startedAtNanos == UNSET ? 0 : TimeUnit.NANOSECONDS.toMillis(ticker.read() - startedAtNanos);
+    }
+
+    /**
+     * Estimates how long the operation took once it reached a terminal status:
+     * from its start to the middle of the interval between the last response
+     * finding it running and the one finding it terminal. The time spent
+     * waiting between the polls is not counted in full, so the estimate goes
+     * down as well as up when the operations get faster.
+     *
+     * @return the time in milliseconds.
+     */
+    public long durationInMilliseconds() {
+        if (startedAtNanos == UNSET) {
+            return 0;
         }
-        return AzureAsyncOperation.DEFAULT_DELAY * 1000;
+        long now = ticker.read();
+        long running = runningAtNanos != UNSET ? runningAtNanos : startedAtNanos;
+        return TimeUnit.NANOSECONDS.toMillis(running - startedAtNanos + (now - running) / 2);
     }
 
     /**
@@ -348,7 +436,7 @@ public class PollingState<T> {
     /**
      * @return true if the status this state represents is succeeded status.
      */
-    boolean isStatusSucceeded() {
+    public boolean isStatusSucceeded() {
         return AzureAsyncOperation.SUCCESS_STATUS.equalsIgnoreCase(this.status());
     }
 
@@ -448,7 +536,7 @@ public class PollingState<T> {
     /**
      * @return the resource type
      */
-    Type resourceType() {
+    public Type resourceType() {
         return resourceType;
     }
 
@@ -494,7 +582,7 @@ public class PollingState<T> {
     /**
      * @return the http method used to initiate the long running operation.
      */
-    String initialHttpMethod() {
+    public String initialHttpMethod() {
         return this.initialHttpMethod;
     }
 
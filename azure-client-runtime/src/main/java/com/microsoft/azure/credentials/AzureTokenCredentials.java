@@ -9,6 +9,7 @@ package com.microsoft.azure.credentials;
 import com.microsoft.azure.AzureEnvironment;
 import com.microsoft.azure.AzureEnvironment.Endpoint;
 import com.microsoft.rest.credentials.TokenCredentials;
+import com.microsoft.rest.metrics.RuntimeEvents;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 
@@ -60,7 +61,10 @@ public abstract class AzureTokenCredentials extends TokenCredentials {
     }
 
     /**
-     * Override this method to provide the mechanism to get a token.
+     * Override this method to provide the mechanism to get a token. The
+     * implementations report the tokens they fetch with
+     * {@link RuntimeEvents#tokenAcquired(String, long)}, and the ones they
+     * serve from a cache with {@link RuntimeEvents#tokenCacheHit(String)}.
      *
      * @param resource the resource the access token is for
      * @return the token to access the resource
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.google.common.base.Ticker;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AdaptivePollingPolicyTests {
+    @Test
+    public void backsOffGeometrically() throws Exception {
+        AdaptivePollingPolicy policy = new AdaptivePollingPolicy(100, 2, 1000);
+        PollingState<String> pollingState = pollingState(String.class, null);
+        long[] expected = {100, 200, 400, 800, 1000, 1000};
+        for (long delay : expected) {
+            Assert.assertEquals(delay, pollingState.delayInMilliseconds(policy));
+        }
+        Assert.assertEquals(6, pollingState.pollCount());
+    }
+
+    @Test
+    public void honorsRetryAfter() throws Exception {
+        AdaptivePollingPolicy policy = new AdaptivePollingPolicy(100, 2, 1000);
+        PollingState<String> pollingState = pollingState(String.class, Headers.of("Retry-After", "3"));
+        Assert.assertEquals(3000, pollingState.delayInMilliseconds(policy));
+        Assert.assertEquals(3000, pollingState.delayInMilliseconds(policy));
+    }
+
+    @Test
+    public void learnsTypicalDurations() throws Exception {
+        AdaptivePollingPolicy policy = new AdaptivePollingPolicy(100, 2, 1000);
+        FakeTicker ticker = new FakeTicker();
+        PollingState<String> completed = pollingState(String.class, null, ticker);
+        Assert.assertEquals(100, completed.delayInMilliseconds(policy));
+        Assert.assertEquals(-1, policy.typicalDurationInMilliseconds(completed));
+        ticker.advance(300);
+        // still running 300 milliseconds in, then done right after
+        completed.delayInMilliseconds(policy);
+        completed.withStatus(AzureAsyncOperation.SUCCESS_STATUS);
+        policy.onCompleted(completed);
+        Assert.assertEquals(300, policy.typicalDurationInMilliseconds(completed));
+
+        // A failed operation teaches nothing
+        PollingState<String> failed = pollingState(String.class, null, ticker);
+        failed.delayInMilliseconds(policy);
+        failed.withStatus(AzureAsyncOperation.FAILED_STATUS);
+        policy.onCompleted(failed);
+        Assert.assertEquals(300, policy.typicalDurationInMilliseconds(failed));
+
+        // An operation like it waits until it is about as old, then polls fast
+        PollingState<String> next = pollingState(String.class, null, ticker);
+        Assert.assertEquals(300, next.delayInMilliseconds(policy));
+        ticker.advance(300);
+        Assert.assertEquals(100, next.delayInMilliseconds(policy));
+
+        // Another resource type learns on its own
+        PollingState<Integer> other = pollingState(Integer.class, null, ticker);
+        Assert.assertEquals(100, other.delayInMilliseconds(policy));
+    }
+
+    @Test
+    public void learnsShorterDurations() throws Exception {
+        AdaptivePollingPolicy policy = new AdaptivePollingPolicy(100, 2, 1000);
+        FakeTicker ticker = new FakeTicker();
+        PollingState<String> slow = pollingState(String.class, null, ticker);
+        slow.delayInMilliseconds(policy);
+        ticker.advance(400);
+        slow.delayInMilliseconds(policy);
+        slow.withStatus(AzureAsyncOperation.SUCCESS_STATUS);
+        policy.onCompleted(slow);
+        Assert.assertEquals(400, policy.typicalDurationInMilliseconds(slow));
+
+        // An operation done long before its first poll at the typical age counts for half the wait
+        PollingState<String> fast = pollingState(String.class, null, ticker);
+        ticker.advance(fast.delayInMilliseconds(policy));
+        fast.withStatus(AzureAsyncOperation.SUCCESS_STATUS);
+        Assert.assertEquals(200, fast.durationInMilliseconds());
+        policy.onCompleted(fast);
+        Assert.assertEquals(360, policy.typicalDurationInMilliseconds(fast));
+    }
+
+    @Test
+    public void resetsBackoffAtTypicalAge() throws Exception {
+        // The typical duration is longer than the maximum delay
+        AdaptivePollingPolicy policy = new AdaptivePollingPolicy(20, 2, 100);
+        FakeTicker ticker = new FakeTicker();
+        PollingState<String> completed = pollingState(String.class, null, ticker);
+        completed.delayInMilliseconds(policy);
+        ticker.advance(500);
+        completed.delayInMilliseconds(policy);
+        completed.withStatus(AzureAsyncOperation.SUCCESS_STATUS);
+        policy.onCompleted(completed);
+        Assert.assertEquals(500, policy.typicalDurationInMilliseconds(completed));
+
+        // Polls at the maximum delay until the typical age, then backs off from the initial delay
+        PollingState<String> next = pollingState(String.class, null, ticker);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(100, next.delayInMilliseconds(policy));
+            ticker.advance(100);
+        }
+        ticker.advance(100);
+        Assert.assertEquals(20, next.delayInMilliseconds(policy));
+        ticker.advance(20);
+        Assert.assertEquals(40, next.delayInMilliseconds(policy));
+        ticker.advance(40);
+        Assert.assertEquals(80, next.delayInMilliseconds(policy));
+        ticker.advance(200);
+        Assert.assertEquals(100, next.delayInMilliseconds(policy));
+    }
+
+    private static <T> PollingState<T> pollingState(Type resourceType, Headers headers) throws IOException {
+        return pollingState(resourceType, headers, new FakeTicker());
+    }
+
+    private static <T> PollingState<T> pollingState(Type resourceType, Headers headers, Ticker ticker)
+            throws IOException {
+        ResponseBody body = ResponseBody.create(MediaType.parse("application/json"), "");
+        Response<ResponseBody> response = headers != null ? Response.success(body, headers) : Response.success(body);
+        PollingState<T> pollingState = PollingState.create(response, -1, resourceType, new JacksonAdapter(), ticker);
+        return pollingState.withStatus(AzureAsyncOperation.IN_PROGRESS_STATUS);
+    }
+
+    /**
+     * A clock moved by hand, starting at a negative time.
+     */
+    private static final class FakeTicker extends Ticker {
+        private final AtomicLong now = new AtomicLong(-TimeUnit.HOURS.toNanos(5));
+
+        void advance(long millis) {
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        @Override
+        public long read() {
+            return now.get();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.microsoft.azure.serializer.AzureJacksonAdapter;
+import com.microsoft.rest.RestClient;
+import com.microsoft.rest.ServiceResponse;
+import com.microsoft.rest.TimerWheelScheduler;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Response;
+import rx.Observable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AzureClientTests {
+    @Test
+    public void pollsDoNotHoldTimerThreads() throws Exception {
+        // more operations than timer threads, whose second polls are all in flight together
+        final int operations = TimerWheelScheduler.DEFAULT_THREADS * 2;
+        final CountDownLatch inFlight = new CountDownLatch(operations);
+        final ConcurrentMap<String, Boolean> polled = new ConcurrentHashMap<>();
+        final AtomicBoolean stalled = new AtomicBoolean();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new AzureJacksonAdapter())
+                .withResponseBuilderFactory(new AzureResponseBuilder.Factory())
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public okhttp3.Response intercept(Chain chain) throws IOException {
+                        Request request = chain.request();
+                        int code = 202;
+                        if (polled.putIfAbsent(request.url().toString(), true) != null) {
+                            // a slow poll endpoint
+                            inFlight.countDown();
+                            try {
+                                if (!inFlight.await(5, TimeUnit.SECONDS)) {
+                                    stalled.set(true);
+                                }
+                            } catch (InterruptedException e) {
+                                throw new IOException(e);
+                            }
+                            code = 204;
+                        }
+                        return new okhttp3.Response.Builder()
+                                .request(request)
+                                .code(code)
+                                .message("OK")
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("application/json"), ""))
+                                .build();
+                    }
+                })
+                .build();
+        try {
+            AzureClient azureClient = new AzureClient(new AzureServiceClient(restClient) { });
+            azureClient.setLongRunningOperationRetryTimeout(0);
+            List<Observable<ServiceResponse<Object>>> results = new ArrayList<>();
+            for (int i = 0; i < operations; i++) {
+                String location = "http://localhost/operations/" + i;
+                okhttp3.Response raw = new okhttp3.Response.Builder()
+                        .request(new Request.Builder().url("http://localhost/resources/" + i).delete().build())
+                        .code(202)
+                        .message("Accepted")
+                        .header("Location", location)
+                        .protocol(Protocol.HTTP_1_1)
+                        .build();
+                Observable<Response<ResponseBody>> initial = Observable.just(
+                        Response.success(ResponseBody.create(MediaType.parse("application/json"), ""), raw));
+                results.add(azureClient.<Object>getPostOrDeleteResultAsync(initial, Object.class));
+            }
+            List<ServiceResponse<Object>> responses = Observable.merge(results).toList().toBlocking().single();
+            Assert.assertFalse(stalled.get());
+            Assert.assertEquals(operations, responses.size());
+            for (ServiceResponse<Object> response : responses) {
+                Assert.assertEquals(204, response.response().code());
+            }
+        } finally {
+            restClient.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.microsoft.rest.ServiceResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+import rx.functions.Action2;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PagedFanOutTests {
+    /**
+     * A paging operation with a number of pages of one item, the source times 100 plus the page number.
+     */
+    private static Func1<String, Observable<ServiceResponse<Page<Integer>>>> source(final int source, final int pages,
+                                                                                   final int failAt) {
+        return new Func1<String, Observable<ServiceResponse<Page<Integer>>>>() {
+            @Override
+            public Observable<ServiceResponse<Page<Integer>>> call(String link) {
+                final int page = Integer.parseInt(link);
+                if (page == failAt) {
+                    return Observable.error(new IllegalStateException("source " + source));
+                }
+                Page<Integer> body = new Page<Integer>() {
+                    @Override
+                    public String nextPageLink() {
+                        return page + 1 < pages ? Integer.toString(page + 1) : null;
+                    }
+
+                    @Override
+                    public List<Integer> items() {
+                        return Collections.singletonList(source * 100 + page);
+                    }
+                };
+                return Observable.just(new ServiceResponse<>(body, null)).delay(5, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    private static PagedFanOut<Integer> fanOut(int sources, int failing) {
+        PagedFanOut<Integer> fanOut = new PagedFanOut<>();
+        for (int i = 0; i < sources; i++) {
+            Func1<String, Observable<ServiceResponse<Page<Integer>>>> next = source(i, 3, i == failing ? 1 : -1);
+            fanOut.withSource(next.call("0"), next);
+        }
+        return fanOut;
+    }
+
+    @Test
+    public void mergesPagesOfAllSources() {
+        List<Integer> items = new ArrayList<>(fanOut(10, -1).withMaxConcurrency(4).items().toList().toBlocking().single());
+        Assert.assertEquals(30, items.size());
+        Collections.sort(items);
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 100, 101, 102), items.subList(0, 6));
+    }
+
+    @Test
+    public void keepsSourceOrderWhenAsked() {
+        List<Integer> items = fanOut(4, -1).withOrder(PagedFanOut.Order.SOURCE).items().toList().toBlocking().single();
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 100, 101, 102, 200, 201, 202, 300, 301, 302), items);
+    }
+
+    @Test
+    public void isolatesErrorsOfSources() {
+        final ConcurrentMap<Integer, Throwable> errors = new ConcurrentHashMap<>();
+        List<Integer> items = fanOut(3, 1).withErrorHandler(new Action2<Integer, Throwable>() {
+            @Override
+            public void call(Integer index, Throwable throwable) {
+                errors.put(index, throwable);
+            }
+        }).items().toList().toBlocking().single();
+        Assert.assertEquals(7, items.size());
+        Assert.assertEquals("source 1", errors.get(1).getMessage());
+
+        try {
+            fanOut(3, 1).items().toList().toBlocking().single();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("source 1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void mergesIntoPagedList() {
+        PagedList<Integer> list = fanOut(5, -1).toPagedList();
+        Assert.assertEquals(15, list.size());
+        Assert.assertEquals(0, new PagedFanOut<Integer>().toPagedList().size());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 100, 101, 102, 200, 201, 202),
+                new ArrayList<>(fanOut(3, -1).withOrder(PagedFanOut.Order.SOURCE).withMaxConcurrency(2).toPagedList()));
+        try {
+            fanOut(3, 1).toPagedList().loadAll();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("source 1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void pagedListRequestsPagesOnDemand() throws Exception {
+        final AtomicInteger fetched = new AtomicInteger();
+        final Func1<String, Observable<ServiceResponse<Page<Integer>>>> pages = source(0, 1000, -1);
+        Func1<String, Observable<ServiceResponse<Page<Integer>>>> next = new Func1<String, Observable<ServiceResponse<Page<Integer>>>>() {
+            @Override
+            public Observable<ServiceResponse<Page<Integer>>> call(String link) {
+                fetched.incrementAndGet();
+                return pages.call(link);
+            }
+        };
+        PagedFanOut.MergedPagedList<Integer> list = new PagedFanOut<Integer>()
+                .withSource(pages.call("0"), next).toPagedList();
+        Iterator<Integer> iterator = list.iterator();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(i, (int) iterator.next());
+        }
+        Thread.sleep(100);
+        // a few pages ahead at most, not a batch of the merged observable
+        Assert.assertTrue(fetched.get() < 8);
+
+        // an abandoned listing is cancelled
+        list.close();
+        Thread.sleep(100);
+        int stopped = fetched.get();
+        Thread.sleep(100);
+        Assert.assertEquals(stopped, fetched.get());
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+        Assert.assertTrue(list.size() < 8);
+    }
+
+    @Test
+    public void pagesRequestsPagesOnDemand() throws Exception {
+        for (PagedFanOut.Order order : PagedFanOut.Order.values()) {
+            final AtomicInteger fetched = new AtomicInteger();
+            PagedFanOut<Integer> fanOut = new PagedFanOut<Integer>().withOrder(order);
+            for (int i = 0; i < 2; i++) {
+                final Func1<String, Observable<ServiceResponse<Page<Integer>>>> pages = source(i, 1000, -1);
+                fanOut.withSource(pages.call("0"), new Func1<String, Observable<ServiceResponse<Page<Integer>>>>() {
+                    @Override
+                    public Observable<ServiceResponse<Page<Integer>>> call(String link) {
+                        fetched.incrementAndGet();
+                        return pages.call(link);
+                    }
+                });
+            }
+            TestSubscriber<ServiceResponse<Page<Integer>>> subscriber = new TestSubscriber<>(1);
+            fanOut.pages().subscribe(subscriber);
+            subscriber.awaitValueCount(1, 5, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            // a page ahead for each source at most, not a batch of a merged observable
+            Assert.assertTrue(fetched.get() < 8);
+
+            subscriber.requestMore(2);
+            subscriber.awaitValueCount(3, 5, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            Assert.assertTrue(fetched.get() < 10);
+            subscriber.assertValueCount(3);
+
+            // an abandoned subscription is cancelled
+            subscriber.unsubscribe();
+            Thread.sleep(100);
+            int stopped = fetched.get();
+            Thread.sleep(100);
+            Assert.assertEquals(stopped, fetched.get());
+
+            Assert.assertEquals(3, fanOut.items().take(3).toList().toBlocking().single().size());
+        }
+    }
+}
@@ -6,6 +6,8 @@
 
 package com.microsoft.azure;
 
+import com.microsoft.rest.metrics.RuntimeEventListener;
+import com.microsoft.rest.metrics.RuntimeEvents;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,10 +15,21 @@ import rx.Observable;
 import rx.functions.Action1;
 import rx.functions.Func0;
 
+import java.io.File;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PagedListTests {
     private PagedList<Integer> list;
@@ -323,6 +336,314 @@ public class PagedListTests {
         Assert.assertEquals(19, obpl.loadNextPageCallCount);
     }
 
+    @Test
+    public void emitsPageFetchEvents() {
+        final List<String> links = new ArrayList<>();
+        final int[] items = new int[1];
+        RuntimeEvents.withListener(new RuntimeEventListener() {
+            @Override
+            public void onPageFetched(String nextPageLink, int itemCount, long durationNanos) {
+                links.add(nextPageLink);
+                items[0] += itemCount;
+            }
+        });
+        try {
+            setupList();
+            list.loadAll();
+        } finally {
+            RuntimeEvents.withListener(null);
+        }
+        Assert.assertEquals(20, links.size());
+        Assert.assertEquals("1", links.get(0));
+        Assert.assertEquals(19, items[0]);
+    }
+
+    @Test
+    public void prefetchesPagesInBackground() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicInteger fetches = new AtomicInteger();
+        try {
+            PagedList<Integer> prefetched = new PagedList<Integer>(new TestPage(0, 21)) {
+                @Override
+                public Page<Integer> nextPage(String nextPageLink) {
+                    fetches.incrementAndGet();
+                    return new TestPage(Integer.parseInt(nextPageLink), 21);
+                }
+            }.withPrefetch(3, executor);
+            // The cached page plus 3 pages ahead, and no more until consumed
+            Thread.sleep(200);
+            Assert.assertEquals(4, fetches.get());
+            int j = 0;
+            for (int i : prefetched) {
+                Assert.assertEquals(j++, i);
+            }
+            Assert.assertEquals(20, j);
+            Assert.assertEquals(20, fetches.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void prefetchSurfacesErrorsAtFailedPage() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            PagedList<Integer> prefetched = new PagedList<Integer>(new TestPage(0, 21)) {
+                @Override
+                public Page<Integer> nextPage(String nextPageLink) {
+                    if ("5".equals(nextPageLink)) {
+                        throw new IllegalStateException("page 5");
+                    }
+                    return new TestPage(Integer.parseInt(nextPageLink), 21);
+                }
+            }.withPrefetch(4, executor);
+            Iterator<Integer> iterator = prefetched.iterator();
+            for (int i = 0; i < 4; i++) {
+                Assert.assertEquals(i, (int) iterator.next());
+            }
+            try {
+                iterator.next();
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("page 5", e.getMessage());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void forwardOnlyDropsConsumedPages() {
+        PagedList<Integer> forwardOnly = new PagedList<Integer>(new TestPage(0, 21)) {
+            @Override
+            public Page<Integer> nextPage(String nextPageLink) {
+                return new TestPage(Integer.parseInt(nextPageLink), 21);
+            }
+        }.withForwardOnly();
+        int j = 0;
+        for (int i : forwardOnly) {
+            Assert.assertEquals(j++, i);
+            Assert.assertEquals(Arrays.asList(i), forwardOnly.currentPage().items());
+            // only the page of the cursor is kept
+            Assert.assertEquals(1, forwardOnly.markCount());
+            Assert.assertEquals(i == 0 ? null : Integer.toString(i), forwardOnly.cursor().pageLink());
+            Assert.assertEquals(1, forwardOnly.cursor().offset());
+        }
+        Assert.assertEquals(20, j);
+        try {
+            forwardOnly.iterator();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            forwardOnly.size();
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals("size() is not supported by a forward-only PagedList", e.getMessage());
+        }
+        try {
+            forwardOnly.get(0);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void processesPagesInParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> sums = new ArrayList<>();
+            int pages = 0;
+            for (final List<Integer> page : list.pages()) {
+                pages++;
+                sums.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int sum = 0;
+                        for (int i : page) {
+                            sum += i;
+                        }
+                        return sum;
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> sum : sums) {
+                total += sum.get();
+            }
+            Assert.assertEquals(20, pages);
+            Assert.assertEquals(190, total);
+            Assert.assertEquals(20, list.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void resumesFromCursor() throws Exception {
+        Iterator<Integer> iterator = list.iterator();
+        for (int i = 0; i < 7; i++) {
+            iterator.next();
+        }
+        PagingCursor cursor = PagingCursor.parse(list.cursor().toString());
+        Assert.assertEquals(new PagingCursor("6", 1), cursor);
+
+        PagedList<Integer> resumed = new PagedList<Integer>() {
+            @Override
+            public Page<Integer> nextPage(String nextPageLink) {
+                return new TestPage(Integer.parseInt(nextPageLink), 21);
+            }
+        }.resume(cursor);
+        int j = 7;
+        for (int i : resumed) {
+            Assert.assertEquals(j++, i);
+        }
+        Assert.assertEquals(20, j);
+
+        setupList();
+        list.resume(new PagingCursor(null, 0));
+        Assert.assertEquals(20, list.size());
+        try {
+            Iterator<Integer> started = list.iterator();
+            started.next();
+            started.next();
+            list.resume(new PagingCursor(null, 0));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void savesCheckpointsToFile() throws Exception {
+        File file = File.createTempFile("cursor", ".txt");
+        Assert.assertTrue(file.delete());
+        try {
+            FilePagingCursorStore store = new FilePagingCursorStore(file);
+            Assert.assertNull(store.load());
+            list.withCheckpoints(store, 5);
+            Iterator<Integer> iterator = list.iterator();
+            for (int i = 0; i < 12; i++) {
+                iterator.next();
+            }
+            // The checkpoint was saved when page 10 was loaded, after the items before it were consumed
+            Assert.assertEquals(new PagingCursor("10", 0), store.load());
+
+            setupList();
+            int j = 10;
+            for (int i : list.resume(store.load())) {
+                Assert.assertEquals(j++, i);
+            }
+            Assert.assertEquals(20, j);
+        } finally {
+            Assert.assertTrue(!file.exists() || file.delete());
+        }
+    }
+
+    @Test
+    public void randomAccessWithinPageCache() {
+        final AtomicInteger fetches = new AtomicInteger();
+        PagedList<Integer> pages = new PagedList<Integer>(new RangePage(0)) {
+            @Override
+            public Page<Integer> nextPage(String nextPageLink) {
+                fetches.incrementAndGet();
+                return new RangePage(Integer.parseInt(nextPageLink));
+            }
+        };
+        fetches.set(0);
+        PageCachedList<Integer> cached = pages.toPageCachedList(10);
+        Assert.assertEquals(47, (int) cached.get(47));
+        Assert.assertEquals(9, fetches.get());
+        Assert.assertTrue(cached.cachedItems() <= 10);
+
+        Assert.assertEquals(12, (int) cached.get(12));
+        Assert.assertEquals(10, fetches.get());
+        Assert.assertEquals(3, (int) cached.get(3));
+        Assert.assertEquals(10, fetches.get());
+        Assert.assertEquals(Arrays.asList(13, 14, 15), cached.subList(13, 16));
+        Assert.assertEquals(50, cached.size());
+        Assert.assertTrue(cached.cachedItems() <= 10);
+        try {
+            cached.get(50);
+            Assert.fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void consumesConcurrently() throws Exception {
+        final AtomicInteger fetches = new AtomicInteger();
+        PagedList<Integer> pages = new PagedList<Integer>(new RangePage(0)) {
+            @Override
+            public Page<Integer> nextPage(String nextPageLink) throws InterruptedIOException {
+                fetches.incrementAndGet();
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return new RangePage(Integer.parseInt(nextPageLink));
+            }
+        };
+        final ConcurrentPagedQueue<Integer> queue = pages.toConcurrentQueue();
+        final Set<Integer> seen = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        final AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                workers.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        Integer item;
+                        while ((item = queue.poll()) != null) {
+                            if (!seen.add(item)) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(0, duplicates.get());
+        Assert.assertEquals(50, seen.size());
+        // The constructor fetched the second page, and each page after it was fetched once
+        Assert.assertEquals(9, fetches.get());
+        Assert.assertNull(queue.poll());
+    }
+
+    /**
+     * A page of 5 items out of 50, linked to the next page by its number.
+     */
+    private static class RangePage implements Page<Integer> {
+        private final int page;
+
+        RangePage(int page) {
+            this.page = page;
+        }
+
+        @Override
+        public String nextPageLink() {
+            return page < 9 ? Integer.toString(page + 1) : null;
+        }
+
+        @Override
+        public List<Integer> items() {
+            List<Integer> items = new ArrayList<>();
+            for (int i = page * 5; i < page * 5 + 5; i++) {
+                items.add(i);
+            }
+            return items;
+        }
+    }
 
     public static class TestPage implements Page<Integer> {
         private int page;
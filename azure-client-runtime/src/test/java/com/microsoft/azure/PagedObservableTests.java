@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.azure;
+
+import com.microsoft.rest.ServiceResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PagedObservableTests {
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private Observable<ServiceResponse<Page<Integer>>> page(final int pageNum) {
+        return Observable.defer(new rx.functions.Func0<Observable<ServiceResponse<Page<Integer>>>>() {
+            @Override
+            public Observable<ServiceResponse<Page<Integer>>> call() {
+                fetches.incrementAndGet();
+                Page<Integer> page = new PagedListTests.TestPage(pageNum, 6);
+                return Observable.just(new ServiceResponse<>(page, null));
+            }
+        });
+    }
+
+    private final Func1<String, Observable<ServiceResponse<Page<Integer>>>> next =
+            new Func1<String, Observable<ServiceResponse<Page<Integer>>>>() {
+                @Override
+                public Observable<ServiceResponse<Page<Integer>>> call(String nextPageLink) {
+                    return page(Integer.parseInt(nextPageLink));
+                }
+            };
+
+    @Test
+    public void fetchesPagesOnDemand() {
+        TestSubscriber<ServiceResponse<Page<Integer>>> subscriber = TestSubscriber.create(0);
+        PagedObservable.pages(page(0), next).subscribe(subscriber);
+        Assert.assertEquals(0, fetches.get());
+        subscriber.requestMore(2);
+        Assert.assertEquals(2, fetches.get());
+        subscriber.assertValueCount(2);
+        subscriber.requestMore(10);
+        subscriber.assertValueCount(6);
+        subscriber.assertCompleted();
+        Assert.assertEquals(6, fetches.get());
+    }
+
+    @Test
+    public void prefetchesAheadOfDemand() {
+        TestSubscriber<ServiceResponse<Page<Integer>>> subscriber = TestSubscriber.create(1);
+        PagedObservable.pages(page(0), next, 2).subscribe(subscriber);
+        subscriber.assertValueCount(1);
+        Assert.assertEquals(3, fetches.get());
+        subscriber.unsubscribe();
+        subscriber.requestMore(10);
+        Assert.assertEquals(3, fetches.get());
+    }
+
+    @Test
+    public void emitsItemsInOrder() {
+        List<Integer> items = PagedObservable.items(page(0), next).toList().toBlocking().single();
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), items);
+        TestSubscriber<Integer> subscriber = TestSubscriber.create(2);
+        fetches.set(0);
+        PagedObservable.items(page(0), next).subscribe(subscriber);
+        subscriber.assertValues(0, 1);
+        // The items requested hold back the fetches, within a couple of pages
+        Assert.assertTrue(fetches.get() <= 4);
+    }
+
+    @Test
+    public void futureCompletesWithAllItems() throws Exception {
+        final List<Integer> progressed = new ArrayList<>();
+        final AtomicInteger successes = new AtomicInteger();
+        List<Integer> items = AzureServiceFuture.fromPageResponse(page(0), next, new ListOperationCallback<Integer>() {
+            @Override
+            public PagingBehavior progress(List<Integer> partial) {
+                progressed.addAll(partial);
+                return PagingBehavior.CONTINUE;
+            }
+
+            @Override
+            public void success() {
+                successes.incrementAndGet();
+            }
+
+            @Override
+            public void failure(Throwable t) {
+                Assert.fail(t.getMessage());
+            }
+        }).get();
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), items);
+        Assert.assertEquals(items, progressed);
+        Assert.assertEquals(1, successes.get());
+    }
+
+    @Test
+    public void futureStopsWhenCallbackSaysSo() throws Exception {
+        List<Integer> items = AzureServiceFuture.fromPageResponse(page(0), next, new ListOperationCallback<Integer>() {
+            @Override
+            public PagingBehavior progress(List<Integer> partial) {
+                return partial.contains(1) ? PagingBehavior.STOP : PagingBehavior.CONTINUE;
+            }
+
+            @Override
+            public void success() {
+            }
+
+            @Override
+            public void failure(Throwable t) {
+                Assert.fail(t.getMessage());
+            }
+        }).get();
+        Assert.assertEquals(Arrays.asList(0, 1), items);
+        Assert.assertEquals(2, fetches.get());
+    }
+}
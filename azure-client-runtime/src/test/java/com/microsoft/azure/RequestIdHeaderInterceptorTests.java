@@ -7,7 +7,9 @@
 package com.microsoft.azure;
 
 import com.microsoft.azure.serializer.AzureJacksonAdapter;
+import com.microsoft.rest.interceptors.RequestIdGenerator;
 import com.microsoft.rest.interceptors.RequestIdHeaderInterceptor;
+import com.microsoft.rest.interceptors.ThreadLocalRandomRequestIdGenerator;
 import com.microsoft.rest.RestClient;
 import com.microsoft.rest.retry.RetryHandler;
 import okhttp3.Interceptor;
@@ -18,6 +20,9 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
 
 public class RequestIdHeaderInterceptorTests {
     private static final String REQUEST_ID_HEADER = "x-ms-client-request-id";
@@ -92,4 +97,47 @@ public class RequestIdHeaderInterceptorTests {
                 .newCall(new Request.Builder().get().url("http://localhost").build()).execute();
         Assert.assertEquals(200, response.code());
     }
+
+    @Test
+    public void customRequestIdGenerator() throws Exception {
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new AzureJacksonAdapter())
+                .withResponseBuilderFactory(new AzureResponseBuilder.Factory())
+                .withRequestIdGenerator(new RequestIdGenerator() {
+                    private int count = 0;
+                    @Override
+                    public String newRequestId() {
+                        return "request-" + (count++);
+                    }
+                })
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Request request = chain.request();
+                        int code = "request-0".equals(request.header(REQUEST_ID_HEADER)) ? 200 : 400;
+                        return new Response.Builder().code(code).request(request)
+                                .protocol(Protocol.HTTP_1_1).build();
+                    }
+                })
+                .build();
+        Response response = restClient.newBuilder().build().httpClient()
+                .newCall(new Request.Builder().get().url("http://localhost").build()).execute();
+        Assert.assertEquals(200, response.code());
+    }
+
+    @Test
+    public void threadLocalRandomRequestIdsAreVersion4Uuids() {
+        RequestIdGenerator generator = new ThreadLocalRandomRequestIdGenerator();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String id = generator.newRequestId();
+            UUID uuid = UUID.fromString(id);
+            Assert.assertEquals(4, uuid.version());
+            Assert.assertEquals(2, uuid.variant());
+            Assert.assertEquals(uuid.toString(), id);
+            ids.add(id);
+        }
+        Assert.assertEquals(1000, ids.size());
+    }
 }
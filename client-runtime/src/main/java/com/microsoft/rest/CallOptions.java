@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import okhttp3.Request;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overrides of the settings of a {@link RestClient}. The options are
+ * carried on a request as its tag, where the interceptors of the REST client
+ * pick them up. Use {@link RestClient#withCallOptions(CallOptions)} to get a
+ * client that tags all its requests, or put the options directly as the tag
+ * of an OkHttp {@link Request}.
+ *
+ * Timeouts are honored only through {@link RestClient#withCallOptions(CallOptions)},
+ * since the version of OkHttp in use does not support timeouts per call.
+ */
+public final class CallOptions {
+    /** The headers to put on the request, replacing existing ones with the same names. */
+    private final Map<String, String> headers;
+    /** The logging level to use, or null to use the one of the client. */
+    private LogLevel logLevel;
+    /** The read timeout in milliseconds, or null to use the one of the client. */
+    private Long readTimeoutMillis;
+    /** The write timeout in milliseconds, or null to use the one of the client. */
+    private Long writeTimeoutMillis;
+    /** The connection timeout in milliseconds, or null to use the one of the client. */
+    private Long connectionTimeoutMillis;
+
+    /**
+     * Creates an instance of CallOptions with nothing overridden.
+     */
+    public CallOptions() {
+        this.headers = new LinkedHashMap<>();
+    }
+
+    /**
+     * Creates a copy of another CallOptions instance.
+     *
+     * @param other the options to copy
+     */
+    public CallOptions(CallOptions other) {
+        this.headers = new LinkedHashMap<>(other.headers);
+        this.logLevel = other.logLevel;
+        this.readTimeoutMillis = other.readTimeoutMillis;
+        this.writeTimeoutMillis = other.writeTimeoutMillis;
+        this.connectionTimeoutMillis = other.connectionTimeoutMillis;
+    }
+
+    /**
+     * Creates a copy of these options with another set of options applied on top.
+     *
+     * @param overrides the options to apply on top of these
+     * @return the merged options
+     */
+    CallOptions mergedWith(CallOptions overrides) {
+        CallOptions merged = new CallOptions(this);
+        merged.headers.putAll(overrides.headers);
+        if (overrides.logLevel != null) {
+            merged.logLevel = overrides.logLevel;
+        }
+        if (overrides.readTimeoutMillis != null) {
+            merged.readTimeoutMillis = overrides.readTimeoutMillis;
+        }
+        if (overrides.writeTimeoutMillis != null) {
+            merged.writeTimeoutMillis = overrides.writeTimeoutMillis;
+        }
+        if (overrides.connectionTimeoutMillis != null) {
+            merged.connectionTimeoutMillis = overrides.connectionTimeoutMillis;
+        }
+        return merged;
+    }
+
+    /**
+     * Gets the call options carried by a request.
+     *
+     * @param request the request
+     * @return the call options, or null if the request does not carry any
+     */
+    public static CallOptions fromRequest(Request request) {
+        Object tag = request.tag();
+        if (tag instanceof CallOptions) {
+            return (CallOptions) tag;
+        }
+        return null;
+    }
+
+    /**
+     * @return a read-only view of the headers to put on the request
+     */
+    public Map<String, String> headers() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Sets a header on the request, replacing the existing one with the same name.
+     *
+     * @param name the name of the header
+     * @param value the value of the header
+     * @return the options themselves
+     */
+    public CallOptions withHeader(String name, String value) {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+        this.headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * @return the logging level, or null to use the one of the client
+     */
+    public LogLevel logLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Sets the HTTP log level of the call.
+     *
+     * @param logLevel the {@link LogLevel} enum
+     * @return the options themselves
+     */
+    public CallOptions withLogLevel(LogLevel logLevel) {
+        this.logLevel = logLevel;
+        return this;
+    }
+
+    /**
+     * @return the read timeout in milliseconds, or null to use the one of the client
+     */
+    public Long readTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * Sets the read timeout of the call.
+     *
+     * @param timeout the timeout numeric value
+     * @param unit the time unit for the numeric value
+     * @return the options themselves
+     */
+    public CallOptions withReadTimeout(long timeout, TimeUnit unit) {
+        this.readTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * @return the write timeout in milliseconds, or null to use the one of the client
+     */
+    public Long writeTimeoutMillis() {
+        return writeTimeoutMillis;
+    }
+
+    /**
+     * Sets the write timeout of the call.
+     *
+     * @param timeout the timeout numeric value
+     * @param unit the time unit for the numeric value
+     * @return the options themselves
+     */
+    public CallOptions withWriteTimeout(long timeout, TimeUnit unit) {
+        this.writeTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * @return the connection timeout in milliseconds, or null to use the one of the client
+     */
+    public Long connectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    /**
+     * Sets the connection timeout of the call.
+     *
+     * @param timeout the timeout numeric value
+     * @param unit the time unit for the numeric value
+     * @return the options themselves
+     */
+    public CallOptions withConnectionTimeout(long timeout, TimeUnit unit) {
+        this.connectionTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+}
@@ -9,28 +9,61 @@ package com.microsoft.rest;
 import com.microsoft.azure.management.apigeneration.Beta;
 import com.microsoft.azure.management.apigeneration.Beta.SinceVersion;
 import com.microsoft.rest.credentials.ServiceClientCredentials;
+import com.microsoft.rest.interceptors.AsyncLogWriter;
 import com.microsoft.rest.interceptors.BaseUrlHandler;
 import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
+import com.microsoft.rest.interceptors.LogSampler;
 import com.microsoft.rest.interceptors.LoggingInterceptor;
+import com.microsoft.rest.interceptors.RequestIdGenerator;
 import com.microsoft.rest.interceptors.RequestIdHeaderInterceptor;
 import com.microsoft.rest.interceptors.UserAgentInterceptor;
+import com.microsoft.rest.metrics.CallTimelineInterceptor;
+import com.microsoft.rest.metrics.ConnectionStats;
+import com.microsoft.rest.metrics.ConnectionTracker;
+import com.microsoft.rest.metrics.CredentialsTimingInterceptor;
+import com.microsoft.rest.metrics.InMemoryMetrics;
+import com.microsoft.rest.metrics.MetricsInterceptor;
+import com.microsoft.rest.metrics.MetricsRecorder;
+import com.microsoft.rest.metrics.MetricsSnapshot;
+import com.microsoft.rest.metrics.NetworkTimingInterceptor;
 import com.microsoft.rest.protocol.Environment;
 import com.microsoft.rest.protocol.ResponseBuilder;
 import com.microsoft.rest.protocol.SerializerAdapter;
+import com.microsoft.rest.retry.CircuitBreaker;
+import com.microsoft.rest.retry.RetryBudget;
+import com.microsoft.rest.retry.RetryCallAdapterFactory;
+import com.microsoft.rest.retry.RetryCallFactory;
 import com.microsoft.rest.retry.RetryHandler;
 import com.microsoft.rest.retry.RetryStrategy;
 import okhttp3.Authenticator;
+import okhttp3.Call;
 import okhttp3.ConnectionPool;
 import okhttp3.Interceptor;
 import okhttp3.JavaNetCookieJar;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import okio.AsyncTimeout;
+import retrofit2.CallAdapter;
+import retrofit2.Converter;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 
 import java.net.CookieManager;
 import java.net.CookiePolicy;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.net.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
@@ -38,25 +71,56 @@ import java.util.concurrent.TimeUnit;
  * An instance of this class stores the client information for making REST calls.
  */
 public final class RestClient {
+    /** The view whose call is being created on the current thread. */
+    private static final ThreadLocal<RestClient> CALLING_VIEW = new ThreadLocal<>();
+
     /** The {@link okhttp3.OkHttpClient} object. */
     private final OkHttpClient httpClient;
-    /** The {@link retrofit2.Retrofit} object. */
+    /** The {@link retrofit2.Retrofit} object, the one of the root client for a view. */
     private final Retrofit retrofit;
     /** The original builder for this rest client. */
     private final RestClient.Builder builder;
+    /** The options applied to every call, or null if there are none. */
+    private final CallOptions callOptions;
+    /** The Retrofit service proxies created so far, keyed by service interface. */
+    private final ConcurrentMap<Class<?>, Object> services;
+    /** The scheduler of the delays between the polls of long running operations. */
+    private final Scheduler timerScheduler;
+    /** The timer scheduler created for this client and closed with it, or null if it was given. */
+    private final TimerWheelScheduler ownedTimerScheduler;
+    /** The client built by a builder this view was created from, or null if this client is not a view. */
+    private final RestClient root;
+    /** The call factory of a view, created on its first call. */
+    private volatile Call.Factory viewCallFactory;
+    /** The Retrofit of a view, created when asked for. */
+    private volatile Retrofit viewRetrofit;
 
     private RestClient(OkHttpClient httpClient,
                        Retrofit retrofit,
-                       RestClient.Builder builder) {
+                       RestClient.Builder builder,
+                       CallOptions callOptions,
+                       Scheduler timerScheduler,
+                       TimerWheelScheduler ownedTimerScheduler,
+                       RestClient root) {
         this.httpClient = httpClient;
         this.retrofit = retrofit;
         this.builder = builder;
+        this.callOptions = callOptions;
+        this.services = new ConcurrentHashMap<>();
+        this.timerScheduler = timerScheduler;
+        this.ownedTimerScheduler = ownedTimerScheduler;
+        this.root = root;
     }
 
     /**
      * @return the headers interceptor.
+     * @throws IllegalStateException if this client is a view created by {@link #withCallOptions(CallOptions)},
+     *     whose headers are set with {@link CallOptions#withHeader(String, String)}
      */
     public CustomHeadersInterceptor headers() {
+        if (root != null) {
+            throw new IllegalStateException("The headers of a view are set with CallOptions.withHeader");
+        }
         return builder.customHeadersInterceptor;
     }
 
@@ -82,10 +146,63 @@ public final class RestClient {
     }
 
     /**
+     * Gets the {@link Retrofit} instance. A client created with
+     * {@link #withCallOptions(CallOptions)} creates its own on the first
+     * request, parsing the services anew; {@link #service(Class)} shares the
+     * services already parsed instead.
+     *
      * @return the {@link Retrofit} instance
      */
     public Retrofit retrofit() {
-        return retrofit;
+        if (root == null) {
+            return retrofit;
+        }
+        Retrofit current = viewRetrofit;
+        if (current == null) {
+            Retrofit.Builder retrofitBuilder = new Retrofit.Builder()
+                    .baseUrl(retrofit.baseUrl())
+                    .callFactory(viewCallFactory());
+            for (Converter.Factory factory : retrofit.converterFactories()) {
+                retrofitBuilder.addConverterFactory(factory);
+            }
+            for (CallAdapter.Factory factory : retrofit.callAdapterFactories()) {
+                retrofitBuilder.addCallAdapterFactory(factory);
+            }
+            if (retrofit.callbackExecutor() != null) {
+                retrofitBuilder.callbackExecutor(retrofit.callbackExecutor());
+            }
+            current = retrofitBuilder.build();
+            viewRetrofit = current;
+        }
+        return current;
+    }
+
+    /**
+     * Gets the Retrofit service proxy for a service interface. The proxy is
+     * created and its methods are parsed on the first request for the interface;
+     * later requests return the same instance. A client created with
+     * {@link #withCallOptions(CallOptions)} wraps the proxy of the client it
+     * was created from, without parsing the service again.
+     *
+     * @param serviceType the Retrofit service interface
+     * @param <T> the type of the service interface
+     * @return the service proxy
+     */
+    public <T> T service(Class<T> serviceType) {
+        Object service = services.get(serviceType);
+        if (service == null) {
+            if (root == null) {
+                service = retrofit.create(serviceType);
+            } else {
+                service = java.lang.reflect.Proxy.newProxyInstance(serviceType.getClassLoader(), new Class<?>[] {serviceType},
+                        new ViewInvocationHandler(this, root.service(serviceType)));
+            }
+            Object existing = services.putIfAbsent(serviceType, service);
+            if (existing != null) {
+                service = existing;
+            }
+        }
+        return serviceType.cast(service);
     }
 
     /**
@@ -96,9 +213,86 @@ public final class RestClient {
     }
 
     /**
-     * @return the current HTTP traffic logging level
+     * @return the budget capping the retries, or null if the retries are not capped
+     */
+    public RetryBudget retryBudget() {
+        return builder.retryBudget;
+    }
+
+    /**
+     * @return the circuit breaker stopping the retries to failing hosts, or null if there is none
+     */
+    public CircuitBreaker circuitBreaker() {
+        return builder.circuitBreaker;
+    }
+
+    /**
+     * @return the recorder of the measurements of the HTTP traffic, or null if the traffic is not measured
+     */
+    public MetricsRecorder metrics() {
+        return builder.metrics;
+    }
+
+    /**
+     * Gets a snapshot of the measurements of the HTTP traffic, when they are
+     * kept in memory by an {@link InMemoryMetrics} set with {@link Builder#withMetrics(MetricsRecorder)}.
+     *
+     * @return the snapshot, or null if the measurements are not kept by an {@link InMemoryMetrics}
+     */
+    public MetricsSnapshot metricsSnapshot() {
+        if (builder.metrics instanceof InMemoryMetrics) {
+            return ((InMemoryMetrics) builder.metrics).snapshot();
+        }
+        return null;
+    }
+
+    /**
+     * Gets a snapshot of the connection pool and the dispatcher of the HTTP
+     * client: the idle and total connections, how many connections were opened
+     * and evicted and with which protocol, how often they are reused, and the
+     * running and queued calls by host.
+     *
+     * @return the snapshot
+     */
+    public ConnectionStats connectionStats() {
+        return builder.connectionTracker.snapshot(httpClient);
+    }
+
+    /**
+     * Gets snapshots of the connection pool and the dispatcher of the HTTP
+     * client periodically, until unsubscribed.
+     *
+     * @param period the period between the snapshots
+     * @param unit the unit of the period
+     * @return an observable emitting a snapshot every period
+     */
+    public Observable<ConnectionStats> connectionStats(long period, TimeUnit unit) {
+        return Observable.interval(period, unit).map(new Func1<Long, ConnectionStats>() {
+            @Override
+            public ConnectionStats call(Long tick) {
+                return connectionStats();
+            }
+        });
+    }
+
+    /**
+     * Gets the scheduler of the delays between the polls of the long running
+     * operations of the client. By default, a {@link TimerWheelScheduler}
+     * shared by all the operations waits for the delays on a single thread.
+     *
+     * @return the scheduler of the polling delays
+     */
+    public Scheduler timerScheduler() {
+        return timerScheduler;
+    }
+
+    /**
+     * @return the current HTTP traffic logging level, the one of the call options for a view that sets it
      */
     public LogLevel logLevel() {
+        if (callOptions != null && callOptions.logLevel() != null) {
+            return callOptions.logLevel();
+        }
         return builder.loggingInterceptor.logLevel();
     }
 
@@ -106,12 +300,86 @@ public final class RestClient {
      * Set the current HTTP traffic logging level.
      * @param logLevel the logging level enum
      * @return the RestClient itself
+     * @throws IllegalStateException if this client is a view created by {@link #withCallOptions(CallOptions)},
+     *     whose logging level is set with {@link CallOptions#withLogLevel(LogLevel)}
      */
     public RestClient withLogLevel(LogLevel logLevel) {
+        if (root != null) {
+            throw new IllegalStateException("The logging level of a view is set with CallOptions.withLogLevel");
+        }
         builder.loggingInterceptor.withLogLevel(logLevel);
         return this;
     }
 
+    /**
+     * @return the options applied to every call made through this client, or null if there are none
+     */
+    public CallOptions callOptions() {
+        return callOptions;
+    }
+
+    /**
+     * Creates a lightweight REST client that applies a set of call options to
+     * every request. The new client is a view sharing the connection pool, the
+     * dispatcher, the interceptors, the configurations and the parsed service
+     * proxies of this one; only an OkHttp client wrapper is created. Options
+     * already applied to this client are kept unless overridden.
+     *
+     * Closing the view does nothing: the resources belong to the client it
+     * was created from. The headers and the logging level of the view are
+     * the ones of its call options: {@link #headers()} and
+     * {@link #withLogLevel(LogLevel)} throw on a view instead of changing
+     * the client it was created from.
+     *
+     * @param callOptions the options to apply to every call
+     * @return a REST client applying the call options
+     */
+    public RestClient withCallOptions(CallOptions callOptions) {
+        if (callOptions == null) {
+            throw new NullPointerException("callOptions == null");
+        }
+        final CallOptions options;
+        if (this.callOptions == null) {
+            options = new CallOptions(callOptions);
+        } else {
+            options = this.callOptions.mergedWith(callOptions);
+        }
+        OkHttpClient.Builder clientBuilder = httpClient.newBuilder();
+        if (options.readTimeoutMillis() != null) {
+            clientBuilder.readTimeout(options.readTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (options.writeTimeoutMillis() != null) {
+            clientBuilder.writeTimeout(options.writeTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (options.connectionTimeoutMillis() != null) {
+            clientBuilder.connectTimeout(options.connectionTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        for (int i = clientBuilder.interceptors().size() - 1; i >= 0; i--) {
+            if (clientBuilder.interceptors().get(i) instanceof CallOptionsInterceptor) {
+                clientBuilder.interceptors().remove(i);
+            }
+        }
+        // The timeline interceptor must see the requests as they were enqueued
+        clientBuilder.interceptors().add(builder.timelineInterceptor != null ? 1 : 0, new CallOptionsInterceptor(options));
+        RestClient rootClient = root != null ? root : this;
+        return new RestClient(clientBuilder.build(), rootClient.retrofit, builder, options, timerScheduler, null, rootClient);
+    }
+
+    /**
+     * @return the call factory sending the calls of a view through its HTTP client
+     */
+    private Call.Factory viewCallFactory() {
+        Call.Factory current = viewCallFactory;
+        if (current == null) {
+            current = new RetryCallFactory(httpClient);
+            if (builder.timelineInterceptor != null) {
+                current = builder.timelineInterceptor.callFactory(current);
+            }
+            viewCallFactory = current;
+        }
+        return current;
+    }
+
     /**
      * Create a new builder for a new Rest Client with the same configurations on this one.
      * @return a RestClient builder
@@ -122,10 +390,15 @@ public final class RestClient {
 
     /**
      * Closes the HTTP client and recycles the resources associated. The threads will
-     * be recycled after 60 seconds of inactivity.
+     * be recycled after 60 seconds of inactivity. Closing a client created with
+     * {@link #withCallOptions(CallOptions)} does nothing.
      */
     @Beta(SinceVersion.V1_1_0)
     public void close() {
+        if (root != null) {
+            // the resources of a view belong to the client it was created from
+            return;
+        }
         httpClient.dispatcher().executorService().shutdown();
         httpClient.connectionPool().evictAll();
         synchronized (httpClient.connectionPool()) {
@@ -134,6 +407,9 @@ public final class RestClient {
         synchronized (AsyncTimeout.class) {
             AsyncTimeout.class.notifyAll();
         }
+        if (ownedTimerScheduler != null) {
+            ownedTimerScheduler.close();
+        }
     }
 
     /**
@@ -174,6 +450,20 @@ public final class RestClient {
         private LoggingInterceptor loggingInterceptor;
         /** The strategy used for retry failed requests. */
         private RetryStrategy retryStrategy;
+        /** The budget capping the retries. */
+        private RetryBudget retryBudget;
+        /** The circuit breaker stopping the retries to failing hosts. */
+        private CircuitBreaker circuitBreaker;
+        /** The interceptor to put request IDs in the request headers. */
+        private RequestIdHeaderInterceptor requestIdHeaderInterceptor;
+        /** The recorder of the measurements of the HTTP traffic. */
+        private MetricsRecorder metrics;
+        /** The interceptor tracking the connections of the HTTP client. */
+        private ConnectionTracker connectionTracker;
+        /** The scheduler of the delays between the polls of long running operations. */
+        private Scheduler timerScheduler;
+        /** The interceptor starting the timelines of the calls. */
+        private CallTimelineInterceptor timelineInterceptor;
 
         /**
          * Creates an instance of the builder with a base URL to the service.
@@ -189,6 +479,9 @@ public final class RestClient {
             this.baseUrl = restClient.retrofit.baseUrl().toString();
             this.responseBuilderFactory = restClient.builder.responseBuilderFactory;
             this.serializerAdapter = restClient.builder.serializerAdapter;
+            this.metrics = restClient.builder.metrics;
+            // shared with the new client, which does not close it
+            this.timerScheduler = restClient.timerScheduler;
             if (restClient.builder.credentials != null) {
                 this.credentials = restClient.builder.credentials;
             }
@@ -200,18 +493,31 @@ public final class RestClient {
                     this.userAgent = ((UserAgentInterceptor) interceptor).userAgent();
                 } else if (interceptor instanceof RetryHandler) {
                     this.retryStrategy = ((RetryHandler) interceptor).strategy();
+                    this.retryBudget = ((RetryHandler) interceptor).retryBudget();
+                    this.circuitBreaker = ((RetryHandler) interceptor).circuitBreaker();
+                } else if (interceptor == restClient.builder.requestIdHeaderInterceptor) {
+                    this.requestIdHeaderInterceptor = new RequestIdHeaderInterceptor(
+                            restClient.builder.requestIdHeaderInterceptor.generator());
+                    this.withInterceptor(this.requestIdHeaderInterceptor);
                 } else if (interceptor instanceof CustomHeadersInterceptor) {
                     this.customHeadersInterceptor = new CustomHeadersInterceptor();
                     this.customHeadersInterceptor.addHeaderMultimap(((CustomHeadersInterceptor) interceptor).headers());
-                } else if (interceptor != restClient.builder.credentialsInterceptor) {
+                } else if (interceptor != restClient.builder.credentialsInterceptor
+                        // the metrics interceptors are added back on build
+                        && !(interceptor instanceof MetricsInterceptor)
+                        && !(interceptor instanceof CallTimelineInterceptor)) {
                     this.withInterceptor(interceptor);
                 }
             }
             for (Interceptor interceptor : restClient.httpClient.networkInterceptors()) {
                 if (interceptor instanceof LoggingInterceptor) {
                     LoggingInterceptor old = (LoggingInterceptor) interceptor;
-                    this.loggingInterceptor = new LoggingInterceptor(old.logLevel());
-                } else {
+                    this.loggingInterceptor = new LoggingInterceptor(old.logLevel())
+                            .withWriter(old.writer())
+                            .withSampler(old.sampler())
+                            .withMaxBodyBytes(old.maxBodyBytes());
+                } else if (!(interceptor instanceof NetworkTimingInterceptor)
+                        && !(interceptor instanceof ConnectionTracker)) {
                     this.withNetworkInterceptor(interceptor);
                 }
             }
@@ -233,11 +539,12 @@ public final class RestClient {
             CookieManager cookieManager = new CookieManager();
             cookieManager.setCookiePolicy(CookiePolicy.ACCEPT_ALL);
             customHeadersInterceptor = new CustomHeadersInterceptor();
+            requestIdHeaderInterceptor = new RequestIdHeaderInterceptor();
             // Set up OkHttp client
             this.httpClientBuilder = httpClientBuilder
                     .cookieJar(new JavaNetCookieJar(cookieManager))
                     .readTimeout(60, TimeUnit.SECONDS)
-                    .addInterceptor(new RequestIdHeaderInterceptor())
+                    .addInterceptor(requestIdHeaderInterceptor)
                     .addInterceptor(new BaseUrlHandler());
             this.retrofitBuilder = retrofitBuilder;
             this.loggingInterceptor = new LoggingInterceptor(LogLevel.NONE);
@@ -327,6 +634,57 @@ public final class RestClient {
             return this;
         }
 
+        /**
+         * Sets the writer logging the HTTP traffic as structured JSON lines from a
+         * background thread. The writer is not closed with the client, so it can be
+         * shared by several clients.
+         *
+         * @param writer the writer, or null to log the traffic line by line
+         * @return the builder itself for chaining.
+         */
+        public Builder withLogWriter(AsyncLogWriter writer) {
+            this.loggingInterceptor.withWriter(writer);
+            return this;
+        }
+
+        /**
+         * Sets the sampler limiting the HTTP exchanges logged by the log writer.
+         *
+         * @param sampler the sampler, or null to log every exchange
+         * @return the builder itself for chaining.
+         */
+        public Builder withLogSampler(LogSampler sampler) {
+            this.loggingInterceptor.withSampler(sampler);
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes of a request or response body logged at most.
+         * Default is {@link LoggingInterceptor#DEFAULT_MAX_BODY_BYTES}.
+         *
+         * @param maxBodyBytes the number of bytes of a body logged at most
+         * @return the builder itself for chaining.
+         */
+        public Builder withMaxLoggedBodyBytes(long maxBodyBytes) {
+            this.loggingInterceptor.withMaxBodyBytes(maxBodyBytes);
+            return this;
+        }
+
+        /**
+         * Sets the generator for the 'x-ms-client-request-id' header values.
+         * Default is {@link com.microsoft.rest.interceptors.ThreadLocalRandomRequestIdGenerator}.
+         *
+         * @param requestIdGenerator the request ID generator
+         * @return the builder itself for chaining
+         */
+        public Builder withRequestIdGenerator(RequestIdGenerator requestIdGenerator) {
+            if (requestIdGenerator == null) {
+                throw new NullPointerException("requestIdGenerator == null");
+            }
+            this.requestIdHeaderInterceptor.withGenerator(requestIdGenerator);
+            return this;
+        }
+
         /**
          * Add an interceptor the Http client pipeline.
          *
@@ -381,6 +739,7 @@ public final class RestClient {
 
         /**
          * Set the maximum idle connections for the HTTP client. Default is 5.
+         * {@link RestClient#connectionStats()} shows how the connections are used.
          *
          * @param maxIdleConnections the maximum idle connections
          * @return the builder itself for chaining
@@ -429,7 +788,63 @@ public final class RestClient {
          * @return the builder itself for chaining
          */
         public Builder withRetryStrategy(RetryStrategy strategy) {
-            this.retryStrategy = retryStrategy;
+            this.retryStrategy = strategy;
+            return this;
+        }
+
+        /**
+         * Caps the retries at a ratio of the successful requests over a sliding
+         * window. By default the retries are not capped.
+         *
+         * @param retryBudget the budget of the retries
+         * @return the builder itself for chaining
+         */
+        public Builder withRetryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        /**
+         * Stops the retries to hosts failing repeatedly. By default the retries
+         * are never stopped.
+         *
+         * @param circuitBreaker the circuit breaker of the hosts
+         * @return the builder itself for chaining
+         */
+        public Builder withCircuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Sets the recorder of the measurements of the HTTP traffic: the latency,
+         * status codes and body sizes of the requests by host and operation, the
+         * retries, the time spent by the credentials and the time spent waiting in
+         * the queue of the dispatcher. The traffic is not measured by default; an
+         * {@link InMemoryMetrics} keeps the measurements, which are read with
+         * {@link RestClient#metricsSnapshot()}.
+         *
+         * @param metrics the recorder of the measurements, or null to not measure the traffic
+         * @return the builder itself for chaining
+         */
+        public Builder withMetrics(MetricsRecorder metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler of the delays between the polls of long running
+         * operations. Default is a {@link TimerWheelScheduler} created with the
+         * client and closed with it; a scheduler set here is not closed by the client.
+         *
+         * @param timerScheduler the scheduler of the polling delays
+         * @return the builder itself for chaining
+         */
+        public Builder withTimerScheduler(Scheduler timerScheduler) {
+            if (timerScheduler == null) {
+                throw new NullPointerException("timerScheduler == null");
+            }
+            this.timerScheduler = timerScheduler;
             return this;
         }
 
@@ -459,6 +874,10 @@ public final class RestClient {
                 // store the interceptor
                 if (httpClientBuilder.interceptors().size() > interceptorCount) {
                     credentialsInterceptor = httpClientBuilder.interceptors().get(interceptorCount);
+                    if (metrics != null) {
+                        credentialsInterceptor = new CredentialsTimingInterceptor(credentialsInterceptor, metrics);
+                        httpClientBuilder.interceptors().set(interceptorCount, credentialsInterceptor);
+                    }
                 }
             }
 
@@ -468,21 +887,224 @@ public final class RestClient {
             } else {
                 retryHandler = new RetryHandler(retryStrategy);
             }
-            OkHttpClient httpClient = httpClientBuilder
+            retryHandler.withRetryBudget(retryBudget).withCircuitBreaker(circuitBreaker).withMetrics(metrics);
+            httpClientBuilder
                     .addInterceptor(userAgentInterceptor)
                     .addInterceptor(customHeadersInterceptor)
                     .addInterceptor(retryHandler)
-                    .addNetworkInterceptor(loggingInterceptor)
-                    .build();
+                    .addNetworkInterceptor(loggingInterceptor);
+            connectionTracker = new ConnectionTracker();
+            TimerWheelScheduler ownedTimerScheduler = timerScheduler == null ? new TimerWheelScheduler() : null;
+            httpClientBuilder.addNetworkInterceptor(connectionTracker);
+            if (metrics != null) {
+                timelineInterceptor = new CallTimelineInterceptor(metrics);
+                httpClientBuilder.interceptors().add(0, timelineInterceptor);
+                httpClientBuilder.addInterceptor(new MetricsInterceptor(metrics));
+                httpClientBuilder.addNetworkInterceptor(new NetworkTimingInterceptor());
+            } else {
+                timelineInterceptor = null;
+            }
+            OkHttpClient httpClient = httpClientBuilder.build();
+            retryHandler.withConnectionPool(httpClient.connectionPool());
 
+            Call.Factory callFactory = new RetryCallFactory(httpClient);
+            if (timelineInterceptor != null) {
+                callFactory = timelineInterceptor.callFactory(callFactory);
+            }
             return new RestClient(httpClient,
                     retrofitBuilder
                             .baseUrl(baseUrl)
-                            .client(httpClient)
+                            .callFactory(new ViewCallFactory(callFactory))
                             .addConverterFactory(serializerAdapter.converterFactory())
+                            .addCallAdapterFactory(new ViewCallAdapterFactory())
+                            .addCallAdapterFactory(new RetryCallAdapterFactory(retryHandler, Schedulers.io()))
                             .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
+                            .validateEagerly(true)
                             .build(),
-                    this);
+                    this,
+                    null,
+                    ownedTimerScheduler != null ? ownedTimerScheduler : timerScheduler,
+                    ownedTimerScheduler,
+                    null);
+        }
+    }
+
+    /**
+     * Tags the requests with a set of call options for the interceptors down the pipeline.
+     */
+    private static final class CallOptionsInterceptor implements Interceptor {
+        /** The options to tag the requests with. */
+        private final CallOptions callOptions;
+
+        CallOptionsInterceptor(CallOptions callOptions) {
+            this.callOptions = callOptions;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            if (CallOptions.fromRequest(request) != null) {
+                // Options set on the request itself take precedence
+                return chain.proceed(request);
+            }
+            return chain.proceed(request.newBuilder().tag(callOptions).build());
+        }
+    }
+
+    /**
+     * Binds a view to the current thread.
+     *
+     * @param view the view whose calls are created
+     * @return the view bound before, to restore with {@link #restoreView(RestClient)}
+     */
+    private static RestClient bindView(RestClient view) {
+        RestClient previous = CALLING_VIEW.get();
+        CALLING_VIEW.set(view);
+        return previous;
+    }
+
+    private static void restoreView(RestClient previous) {
+        if (previous == null) {
+            CALLING_VIEW.remove();
+        } else {
+            CALLING_VIEW.set(previous);
+        }
+    }
+
+    /**
+     * Calls the service proxy of the root client with a view bound to the
+     * current thread, so that the calls created are sent through the view.
+     */
+    private static final class ViewInvocationHandler implements InvocationHandler {
+        /** The view to bind. */
+        private final RestClient view;
+        /** The service proxy of the root client. */
+        private final Object service;
+
+        ViewInvocationHandler(RestClient view, Object service) {
+            this.view = view;
+            this.service = service;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            RestClient previous = bindView(view);
+            try {
+                return method.invoke(service, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                restoreView(previous);
+            }
+        }
+    }
+
+    /**
+     * Adapts the calls of the service proxies with the view bound when they
+     * are created, if any, so that the view is bound again whenever they are sent.
+     */
+    private static final class ViewCallAdapterFactory extends CallAdapter.Factory {
+        @Override
+        public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+            final CallAdapter<?> delegate = retrofit.nextCallAdapter(this, returnType, annotations);
+            return new CallAdapter<Object>() {
+                @Override
+                public Type responseType() {
+                    return delegate.responseType();
+                }
+
+                @Override
+                public <R> Object adapt(retrofit2.Call<R> call) {
+                    RestClient view = CALLING_VIEW.get();
+                    return delegate.adapt(view != null ? new ViewCall<>(call, view) : call);
+                }
+            };
+        }
+    }
+
+    /**
+     * A Retrofit call binding a view to the current thread while it creates its HTTP call.
+     *
+     * @param <T> the type of the response body
+     */
+    private static final class ViewCall<T> implements retrofit2.Call<T> {
+        /** The call to bind the view for. */
+        private final retrofit2.Call<T> call;
+        /** The view to bind. */
+        private final RestClient view;
+
+        ViewCall(retrofit2.Call<T> call, RestClient view) {
+            this.call = call;
+            this.view = view;
+        }
+
+        @Override
+        public retrofit2.Response<T> execute() throws IOException {
+            RestClient previous = bindView(view);
+            try {
+                return call.execute();
+            } finally {
+                restoreView(previous);
+            }
+        }
+
+        @Override
+        public void enqueue(retrofit2.Callback<T> callback) {
+            RestClient previous = bindView(view);
+            try {
+                call.enqueue(callback);
+            } finally {
+                restoreView(previous);
+            }
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return call.isExecuted();
+        }
+
+        @Override
+        public void cancel() {
+            call.cancel();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return call.isCanceled();
+        }
+
+        @Override
+        public retrofit2.Call<T> clone() {
+            return new ViewCall<>(call.clone(), view);
+        }
+
+        @Override
+        public Request request() {
+            RestClient previous = bindView(view);
+            try {
+                return call.request();
+            } finally {
+                restoreView(previous);
+            }
+        }
+    }
+
+    /**
+     * Creates the calls through the view bound to the current thread, or
+     * through the client otherwise.
+     */
+    private static final class ViewCallFactory implements Call.Factory {
+        /** The call factory of the client. */
+        private final Call.Factory callFactory;
+
+        ViewCallFactory(Call.Factory callFactory) {
+            this.callFactory = callFactory;
+        }
+
+        @Override
+        public Call newCall(Request request) {
+            RestClient view = CALLING_VIEW.get();
+            return view != null ? view.viewCallFactory().newCall(request) : callFactory.newCall(request);
         }
     }
 }
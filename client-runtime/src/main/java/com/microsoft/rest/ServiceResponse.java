@@ -6,6 +6,7 @@
 
 package com.microsoft.rest;
 
+import com.microsoft.rest.metrics.CallTimeline;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 
@@ -86,4 +87,18 @@ public class ServiceResponse<T> {
     public Response<Void> headResponse() {
         return headResponse;
     }
+
+    /**
+     * Gets the timeline of the call, broken down in phases.
+     *
+     * @return the timeline of the call, or null if the client does not measure its calls.
+     */
+    public CallTimeline timeline() {
+        if (response != null) {
+            return CallTimeline.of(response.raw().request());
+        } else if (headResponse != null) {
+            return CallTimeline.of(headResponse.raw().request());
+        }
+        return null;
+    }
 }
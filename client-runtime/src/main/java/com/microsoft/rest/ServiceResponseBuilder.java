@@ -9,6 +9,7 @@ package com.microsoft.rest;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.base.Function;
 import com.google.common.collect.Maps;
+import com.microsoft.rest.metrics.CallTimeline;
 import com.microsoft.rest.protocol.ResponseBuilder;
 import com.microsoft.rest.protocol.SerializerAdapter;
 import okhttp3.ResponseBody;
@@ -107,9 +108,9 @@ public final class ServiceResponseBuilder<T, E extends RestException> implements
         }
 
         if (responseTypes.containsKey(statusCode)) {
-            return new ServiceResponse<>((T) buildBody(statusCode, responseBody), response);
+            return new ServiceResponse<>((T) buildTimedBody(response, statusCode, responseBody), response);
         } else if (response.isSuccessful() && responseTypes.size() == 1) {
-            return new ServiceResponse<>((T) buildBody(statusCode, responseBody), response);
+            return new ServiceResponse<>((T) buildTimedBody(response, statusCode, responseBody), response);
         } else if (!throwOnGet404 && "GET".equals(response.raw().request().method()) && statusCode == 404) {
             return new ServiceResponse<>(null, response);
         } else {
@@ -176,6 +177,27 @@ public final class ServiceResponseBuilder<T, E extends RestException> implements
         return serviceResponse;
     }
 
+    /**
+     * Builds the body object of a response, recording the time it takes on
+     * the timeline of the call.
+     *
+     * @param response the raw REST response
+     * @param statusCode the HTTP status code
+     * @param responseBody the response body
+     * @return the response body, deserialized
+     * @throws IOException thrown for any deserialization errors
+     */
+    private Object buildTimedBody(Response<ResponseBody> response, int statusCode, ResponseBody responseBody) throws IOException {
+        CallTimeline timeline = CallTimeline.of(response.raw().request());
+        if (timeline == null) {
+            return buildBody(statusCode, responseBody);
+        }
+        long startNs = System.nanoTime();
+        Object body = buildBody(statusCode, responseBody);
+        timeline.onDeserialized(System.nanoTime() - startNs);
+        return body;
+    }
+
     /**
      * Builds the body object from the HTTP status code and returned response
      * body undeserialized and wrapped in {@link ResponseBody}.
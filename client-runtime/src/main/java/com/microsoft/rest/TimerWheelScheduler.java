@@ -0,0 +1,333 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.plugins.RxJavaHooks;
+import rx.subscriptions.CompositeSubscription;
+import rx.subscriptions.Subscriptions;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A scheduler multiplexing many delayed tasks, such as the waits between the
+ * polls of long running operations, on a hashed timer wheel driven by a
+ * single thread. The wheel has a number of buckets, each covering a tick; a
+ * delayed task goes to the bucket of its deadline, with the number of turns
+ * of the wheel left. Once due, a task is dispatched to an executor, so the
+ * timer thread never runs the tasks and waiting tasks do not hold threads.
+ * The deadlines are rounded up to the next tick.
+ *
+ * The tasks of a worker run one at a time, in the order they are due. The
+ * timer thread is a daemon thread started on the first delayed task and
+ * running until the scheduler is closed. Scheduling a task on a closed
+ * scheduler throws a {@link RejectedExecutionException}.
+ */
+public final class TimerWheelScheduler extends Scheduler implements Closeable {
+    /** The default duration of a tick, in milliseconds. */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    /** The default number of buckets of the wheel. */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    /** The number of threads running the tasks once due, when the scheduler creates them. */
+    public static final int DEFAULT_THREADS = 4;
+    /** The sequence number of the timer threads. */
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    /** The duration of a tick, in nanoseconds. */
+    private final long tickNanos;
+    /** The buckets of the wheel, only accessed by the timer thread. */
+    private final Queue<Timeout>[] wheel;
+    /** The mask giving the bucket of a tick. */
+    private final int mask;
+    /** The executor running the tasks once due. */
+    private final Executor executor;
+    /** The executor to shut down on close, or null if it is not owned. */
+    private final ExecutorService ownedExecutor;
+    /** The delayed tasks not placed on the wheel yet. */
+    private final Queue<Timeout> pending;
+    /** Whether the timer thread was started. */
+    private final AtomicBoolean started;
+    /** The time the timer thread started, the origin of the ticks. */
+    private volatile long startNanos;
+    /** The timer thread. */
+    private volatile Thread thread;
+    /** Whether the scheduler is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Initializes an instance of {@link TimerWheelScheduler} class with the
+     * default tick and wheel size, running the tasks on a pool of at most
+     * {@link #DEFAULT_THREADS} daemon threads recycled after 60 seconds of
+     * inactivity. The tasks due while all the threads are busy wait for one.
+     */
+    public TimerWheelScheduler() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, null);
+    }
+
+    /**
+     * Initializes an instance of {@link TimerWheelScheduler} class.
+     *
+     * @param tick the duration of a tick
+     * @param unit the unit of the duration
+     * @param wheelSize the number of buckets of the wheel, rounded up to a power of two
+     * @param executor the executor running the tasks once due, or null for a pool of {@link #DEFAULT_THREADS} daemon threads
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheelScheduler(long tick, TimeUnit unit, int wheelSize, Executor executor) {
+        if (tick < 1) {
+            throw new IllegalArgumentException("tick < 1: " + tick);
+        }
+        if (wheelSize < 1 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("wheelSize must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickNanos = unit.toNanos(tick);
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new ArrayDeque<>();
+        }
+        this.mask = size - 1;
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread dispatcher = new Thread(runnable, "TimerWheelScheduler-" + THREAD_SEQUENCE.incrementAndGet());
+                            dispatcher.setDaemon(true);
+                            return dispatcher;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            this.ownedExecutor = pool;
+            this.executor = pool;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.started = new AtomicBoolean();
+    }
+
+    /**
+     * @return the duration of a tick, in nanoseconds
+     */
+    public long tickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * @return the number of buckets of the wheel
+     */
+    public int wheelSize() {
+        return wheel.length;
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new WheelWorker();
+    }
+
+    /**
+     * Stops the timer thread, dropping the tasks not due yet, and shuts down
+     * the threads running the tasks if the scheduler created them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pending.clear();
+        Thread timer = thread;
+        if (timer != null) {
+            LockSupport.unpark(timer);
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private void startTimer() {
+        if (started.compareAndSet(false, true)) {
+            startNanos = System.nanoTime();
+            Thread timer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    turn();
+                }
+            }, "TimerWheelScheduler-timer-" + THREAD_SEQUENCE.incrementAndGet());
+            timer.setDaemon(true);
+            thread = timer;
+            timer.start();
+        }
+    }
+
+    /**
+     * Turns the wheel until the scheduler is closed.
+     */
+    private void turn() {
+        long tick = 0;
+        while (!closed) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            for (long wait = deadline - System.nanoTime(); wait > 0 && !closed; wait = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(this, wait);
+            }
+            if (closed) {
+                break;
+            }
+            for (Timeout timeout = pending.poll(); timeout != null; timeout = pending.poll()) {
+                // the tasks of a tick run at its end, so a deadline goes to the tick ending at or after it
+                long ticks = Math.max((timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos - 1, tick);
+                timeout.rounds = (ticks - tick) / wheel.length;
+                wheel[(int) (ticks & mask)].add(timeout);
+            }
+            Iterator<Timeout> bucket = wheel[(int) (tick & mask)].iterator();
+            while (bucket.hasNext()) {
+                Timeout timeout = bucket.next();
+                if (timeout.isUnsubscribed()) {
+                    bucket.remove();
+                } else if (timeout.rounds <= 0) {
+                    bucket.remove();
+                    timeout.worker.dispatch(timeout);
+                } else {
+                    timeout.rounds--;
+                }
+            }
+            tick++;
+        }
+        for (Queue<Timeout> bucket : wheel) {
+            bucket.clear();
+        }
+    }
+
+    /**
+     * A task of a worker, waiting on the wheel or for its turn to run.
+     */
+    private static final class Timeout implements Subscription {
+        /** The worker of the task. */
+        private final WheelWorker worker;
+        /** The task. */
+        private final Action0 action;
+        /** When the task is due, in {@link System#nanoTime()}. */
+        private final long deadlineNanos;
+        /** The turns of the wheel left before the task is due, only accessed by the timer thread. */
+        private long rounds;
+        /** Whether the task was cancelled or run. */
+        private volatile boolean unsubscribed;
+
+        Timeout(WheelWorker worker, Action0 action, long deadlineNanos) {
+            this.worker = worker;
+            this.action = action;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public void unsubscribe() {
+            if (!unsubscribed) {
+                unsubscribed = true;
+                worker.tasks.remove(this);
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return unsubscribed;
+        }
+    }
+
+    /**
+     * A worker running its tasks one at a time on the executor once due.
+     */
+    private final class WheelWorker extends Worker implements Runnable {
+        /** The tasks not run yet, unsubscribed with the worker. */
+        private final CompositeSubscription tasks = new CompositeSubscription();
+        /** The tasks due and not run yet, in order. */
+        private final Queue<Timeout> due = new ConcurrentLinkedQueue<>();
+        /** The number of tasks dispatched and not run yet. */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        @Override
+        public Subscription schedule(Action0 action) {
+            return schedule(action, 0, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+            if (closed) {
+                // fail the task rather than never running it, so that a poll errors out instead of hanging
+                throw new RejectedExecutionException("TimerWheelScheduler is closed");
+            }
+            if (tasks.isUnsubscribed()) {
+                return Subscriptions.unsubscribed();
+            }
+            long delayNanos = unit.toNanos(delayTime);
+            Timeout timeout = new Timeout(this, action, System.nanoTime() + delayNanos);
+            tasks.add(timeout);
+            if (delayNanos <= 0) {
+                dispatch(timeout);
+            } else {
+                startTimer();
+                pending.add(timeout);
+            }
+            return timeout;
+        }
+
+        void dispatch(Timeout timeout) {
+            due.add(timeout);
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    tasks.unsubscribe();
+                    RxJavaHooks.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                Timeout timeout = due.poll();
+                if (timeout != null && !timeout.isUnsubscribed() && !tasks.isUnsubscribed()) {
+                    try {
+                        timeout.action.call();
+                    } catch (Throwable t) {
+                        RxJavaHooks.onError(t);
+                    } finally {
+                        timeout.unsubscribe();
+                    }
+                }
+            } while (wip.decrementAndGet() > 0);
+        }
+
+        @Override
+        public void unsubscribe() {
+            tasks.unsubscribe();
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return tasks.isUnsubscribed();
+        }
+    }
+}
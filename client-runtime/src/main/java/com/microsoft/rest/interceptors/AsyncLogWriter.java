@@ -0,0 +1,315 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okio.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the HTTP exchanges captured by the structured logging of a
+ * {@link LoggingInterceptor} on a background thread, one JSON line per exchange.
+ * The exchanges are handed over through a bounded lock-free ring buffer, so the
+ * threads sending the requests never block on logging: when the buffer is full,
+ * the exchange is dropped and counted instead. The decoding of the bodies and
+ * the formatting of the lines happen on the background thread.
+ *
+ * A writer can be shared by several interceptors. Its thread is a daemon
+ * thread running until the writer is closed, parked while there is nothing
+ * to write.
+ */
+public final class AsyncLogWriter implements Closeable {
+    /** The default number of exchanges the buffer holds. */
+    public static final int DEFAULT_CAPACITY = 8192;
+    /** The mapper formatting the lines. */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** The sequence number of the writer threads. */
+    private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+    /** The slots of the ring buffer. */
+    private final AtomicReferenceArray<HttpLogEvent> slots;
+    /** The mask giving the slot of a position. */
+    private final int mask;
+    /** The position of the next exchange to write. */
+    private final AtomicLong head;
+    /** The position of the next exchange to offer. */
+    private final AtomicLong tail;
+    /** The number of exchanges dropped because the buffer was full or the writer closed. */
+    private final AtomicLong dropped;
+    /** The number of offers in progress, which close waits for. */
+    private final AtomicInteger offering;
+    /** The loggers by name, only accessed by the writer thread. */
+    private final Map<String, Logger> loggers;
+    /** The thread writing the exchanges. */
+    private final Thread thread;
+    /** Whether the writer is closed. */
+    private volatile boolean closed;
+    /** Whether the writer thread is parked or about to park, waiting for an exchange. */
+    private volatile boolean parked;
+
+    /**
+     * Initializes an instance of {@link AsyncLogWriter} class with the default capacity.
+     */
+    public AsyncLogWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes an instance of {@link AsyncLogWriter} class.
+     *
+     * @param capacity the number of exchanges the buffer holds, rounded up to a power of two
+     */
+    public AsyncLogWriter(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.offering = new AtomicInteger();
+        this.loggers = new HashMap<>();
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "AsyncLogWriter-" + THREAD_SEQUENCE.incrementAndGet());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return the number of exchanges the buffer holds
+     */
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return the number of exchanges written so far
+     */
+    public long writtenCount() {
+        return head.get();
+    }
+
+    /**
+     * @return the number of exchanges dropped because the buffer was full or the writer closed
+     */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until the exchanges offered so far are written.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        long target = tail.get();
+        while (head.get() < target && thread.isAlive()) {
+            LockSupport.unpark(thread);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Stops accepting exchanges, and waits until the exchanges already offered are written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // The offers that saw the writer open store their exchanges before it stops
+        while (offering.get() > 0) {
+            Thread.yield();
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // The writer thread may have stopped before the last offers stored their exchanges
+        while (head.get() != tail.get()) {
+            poll();
+        }
+    }
+
+    /**
+     * Offers an exchange to write.
+     *
+     * @param event the exchange
+     * @return true if the exchange will be written; false if it was dropped
+     */
+    boolean offer(HttpLogEvent event) {
+        offering.incrementAndGet();
+        try {
+            while (!closed) {
+                long position = tail.get();
+                if (position - head.get() >= slots.length()) {
+                    break;
+                }
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet((int) (position & mask), event);
+                    if (parked) {
+                        LockSupport.unpark(thread);
+                    }
+                    return true;
+                }
+            }
+        } finally {
+            offering.decrementAndGet();
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private void drain() {
+        while (!closed || head.get() != tail.get()) {
+            if (!poll()) {
+                parked = true;
+                // An exchange offered before the flag was seen is seen here
+                if (!closed && head.get() == tail.get()) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the next exchange in the buffer.
+     *
+     * @return false if the buffer is empty
+     */
+    private boolean poll() {
+        long position = head.get();
+        if (position == tail.get()) {
+            return false;
+        }
+        int slot = (int) (position & mask);
+        HttpLogEvent event = slots.get(slot);
+        if (event == null) {
+            // The position is claimed, but the exchange is not stored yet
+            Thread.yield();
+            return true;
+        }
+        try {
+            write(event);
+        } catch (RuntimeException e) {
+            // A failing logger must not stop the writer
+        }
+        slots.set(slot, null);
+        head.set(position + 1);
+        return true;
+    }
+
+    private void write(HttpLogEvent event) {
+        Logger logger = loggers.get(event.loggerName);
+        if (logger == null) {
+            logger = LoggerFactory.getLogger(event.loggerName);
+            loggers.put(event.loggerName, logger);
+        }
+        String line;
+        try {
+            line = MAPPER.writeValueAsString(format(event));
+        } catch (Exception e) {
+            line = event.method + " " + event.url + " (could not format the exchange: " + e + ")";
+        }
+        logger.info(line);
+    }
+
+    private static ObjectNode format(HttpLogEvent event) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("method", event.method);
+        node.put("url", event.url);
+        if (event.error != null) {
+            node.put("error", event.error);
+        } else {
+            node.put("status", event.code);
+            node.put("message", event.message);
+        }
+        node.put("tookMs", event.tookMs);
+        if (event.requestHeaders != null) {
+            node.set("requestHeaders", format(event.requestHeaders));
+        }
+        if (event.requestBody != null) {
+            node.set("requestBody", format(event.requestBody, event.requestContentType, false, event.maxBodyChars));
+            node.put("requestBodyBytes", event.requestBodyBytes);
+            if (event.requestBody.size() < event.requestBodyBytes) {
+                node.put("requestBodyTruncated", true);
+            }
+        }
+        if (event.responseHeaders != null) {
+            node.set("responseHeaders", format(event.responseHeaders));
+        }
+        if (event.responseBody != null) {
+            node.set("responseBody", format(event.responseBody, event.responseContentType, event.responseGzipped,
+                    event.maxBodyChars));
+            node.put("responseBodyBytes", event.responseBodyBytes);
+            if (event.responseBodyClosed || event.responseBody.size() < event.responseBodyBytes) {
+                node.put("responseBodyTruncated", true);
+            }
+        }
+        return node;
+    }
+
+    private static ObjectNode format(Headers headers) {
+        ObjectNode node = MAPPER.createObjectNode();
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i);
+            if (LoggingInterceptor.LOGGING_HEADER.equalsIgnoreCase(name)) {
+                continue;
+            }
+            JsonNode previous = node.get(name);
+            node.put(name, previous == null ? headers.value(i) : previous.asText() + ", " + headers.value(i));
+        }
+        return node;
+    }
+
+    /**
+     * Formats a body: JSON bodies are embedded as JSON, other text bodies as strings.
+     */
+    private static JsonNode format(Buffer body, MediaType contentType, boolean gzipped, long maxChars) {
+        String content;
+        try {
+            content = LoggingInterceptor.bodyContent(body, contentType, gzipped, maxChars);
+        } catch (Exception e) {
+            return MAPPER.getNodeFactory().textNode("(could not decode the body: " + e + ")");
+        }
+        if (content == null) {
+            return MAPPER.getNodeFactory().textNode("(binary " + body.size() + "-byte body omitted)");
+        }
+        if (!content.isEmpty() && contentType != null && "json".equalsIgnoreCase(contentType.subtype())) {
+            try {
+                return MAPPER.readTree(content);
+            } catch (Exception e) {
+                // not valid JSON, keep the content as text
+            }
+        }
+        return MAPPER.getNodeFactory().textNode(content);
+    }
+}
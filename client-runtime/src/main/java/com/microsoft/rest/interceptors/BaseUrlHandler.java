@@ -6,12 +6,16 @@
 
 package com.microsoft.rest.interceptors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Handles dynamic replacements on base URL. The arguments must be in pairs
@@ -20,34 +24,214 @@ import java.io.IOException;
  * dynamically by setting header x-ms-parameterized-host: "{subdomain}, azure"
  */
 public final class BaseUrlHandler implements Interceptor {
+    /**
+     * The header carrying the host parameters.
+     */
+    private static final String PARAMETERIZED_HOST_HEADER = "x-ms-parameterized-host";
+    /**
+     * The default maximum number of compiled host templates to keep.
+     */
+    private static final int DEFAULT_MAX_CACHED_TEMPLATES = 256;
+
+    /**
+     * The compiled host templates, keyed by the raw header value.
+     */
+    private final Cache<String, HostTemplate> templates;
+
+    /**
+     * Initialize an instance of {@link BaseUrlHandler} class with the default cache size.
+     */
+    public BaseUrlHandler() {
+        this(DEFAULT_MAX_CACHED_TEMPLATES);
+    }
+
+    /**
+     * Initialize an instance of {@link BaseUrlHandler} class.
+     *
+     * @param maxCachedTemplates the maximum number of compiled host templates to keep
+     */
+    public BaseUrlHandler(int maxCachedTemplates) {
+        this.templates = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedTemplates)
+                .build();
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request request = chain.request();
-        String parameters = request.header("x-ms-parameterized-host");
+        String parameters = request.header(PARAMETERIZED_HOST_HEADER);
         if (parameters != null && !parameters.isEmpty()) {
-            String[] replacements = parameters.split(", ");
-            if (replacements.length % 2 != 0) {
-                throw new IllegalArgumentException("Must provide a replacement value for each pattern");
-            }
-            String baseUrl = request.url().toString();
-            for (int i = 0; i < replacements.length; i += 2) {
-                baseUrl = baseUrl.replaceAll("(?i)\\Q" + replacements[i] + "\\E", replacements[i + 1]);
+            HostTemplate template = templates.getIfPresent(parameters);
+            if (template == null) {
+                template = HostTemplate.compile(parameters);
+                templates.put(parameters, template);
             }
-            baseUrl = removeRedundantProtocol(baseUrl);
-            HttpUrl baseHttpUrl = HttpUrl.parse(baseUrl);
             request = request.newBuilder()
-                    .url(baseHttpUrl)
-                    .removeHeader("x-ms-parameterized-host")
+                    .url(template.apply(request.url()))
+                    .removeHeader(PARAMETERIZED_HOST_HEADER)
                     .build();
         }
         return chain.proceed(request);
     }
 
-    private String removeRedundantProtocol(String url) {
+    private static String removeRedundantProtocol(String url) {
         int last = url.lastIndexOf("://") - 1;
         while (last >= 0 && Character.isLetter(url.charAt(last))) {
             --last;
         }
         return url.substring(last + 1);
     }
+
+    /**
+     * Replaces every case-insensitive occurrence of a pattern in a string.
+     *
+     * @param source the string to replace in
+     * @param pattern the pattern to look for
+     * @param replacement the value to put in place of the pattern
+     * @return the source itself if the pattern is not found, otherwise the replaced string
+     */
+    private static String replaceIgnoreCase(String source, String pattern, String replacement) {
+        int index = indexOfIgnoreCase(source, pattern, 0);
+        if (index < 0 || pattern.isEmpty()) {
+            return source;
+        }
+        StringBuilder builder = new StringBuilder(source.length() + replacement.length());
+        int start = 0;
+        while (index >= 0) {
+            builder.append(source, start, index).append(replacement);
+            start = index + pattern.length();
+            index = indexOfIgnoreCase(source, pattern, start);
+        }
+        return builder.append(source, start, source.length()).toString();
+    }
+
+    private static int indexOfIgnoreCase(String source, String pattern, int from) {
+        int max = source.length() - pattern.length();
+        for (int i = from; i <= max; i++) {
+            if (source.regionMatches(true, i, pattern, 0, pattern.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The compiled form of an x-ms-parameterized-host header. The header is
+     * split once and the resolved scheme, host and port are remembered for the
+     * last origin it was applied to, so that subsequent requests only copy them
+     * into an {@link HttpUrl.Builder}.
+     */
+    private static final class HostTemplate {
+        /** The patterns to replace, in header order. */
+        private final String[] patterns;
+        /** The values to replace the patterns with, in header order. */
+        private final String[] values;
+        /** The last resolved origin. */
+        private volatile ResolvedOrigin resolved;
+
+        private HostTemplate(String[] patterns, String[] values) {
+            this.patterns = patterns;
+            this.values = values;
+        }
+
+        static HostTemplate compile(String parameters) {
+            List<String> replacements = new ArrayList<>();
+            int start = 0;
+            int index = parameters.indexOf(", ");
+            while (index >= 0) {
+                replacements.add(parameters.substring(start, index));
+                start = index + 2;
+                index = parameters.indexOf(", ", start);
+            }
+            replacements.add(parameters.substring(start));
+            // String.split() semantics: trailing empty strings are dropped
+            while (!replacements.isEmpty() && replacements.get(replacements.size() - 1).isEmpty()) {
+                replacements.remove(replacements.size() - 1);
+            }
+            if (replacements.size() % 2 != 0) {
+                throw new IllegalArgumentException("Must provide a replacement value for each pattern");
+            }
+            String[] patterns = new String[replacements.size() / 2];
+            String[] values = new String[replacements.size() / 2];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = replacements.get(2 * i);
+                values[i] = replacements.get(2 * i + 1);
+            }
+            return new HostTemplate(patterns, values);
+        }
+
+        HttpUrl apply(HttpUrl url) {
+            String origin = origin(url);
+            ResolvedOrigin current = resolved;
+            if (current == null || !current.source.equals(origin)) {
+                current = new ResolvedOrigin(origin, substitute(origin));
+                resolved = current;
+            }
+            if (current.target == null || matchesOutsideOrigin(url)) {
+                // Replacements reach beyond the origin; substitute on the full URL
+                String fullUrl = removeRedundantProtocol(substitute(url.toString()));
+                HttpUrl httpUrl = HttpUrl.parse(fullUrl);
+                if (httpUrl == null) {
+                    throw new IllegalArgumentException("Invalid URL after host parameter replacements: " + fullUrl);
+                }
+                return httpUrl;
+            }
+            return url.newBuilder()
+                    .scheme(current.target.scheme())
+                    .host(current.target.host())
+                    .port(current.target.port())
+                    .build();
+        }
+
+        private boolean matchesOutsideOrigin(HttpUrl url) {
+            String fullUrl = url.toString();
+            int pathStart = fullUrl.indexOf('/', url.scheme().length() + 3);
+            if (pathStart < 0) {
+                return false;
+            }
+            for (String pattern : patterns) {
+                if (!pattern.isEmpty() && indexOfIgnoreCase(fullUrl, pattern, pathStart) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String substitute(String source) {
+            String result = source;
+            for (int i = 0; i < patterns.length; i++) {
+                result = replaceIgnoreCase(result, patterns[i], values[i]);
+            }
+            return result;
+        }
+
+        private static String origin(HttpUrl url) {
+            StringBuilder builder = new StringBuilder()
+                    .append(url.scheme()).append("://").append(url.host());
+            if (url.port() != HttpUrl.defaultPort(url.scheme())) {
+                builder.append(':').append(url.port());
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * An origin before and after the host parameter replacements.
+     */
+    private static final class ResolvedOrigin {
+        /** The origin of the request URL before the replacements. */
+        private final String source;
+        /** The origin after the replacements; null if the replacements introduced a path. */
+        private final HttpUrl target;
+
+        ResolvedOrigin(String source, String substituted) {
+            this.source = source;
+            HttpUrl parsed = HttpUrl.parse(removeRedundantProtocol(substituted) + "/");
+            if (parsed != null && "/".equals(parsed.encodedPath()) && parsed.encodedQuery() == null) {
+                this.target = parsed;
+            } else {
+                this.target = null;
+            }
+        }
+    }
 }
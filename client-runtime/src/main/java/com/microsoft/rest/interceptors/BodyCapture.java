@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
+import okio.Timeout;
+
+import java.io.IOException;
+
+/**
+ * A source copying at most a number of bytes of a body as it is read by its
+ * consumer, so that the body can be logged without buffering it whole. The
+ * capture completes once the body is exhausted or closed.
+ */
+abstract class BodyCapture extends ForwardingSource {
+    /** The bytes captured so far. */
+    private final Buffer captured;
+    /** The number of bytes to capture at most. */
+    private final long maxBytes;
+    /** The number of bytes read so far. */
+    private long totalBytes;
+    /** Whether the capture completed. */
+    private boolean completed;
+
+    /**
+     * Initializes an instance of {@link BodyCapture} class.
+     *
+     * @param source the body to capture
+     * @param maxBytes the number of bytes to capture at most
+     */
+    BodyCapture(Source source, long maxBytes) {
+        super(source);
+        this.captured = new Buffer();
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+        long read = super.read(sink, byteCount);
+        if (read == -1) {
+            complete(true);
+            return -1;
+        }
+        long keep = Math.min(read, maxBytes - captured.size());
+        if (keep > 0) {
+            sink.copyTo(captured, sink.size() - read, keep);
+        }
+        totalBytes += read;
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            complete(false);
+        }
+    }
+
+    private void complete(boolean exhausted) {
+        if (!completed) {
+            completed = true;
+            try {
+                onComplete(captured, totalBytes, exhausted);
+            } catch (RuntimeException e) {
+                // Logging must not fail the consumer of the body
+            }
+        }
+    }
+
+    /**
+     * Called once, when the body is exhausted or closed.
+     *
+     * @param captured the captured bytes
+     * @param totalBytes the number of bytes read from the body
+     * @param exhausted true if the whole body was read; false if it was closed before
+     */
+    abstract void onComplete(Buffer captured, long totalBytes, boolean exhausted);
+
+    /**
+     * Captures at most a number of bytes of a request body. The body is written
+     * whole, but the bytes past the limit are discarded as they are written.
+     *
+     * @param body the request body
+     * @param captured the buffer receiving the captured bytes
+     * @param maxBytes the number of bytes to capture at most
+     * @return the size of the body in bytes
+     * @throws IOException if the body cannot be written
+     */
+    static long capture(RequestBody body, Buffer captured, long maxBytes) throws IOException {
+        CappedSink sink = new CappedSink(captured, maxBytes);
+        BufferedSink buffered = Okio.buffer(sink);
+        body.writeTo(buffered);
+        buffered.flush();
+        return sink.totalBytes;
+    }
+
+    /**
+     * A sink keeping at most a number of bytes and discarding the rest.
+     */
+    private static final class CappedSink implements Sink {
+        /** The bytes kept. */
+        private final Buffer captured;
+        /** The number of bytes to keep at most. */
+        private final long maxBytes;
+        /** The number of bytes written. */
+        private long totalBytes;
+
+        CappedSink(Buffer captured, long maxBytes) {
+            this.captured = captured;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            long keep = Math.max(0, Math.min(byteCount, maxBytes - captured.size()));
+            if (keep > 0) {
+                source.read(captured, keep);
+            }
+            source.skip(byteCount - keep);
+            totalBytes += byteCount;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -6,6 +6,7 @@
 
 package com.microsoft.rest.interceptors;
 
+import com.microsoft.rest.CallOptions;
 import okhttp3.Headers;
 import okhttp3.Interceptor;
 import okhttp3.Request;
@@ -14,32 +15,40 @@ import okhttp3.Response;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * An instance of this class enables adding custom headers in client requests
  * when added to the {@link okhttp3.OkHttpClient} interceptors.
+ *
+ * The headers are kept in an immutable snapshot which is replaced as a whole
+ * on every modification, so headers can be changed while requests are in
+ * flight without any locking on the request path. Headers in the
+ * {@link CallOptions} of a request are applied on top of the custom headers.
  */
 public final class CustomHeadersInterceptor implements Interceptor {
     /**
-     * @return the currently stored custom headers
+     * @return a read-only view of the currently stored custom headers
      */
     public Map<String, List<String>> headers() {
-        return headers;
+        return snapshot.headers;
     }
 
     /**
-     * A mapping of custom headers.
+     * The current snapshot of the custom headers.
      */
-    private Map<String, List<String>> headers;
+    private volatile Snapshot snapshot;
 
     /**
      * Initialize an instance of {@link CustomHeadersInterceptor} class.
      */
     public CustomHeadersInterceptor() {
-        headers = new HashMap<String, List<String>>();
+        snapshot = new Snapshot(new LinkedHashMap<String, List<String>>());
     }
 
     /**
@@ -61,9 +70,12 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param value the value of the header.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor replaceHeader(String name, String value) {
-        this.headers.put(name, new ArrayList<String>());
-        this.headers.get(name).add(value);
+    public synchronized CustomHeadersInterceptor replaceHeader(String name, String value) {
+        Map<String, List<String>> headers = copy();
+        List<String> values = new ArrayList<>();
+        values.add(value);
+        headers.put(name, values);
+        snapshot = new Snapshot(headers);
         return this;
     }
 
@@ -75,11 +87,13 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param value the value of the header.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeader(String name, String value) {
-        if (!this.headers.containsKey(name)) {
-            this.headers.put(name, new ArrayList<String>());
+    public synchronized CustomHeadersInterceptor addHeader(String name, String value) {
+        Map<String, List<String>> headers = copy();
+        if (!headers.containsKey(name)) {
+            headers.put(name, new ArrayList<String>());
         }
-        this.headers.get(name).add(value);
+        headers.get(name).add(value);
+        snapshot = new Snapshot(headers);
         return this;
     }
 
@@ -89,8 +103,10 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param headers an OkHttp {@link Headers} object.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeaders(Headers headers) {
-        this.headers.putAll(headers.toMultimap());
+    public synchronized CustomHeadersInterceptor addHeaders(Headers headers) {
+        Map<String, List<String>> newHeaders = copy();
+        newHeaders.putAll(headers.toMultimap());
+        snapshot = new Snapshot(newHeaders);
         return this;
     }
 
@@ -100,10 +116,12 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param headers a map of headers.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeaderMap(Map<String, String> headers) {
+    public synchronized CustomHeadersInterceptor addHeaderMap(Map<String, String> headers) {
+        Map<String, List<String>> newHeaders = copy();
         for (Map.Entry<String, String> header : headers.entrySet()) {
-            this.headers.put(header.getKey(), Collections.singletonList(header.getValue()));
+            newHeaders.put(header.getKey(), Collections.singletonList(header.getValue()));
         }
+        snapshot = new Snapshot(newHeaders);
         return this;
     }
 
@@ -113,8 +131,10 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param headers a multimap of headers.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor addHeaderMultimap(Map<String, List<String>> headers) {
-        this.headers.putAll(headers);
+    public synchronized CustomHeadersInterceptor addHeaderMultimap(Map<String, List<String>> headers) {
+        Map<String, List<String>> newHeaders = copy();
+        newHeaders.putAll(headers);
+        snapshot = new Snapshot(newHeaders);
         return this;
     }
 
@@ -124,19 +144,91 @@ public final class CustomHeadersInterceptor implements Interceptor {
      * @param name the name of the header to remove.
      * @return the interceptor instance itself.
      */
-    public CustomHeadersInterceptor removeHeader(String name) {
-        this.headers.remove(name);
+    public synchronized CustomHeadersInterceptor removeHeader(String name) {
+        Map<String, List<String>> headers = copy();
+        headers.remove(name);
+        snapshot = new Snapshot(headers);
         return this;
     }
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        Request.Builder builder = chain.request().newBuilder();
-        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
-            for (String value : header.getValue()) {
-                builder = builder.header(header.getKey(), value);
+        Snapshot current = snapshot;
+        Request request = chain.request();
+        CallOptions callOptions = CallOptions.fromRequest(request);
+        boolean hasCallHeaders = callOptions != null && !callOptions.headers().isEmpty();
+        if (current.rendered.size() == 0 && !hasCallHeaders) {
+            return chain.proceed(request);
+        }
+        Headers original = request.headers();
+        Headers merged;
+        if (original.size() == 0) {
+            merged = current.rendered;
+        } else {
+            Headers.Builder builder = new Headers.Builder();
+            for (int i = 0; i < original.size(); i++) {
+                String name = original.name(i);
+                if (!current.names.contains(name.toLowerCase(Locale.US))) {
+                    builder.add(name, original.value(i));
+                }
+            }
+            for (int i = 0; i < current.rendered.size(); i++) {
+                builder.add(current.rendered.name(i), current.rendered.value(i));
+            }
+            merged = builder.build();
+        }
+        if (hasCallHeaders) {
+            Headers.Builder builder = merged.newBuilder();
+            for (Map.Entry<String, String> header : callOptions.headers().entrySet()) {
+                builder.set(header.getKey(), header.getValue());
+            }
+            merged = builder.build();
+        }
+        return chain.proceed(request.newBuilder().headers(merged).build());
+    }
+
+    /**
+     * @return a mutable deep copy of the current headers
+     */
+    private Map<String, List<String>> copy() {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : snapshot.headers.entrySet()) {
+            headers.put(header.getKey(), new ArrayList<>(header.getValue()));
+        }
+        return headers;
+    }
+
+    /**
+     * An immutable set of custom headers, pre-rendered into an OkHttp
+     * {@link Headers} block.
+     */
+    private static final class Snapshot {
+        /** The read-only header multimap. */
+        private final Map<String, List<String>> headers;
+        /** The headers to put on the requests. */
+        private final Headers rendered;
+        /** The lower case names of the rendered headers. */
+        private final Set<String> names;
+
+        Snapshot(Map<String, List<String>> headers) {
+            Map<String, List<String>> readOnly = new LinkedHashMap<>();
+            // Each header replaces the request header of the same name, and
+            // the last value wins if a header has multiple values
+            Map<String, String[]> effective = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                readOnly.put(header.getKey(), Collections.unmodifiableList(new ArrayList<>(header.getValue())));
+                if (!header.getValue().isEmpty()) {
+                    String value = header.getValue().get(header.getValue().size() - 1);
+                    effective.put(header.getKey().toLowerCase(Locale.US), new String[] {header.getKey(), value});
+                }
+            }
+            Headers.Builder builder = new Headers.Builder();
+            for (String[] header : effective.values()) {
+                builder.add(header[0], header[1]);
             }
+            this.headers = Collections.unmodifiableMap(readOnly);
+            this.rendered = builder.build();
+            this.names = Collections.unmodifiableSet(new HashSet<>(effective.keySet()));
         }
-        return chain.proceed(builder.build());
     }
 }
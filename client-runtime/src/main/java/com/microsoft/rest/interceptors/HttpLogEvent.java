@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okio.Buffer;
+
+/**
+ * An HTTP exchange captured by a {@link LoggingInterceptor} for an {@link AsyncLogWriter}.
+ * The capture only keeps references to the immutable parts of the exchange and
+ * capped copies of the bodies; all the decoding and formatting is left to the writer.
+ * The fields are set by the interceptor before the event is offered to the
+ * writer, and not changed afterwards.
+ */
+final class HttpLogEvent {
+    /** The name of the logger to write the event to. */
+    final String loggerName;
+    /** The HTTP method of the request. */
+    final String method;
+    /** The URL of the request. */
+    final String url;
+    /** The headers of the request, or null if not logged. */
+    Headers requestHeaders;
+    /** The first bytes of the body of the request, or null if not logged. */
+    Buffer requestBody;
+    /** The content type of the request body. */
+    MediaType requestContentType;
+    /** The size of the request body in bytes. */
+    long requestBodyBytes;
+    /** The status code of the response, or 0 if the request failed. */
+    int code;
+    /** The status message of the response. */
+    String message;
+    /** The headers of the response, or null if not logged. */
+    Headers responseHeaders;
+    /** The first bytes of the body of the response, or null if not logged. */
+    Buffer responseBody;
+    /** The content type of the response body. */
+    MediaType responseContentType;
+    /** Whether the response body is gzipped. */
+    boolean responseGzipped;
+    /** The number of bytes read from the response body. */
+    long responseBodyBytes;
+    /** Whether the response body was closed before it was read whole. */
+    boolean responseBodyClosed;
+    /** The number of characters of a body to log at most. */
+    long maxBodyChars;
+    /** The time from sending the request to receiving the response headers, in milliseconds. */
+    long tookMs;
+    /** The failure of the request, or null if a response was received. */
+    String error;
+
+    HttpLogEvent(String loggerName, String method, String url) {
+        this.loggerName = loggerName;
+        this.method = method;
+        this.url = url;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which HTTP exchanges the structured logging of a {@link LoggingInterceptor}
+ * records, with a separate rate for successful exchanges and for errors. A
+ * response with a status code of 400 or more, or a request failing without a
+ * response, is an error.
+ *
+ * Whether a successful exchange is recorded is decided before its request is
+ * sent, so that the requests not recorded cost no capture at all. As a result,
+ * an error whose exchange was not sampled as a success is recorded without its
+ * request body.
+ */
+public final class LogSampler {
+    /** The fraction of the successful exchanges to record. */
+    private final double successRate;
+    /** The fraction of the errors to record. */
+    private final double errorRate;
+
+    /**
+     * Initializes an instance of {@link LogSampler} class.
+     *
+     * @param successRate the fraction of the successful exchanges to record, between 0 and 1
+     * @param errorRate the fraction of the errors to record, between 0 and 1
+     */
+    public LogSampler(double successRate, double errorRate) {
+        if (!(successRate >= 0 && successRate <= 1)) {
+            throw new IllegalArgumentException("successRate must be between 0 and 1");
+        }
+        if (!(errorRate >= 0 && errorRate <= 1)) {
+            throw new IllegalArgumentException("errorRate must be between 0 and 1");
+        }
+        this.successRate = successRate;
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Creates a sampler recording a fraction of the successful exchanges and all the errors.
+     *
+     * @param successRate the fraction of the successful exchanges to record, between 0 and 1
+     * @return the sampler
+     */
+    public static LogSampler errorsAndSuccesses(double successRate) {
+        return new LogSampler(successRate, 1);
+    }
+
+    /**
+     * @return the fraction of the successful exchanges to record
+     */
+    public double successRate() {
+        return successRate;
+    }
+
+    /**
+     * @return the fraction of the errors to record
+     */
+    public double errorRate() {
+        return errorRate;
+    }
+
+    boolean sampleSuccess() {
+        return sample(successRate);
+    }
+
+    boolean sampleError() {
+        return sample(errorRate);
+    }
+
+    private static boolean sample(double rate) {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+}
@@ -8,8 +8,7 @@ package com.microsoft.rest.interceptors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.base.Joiner;
-import com.google.common.io.CharStreams;
+import com.microsoft.rest.CallOptions;
 import com.microsoft.rest.LogLevel;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
@@ -17,7 +16,7 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okio.Buffer;
-import okio.BufferedSource;
+import okio.Okio;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,18 +24,39 @@ import org.slf4j.LoggerFactory;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 /**
  * An OkHttp interceptor that handles logging of HTTP requests and responses.
+ *
+ * By default, the requests and responses are logged line by line on the
+ * thread sending them. With an {@link AsyncLogWriter}, the interceptor only
+ * captures each exchange and the writer logs it as a single JSON line from a
+ * background thread; a {@link LogSampler} can then limit the exchanges logged.
  */
 public class LoggingInterceptor implements Interceptor {
-    private static final String LOGGING_HEADER = "x-ms-logging-context";
+    /** The header carrying the name of the logger of a request. */
+    static final String LOGGING_HEADER = "x-ms-logging-context";
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Charset UTF8 = Charset.forName("UTF8");
+    /** The default number of bytes of a body logged at most. */
+    public static final long DEFAULT_MAX_BODY_BYTES = 16 * 1024;
     private LogLevel logLevel;
+    /** The loggers by logging context. */
+    private final ConcurrentMap<String, Logger> loggers = new ConcurrentHashMap<>();
+    /** The writer of the structured logs, or null to log line by line. */
+    private volatile AsyncLogWriter writer;
+    /** The sampler of the structured logs, or null to log every exchange. */
+    private volatile LogSampler sampler;
+    /** The number of bytes of a body logged at most. */
+    private volatile long maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
 
     /**
      * Creates an interceptor with a LogLevel enum.
@@ -57,52 +77,58 @@ public class LoggingInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        // get logger
         Request request = chain.request();
+        LogLevel logLevel = this.logLevel;
+        CallOptions callOptions = CallOptions.fromRequest(request);
+        if (callOptions != null && callOptions.logLevel() != null) {
+            logLevel = callOptions.logLevel();
+        }
+        if (logLevel == LogLevel.NONE) {
+            return chain.proceed(request);
+        }
         String context = request.header(LOGGING_HEADER);
         if (context == null) {
             context = "";
         }
-        Logger logger = LoggerFactory.getLogger(context);
+        AsyncLogWriter writer = this.writer;
+        if (writer != null) {
+            return capture(chain, request, logLevel, context, writer);
+        }
 
-        // log URL
-        if (logLevel != LogLevel.NONE) {
-            log(logger, String.format("--> %s %s", request.method(), request.url()));
+        // get logger
+        Logger logger = loggers.get(context);
+        if (logger == null) {
+            logger = LoggerFactory.getLogger(context);
+            loggers.putIfAbsent(context, logger);
         }
+
+        // log URL
+        log(logger, "--> " + request.method() + " " + request.url());
         // log headers
         if (logLevel == LogLevel.HEADERS || logLevel == LogLevel.BODY_AND_HEADERS) {
             for (String header : request.headers().names()) {
                 if (!LOGGING_HEADER.equals(header)) {
-                    log(logger, String.format("%s: %s", header, Joiner.on(", ").join(request.headers(header))));
+                    log(logger, headerLine(header, request.headers(header)));
                 }
             }
         }
         // log body
+        final long maxBodyBytes = this.maxBodyBytes;
         if (logLevel == LogLevel.BODY || logLevel == LogLevel.BODY_AND_HEADERS) {
             if (request.body() != null) {
                 Buffer buffer = new Buffer();
-                request.body().writeTo(buffer);
-
-                Charset charset = Charset.forName("UTF8");
-                MediaType contentType = request.body().contentType();
-                if (contentType != null) {
-                    charset = contentType.charset(charset);
-                }
+                long size = BodyCapture.capture(request.body(), buffer, maxBodyBytes);
 
-                if (isPlaintext(buffer)) {
-                    String content = buffer.clone().readString(charset);
-                    if (logLevel.isPrettyJson()) {
-                        try {
-                            content = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(MAPPER.readValue(content, JsonNode.class));
-                        } catch (Exception e) {
-                            // swallow, keep original content
-                        }
+                String content = bodyContent(buffer, request.body().contentType(), false, maxBodyBytes);
+                if (content != null) {
+                    if (logLevel.isPrettyJson() && buffer.size() == size) {
+                        content = prettyJson(content);
                     }
-                    log(logger, String.format("%s-byte body:\n%s", request.body().contentLength(), content));
+                    log(logger, bodyLine(size, true, buffer.size(), content));
                     log(logger, "--> END " + request.method());
                 } else {
                     log(logger, "--> END " + request.method() + " (binary "
-                            + request.body().contentLength() + "-byte body omitted)");
+                            + size + "-byte body omitted)");
                 }
             }
         }
@@ -122,61 +148,132 @@ public class LoggingInterceptor implements Interceptor {
         String bodySize = contentLength != -1 ? contentLength + "-byte" : "unknown-length";
 
         // log URL
-        if (logLevel != LogLevel.NONE) {
-            log(logger, String.format("<-- %s %s %s (%s ms, %s body)", response.code(), response.message(), response.request().url(), tookMs, bodySize));
-        }
+        log(logger, "<-- " + response.code() + " " + response.message() + " " + response.request().url()
+                + " (" + tookMs + " ms, " + bodySize + " body)");
 
         // log headers
         if (logLevel == LogLevel.HEADERS || logLevel == LogLevel.BODY_AND_HEADERS) {
             for (String header : response.headers().names()) {
-                log(logger, String.format("%s: %s", header, Joiner.on(", ").join(response.headers(header))));
+                log(logger, headerLine(header, response.headers(header)));
             }
         }
 
-        // log body
+        // log body once read by the consumer of the response
         if (logLevel == LogLevel.BODY || logLevel == LogLevel.BODY_AND_HEADERS) {
             if (response.body() != null) {
-                BufferedSource source = responseBody.source();
-                source.request(Long.MAX_VALUE); // Buffer the entire body.
-                Buffer buffer = source.buffer();
-
-                Charset charset = Charset.forName("UTF8");
-                MediaType contentType = responseBody.contentType();
-                if (contentType != null) {
-                    try {
-                        charset = contentType.charset(charset);
-                    } catch (UnsupportedCharsetException e) {
-                        log(logger, "Couldn't decode the response body; charset is likely malformed.");
-                        log(logger, "<-- END HTTP");
-                        return response;
+                final Logger bodyLogger = logger;
+                final boolean prettyJson = logLevel.isPrettyJson();
+                final MediaType contentType = responseBody.contentType();
+                final boolean gzipped = isGzipped(response);
+                BodyCapture capture = new BodyCapture(responseBody.source(), maxBodyBytes) {
+                    @Override
+                    void onComplete(Buffer captured, long totalBytes, boolean exhausted) {
+                        logResponseBody(bodyLogger, captured, contentType, gzipped, totalBytes, exhausted,
+                                prettyJson, maxBodyBytes);
                     }
-                }
+                };
+                return response.newBuilder()
+                        .body(ResponseBody.create(contentType, contentLength, Okio.buffer(capture)))
+                        .build();
+            }
+        }
+        return response;
+    }
 
-                boolean gzipped = response.header("content-encoding") != null && StringUtils.containsIgnoreCase(response.header("content-encoding"), "gzip");
-                if (!isPlaintext(buffer) && !gzipped) {
-                    log(logger, "<-- END HTTP (binary " + buffer.size() + "-byte body omitted)");
-                    return response;
-                }
+    private void logResponseBody(Logger logger, Buffer captured, MediaType contentType, boolean gzipped,
+                                 long totalBytes, boolean exhausted, boolean prettyJson, long maxBodyBytes) {
+        String content;
+        try {
+            content = bodyContent(captured, contentType, gzipped, maxBodyBytes);
+        } catch (UnsupportedCharsetException e) {
+            log(logger, "Couldn't decode the response body; charset is likely malformed.");
+            log(logger, "<-- END HTTP");
+            return;
+        } catch (IOException e) {
+            log(logger, "Couldn't decode the response body: " + e);
+            log(logger, "<-- END HTTP");
+            return;
+        }
+        if (content == null) {
+            log(logger, "<-- END HTTP (binary " + totalBytes + "-byte body omitted)");
+            return;
+        }
 
-                if (contentLength != 0) {
-                    String content;
-                    if (gzipped) {
-                        content = CharStreams.toString(new InputStreamReader(new GZIPInputStream(buffer.clone().inputStream())));
-                    } else {
-                        content = buffer.clone().readString(charset);
-                    }
-                    if (logLevel.isPrettyJson()) {
-                        try {
-                            content = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(MAPPER.readValue(content, JsonNode.class));
-                        } catch (Exception e) {
-                            // swallow, keep original content
-                        }
-                    }
-                    log(logger, String.format("%s-byte body:\n%s", buffer.size(), content));
-                }
-                log(logger, "<-- END HTTP");
+        if (totalBytes != 0) {
+            if (prettyJson && exhausted && captured.size() == totalBytes) {
+                content = prettyJson(content);
             }
+            log(logger, bodyLine(totalBytes, exhausted, captured.size(), content));
         }
+        log(logger, "<-- END HTTP");
+    }
+
+    /**
+     * Captures an exchange for the structured logs. Only references to the
+     * request and response and capped copies of their bodies are taken on the
+     * calling thread; the rest of the work is left to the writer. With a logged
+     * response body, the exchange is offered to the writer once the body is
+     * read or closed.
+     */
+    private Response capture(Chain chain, Request request, LogLevel logLevel, String context, final AsyncLogWriter writer) throws IOException {
+        LogSampler sampler = this.sampler;
+        boolean sampled = sampler == null || sampler.sampleSuccess();
+        boolean logHeaders = logLevel == LogLevel.HEADERS || logLevel == LogLevel.BODY_AND_HEADERS;
+        boolean logBody = logLevel == LogLevel.BODY || logLevel == LogLevel.BODY_AND_HEADERS;
+
+        long maxBodyBytes = this.maxBodyBytes;
+
+        final HttpLogEvent event = new HttpLogEvent(context, request.method(), request.url().toString());
+        event.maxBodyChars = maxBodyBytes;
+        if (logHeaders) {
+            event.requestHeaders = request.headers();
+        }
+        if (sampled && logBody && request.body() != null) {
+            event.requestBody = new Buffer();
+            event.requestBodyBytes = BodyCapture.capture(request.body(), event.requestBody, maxBodyBytes);
+            event.requestContentType = request.body().contentType();
+        }
+
+        long startNs = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (Exception e) {
+            if (sampler == null || sampler.sampleError()) {
+                event.tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+                event.error = e.toString();
+                writer.offer(event);
+            }
+            throw e;
+        }
+        event.tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+        if (response.code() >= 400 ? sampler != null && !sampler.sampleError() : !sampled) {
+            return response;
+        }
+
+        event.code = response.code();
+        event.message = response.message();
+        if (logHeaders) {
+            event.responseHeaders = response.headers();
+        }
+        ResponseBody responseBody = response.body();
+        if (logBody && responseBody != null) {
+            event.responseContentType = responseBody.contentType();
+            event.responseGzipped = isGzipped(response);
+            BodyCapture capture = new BodyCapture(responseBody.source(), maxBodyBytes) {
+                @Override
+                void onComplete(Buffer captured, long totalBytes, boolean exhausted) {
+                    event.responseBody = captured;
+                    event.responseBodyBytes = totalBytes;
+                    event.responseBodyClosed = !exhausted;
+                    writer.offer(event);
+                }
+            };
+            return response.newBuilder()
+                    .body(ResponseBody.create(event.responseContentType, responseBody.contentLength(), Okio.buffer(capture)))
+                    .build();
+        }
+        writer.offer(event);
         return response;
     }
 
@@ -197,6 +294,146 @@ public class LoggingInterceptor implements Interceptor {
         return this;
     }
 
+    /**
+     * @return the writer of the structured logs, or null if the traffic is logged line by line
+     */
+    public AsyncLogWriter writer() {
+        return writer;
+    }
+
+    /**
+     * Sets the writer of the structured logs. With a writer, each exchange is
+     * logged as a single JSON line from the thread of the writer, and the
+     * {@link #log(Logger, String)} hook is not called.
+     * @param writer the writer, or null to log the traffic line by line
+     * @return the interceptor
+     */
+    public LoggingInterceptor withWriter(AsyncLogWriter writer) {
+        this.writer = writer;
+        return this;
+    }
+
+    /**
+     * @return the sampler of the structured logs, or null if every exchange is logged
+     */
+    public LogSampler sampler() {
+        return sampler;
+    }
+
+    /**
+     * Sets the sampler of the structured logs. The sampler only applies with a writer.
+     * @param sampler the sampler, or null to log every exchange
+     * @return the interceptor
+     */
+    public LoggingInterceptor withSampler(LogSampler sampler) {
+        this.sampler = sampler;
+        return this;
+    }
+
+    /**
+     * @return the number of bytes of a body logged at most
+     */
+    public long maxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * Sets the number of bytes of a body logged at most. The bodies are captured
+     * while they are sent and read, and the bytes past this limit are not kept.
+     * @param maxBodyBytes the number of bytes of a body logged at most
+     * @return the interceptor
+     */
+    public LoggingInterceptor withMaxBodyBytes(long maxBodyBytes) {
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes < 0");
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        return this;
+    }
+
+    /**
+     * Decodes a body for logging. A gzipped body is decompressed up to a number
+     * of characters, and as far as its bytes go if they were truncated.
+     *
+     * @param buffer the body, left unchanged
+     * @param contentType the content type of the body
+     * @param gzipped whether the body is gzipped
+     * @param maxChars the number of characters of a gzipped body to decode at most
+     * @return the text of the body, or null if the body is binary
+     * @throws IOException if the gzipped body cannot be decompressed
+     */
+    static String bodyContent(Buffer buffer, MediaType contentType, boolean gzipped, long maxChars) throws IOException {
+        if (buffer.size() == 0) {
+            return "";
+        }
+        Charset charset = UTF8;
+        if (contentType != null) {
+            charset = contentType.charset(charset);
+        }
+        if (gzipped) {
+            StringBuilder content = new StringBuilder();
+            char[] chars = new char[1024];
+            try {
+                Reader reader = new InputStreamReader(new GZIPInputStream(buffer.clone().inputStream()), charset);
+                while (content.length() < maxChars) {
+                    int read = reader.read(chars);
+                    if (read == -1) {
+                        break;
+                    }
+                    content.append(chars, 0, read);
+                }
+            } catch (EOFException e) {
+                // the captured bytes end before the gzipped body does
+            }
+            if (content.length() > maxChars) {
+                content.setLength((int) maxChars);
+            }
+            return content.toString();
+        }
+        if (!isPlaintext(buffer)) {
+            return null;
+        }
+        return buffer.clone().readString(charset);
+    }
+
+    private static boolean isGzipped(Response response) {
+        String encoding = response.header("content-encoding");
+        return encoding != null && StringUtils.containsIgnoreCase(encoding, "gzip");
+    }
+
+    private static String bodyLine(long totalBytes, boolean exhausted, long capturedBytes, String content) {
+        StringBuilder line = new StringBuilder();
+        if (exhausted) {
+            line.append(totalBytes).append("-byte body");
+        } else {
+            line.append("body closed after ").append(totalBytes).append(" bytes");
+        }
+        if (capturedBytes < totalBytes) {
+            line.append(", truncated to ").append(capturedBytes).append(" bytes");
+        }
+        return line.append(":\n").append(content).toString();
+    }
+
+    private static String headerLine(String name, List<String> values) {
+        StringBuilder line = new StringBuilder(name).append(": ");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            line.append(values.get(i));
+        }
+        return line.toString();
+    }
+
+    private static String prettyJson(String content) {
+        try {
+            return MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(MAPPER.readValue(content, JsonNode.class));
+        } catch (Exception e) {
+            // swallow, keep original content
+            return content;
+        }
+    }
+
     private static boolean isPlaintext(Buffer buffer) throws EOFException {
         try {
             Buffer prefix = new Buffer();
@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+/**
+ * Generates the values of the 'x-ms-client-request-id' header put by
+ * {@link RequestIdHeaderInterceptor}. Implementations are called once per
+ * request from the dispatcher threads and must be thread safe.
+ */
+public interface RequestIdGenerator {
+    /**
+     * @return a new request ID
+     */
+    String newRequestId();
+}
@@ -11,19 +11,61 @@ import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
-import java.util.UUID;
 
 /**
  * An instance of this class puts an UUID in the request header. Azure uses
  * the request id as the unique identifier for
  */
 public final class RequestIdHeaderInterceptor implements Interceptor {
+    /**
+     * The generator for the request IDs.
+     */
+    private RequestIdGenerator generator;
+
+    /**
+     * Initialize an instance of {@link RequestIdHeaderInterceptor} class with a
+     * {@link ThreadLocalRandomRequestIdGenerator}.
+     */
+    public RequestIdHeaderInterceptor() {
+        this(new ThreadLocalRandomRequestIdGenerator());
+    }
+
+    /**
+     * Initialize an instance of {@link RequestIdHeaderInterceptor} class.
+     *
+     * @param generator the generator for the request IDs
+     */
+    public RequestIdHeaderInterceptor(RequestIdGenerator generator) {
+        withGenerator(generator);
+    }
+
+    /**
+     * @return the generator for the request IDs
+     */
+    public RequestIdGenerator generator() {
+        return generator;
+    }
+
+    /**
+     * Sets the generator for the request IDs.
+     *
+     * @param generator the generator for the request IDs
+     * @return the interceptor itself
+     */
+    public RequestIdHeaderInterceptor withGenerator(RequestIdGenerator generator) {
+        if (generator == null) {
+            throw new NullPointerException("generator == null");
+        }
+        this.generator = generator;
+        return this;
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request request = chain.request();
         if (request.header("x-ms-client-request-id") == null) {
             request = chain.request().newBuilder()
-                    .header("x-ms-client-request-id", UUID.randomUUID().toString())
+                    .header("x-ms-client-request-id", generator.newRequestId())
                     .build();
         }
         return chain.proceed(request);
@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import java.util.UUID;
+
+/**
+ * Generates request IDs with {@link UUID#randomUUID()}, which draws from a
+ * shared SecureRandom. Use this generator to keep the request IDs
+ * cryptographically strong at the cost of contention under high concurrency.
+ */
+public final class SecureRandomRequestIdGenerator implements RequestIdGenerator {
+    @Override
+    public String newRequestId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.interceptors;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates random version 4 UUIDs from a {@link ThreadLocalRandom}. The IDs
+ * are not cryptographically strong, but unlike {@link UUID#randomUUID()} the
+ * generation never contends on a shared SecureRandom or blocks on entropy.
+ * This is the default generator.
+ */
+public final class ThreadLocalRandomRequestIdGenerator implements RequestIdGenerator {
+    @Override
+    public String newRequestId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = random.nextLong();
+        long leastSigBits = random.nextLong();
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 4 LINES
+        mostSigBits &= 0xffffffffffff0fffL;  // clear version
+        mostSigBits |= 0x0000000000004000L;  // set to version 4
+        leastSigBits &= 0x3fffffffffffffffL; // clear variant
+        leastSigBits |= 0x8000000000000000L; // set to IETF variant
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
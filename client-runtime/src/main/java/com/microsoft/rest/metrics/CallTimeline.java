@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.google.common.collect.MapMaker;
+import okhttp3.Request;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timeline of an HTTP call through a {@link com.microsoft.rest.RestClient}
+ * measuring its metrics, broken down in phases. The phases after the
+ * interceptors describe the last attempt of the call.
+ *
+ * The timeline is available from the {@link com.microsoft.rest.ServiceResponse}
+ * of the call, looked up by the request of its raw response, which keeps its
+ * tag. Its phases are recorded in the {@link MetricsRecorder} of the
+ * client: all but the deserialization once the response body is read, and the
+ * deserialization once the response is built.
+ */
+public final class CallTimeline {
+    /**
+     * The phases of a call.
+     */
+    public enum Phase {
+        /** From being enqueued to starting, for asynchronous calls. */
+        QUEUED,
+        /** Through the application interceptors: credentials, token acquisition and custom headers. */
+        INTERCEPTORS,
+        /** From the first attempt to the last one, when the call was retried. */
+        RETRIES,
+        /** Acquiring a pooled connection, or establishing a new one. */
+        CONNECTION,
+        /** Writing the request body. */
+        REQUEST_WRITE,
+        /** From the request written to the response headers received. */
+        TIME_TO_FIRST_BYTE,
+        /** Reading the response body. */
+        BODY_READ,
+        /** Deserializing the response body. */
+        DESERIALIZATION
+    }
+
+    /** A timestamp not reached yet. */
+    private static final long UNSET = Long.MIN_VALUE;
+    /** The timeline of the call running on the current thread. */
+    private static final ThreadLocal<CallTimeline> CURRENT = new ThreadLocal<>();
+    /** The timelines by the request of their last attempt, weakly held and compared by identity. */
+    private static final ConcurrentMap<Request, CallTimeline> BY_REQUEST = new MapMaker().weakKeys().makeMap();
+
+    /** The recorder of the phases. */
+    private final MetricsRecorder metrics;
+    /** The time the call waited in the queue of the dispatcher. */
+    private final long queuedNanos;
+    /** When the call started. */
+    private final long startNs;
+    /** The host of the last attempt. */
+    private volatile String host;
+    /** The operation of the call. */
+    private volatile String operation;
+    /** When the first attempt left the application interceptors. */
+    private volatile long firstAttemptNs = UNSET;
+    /** When the last attempt left the application interceptors. */
+    private volatile long attemptNs = UNSET;
+    /** When the last attempt got its connection. */
+    private volatile long networkNs = UNSET;
+    /** When the request body of the last attempt was written. */
+    private volatile long writtenNs = UNSET;
+    /** When the response headers of the last attempt were received. */
+    private volatile long headersNs = UNSET;
+    /** When the response body of the last attempt was read. */
+    private volatile long bodyReadNs = UNSET;
+    /** The time the response body took to deserialize. */
+    private volatile long deserializationNanos;
+
+    CallTimeline(MetricsRecorder metrics, long queuedNanos, long startNs) {
+        this.metrics = metrics;
+        this.queuedNanos = queuedNanos;
+        this.startNs = startNs;
+    }
+
+    /**
+     * Gets the timeline of a call from the request of its raw response.
+     *
+     * @param request the request of the raw response
+     * @return the timeline, or null if the call was not measured
+     */
+    public static CallTimeline of(Request request) {
+        return request == null ? null : BY_REQUEST.get(request);
+    }
+
+    static CallTimeline current() {
+        return CURRENT.get();
+    }
+
+    CallTimeline bind() {
+        CallTimeline previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    static void restore(CallTimeline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Marks the start of an attempt.
+     *
+     * @param request the request of the attempt
+     * @param host the host of the request
+     * @param operation the operation of the request
+     */
+    void onAttempt(Request request, String host, String operation) {
+        long now = System.nanoTime();
+        if (firstAttemptNs == UNSET) {
+            firstAttemptNs = now;
+        }
+        attemptNs = now;
+        networkNs = UNSET;
+        writtenNs = UNSET;
+        headersNs = UNSET;
+        bodyReadNs = UNSET;
+        this.host = host;
+        this.operation = operation;
+        BY_REQUEST.put(request, this);
+    }
+
+    void onNetworkStart() {
+        networkNs = System.nanoTime();
+    }
+
+    void onRequestWritten() {
+        writtenNs = System.nanoTime();
+    }
+
+    void onHeaders() {
+        headersNs = System.nanoTime();
+    }
+
+    void onBodyRead() {
+        bodyReadNs = System.nanoTime();
+        if (metrics != null && host != null) {
+            for (Phase phase : Phase.values()) {
+                if (phase != Phase.DESERIALIZATION) {
+                    metrics.recordPhase(host, operation, phase, nanos(phase));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the time the response body took to deserialize.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public void onDeserialized(long nanos) {
+        deserializationNanos = nanos;
+        if (metrics != null && host != null) {
+            metrics.recordPhase(host, operation, Phase.DESERIALIZATION, nanos);
+        }
+    }
+
+    /**
+     * Gets the duration of a phase.
+     *
+     * @param phase the phase
+     * @return the duration in nanoseconds, or 0 if the phase did not complete
+     */
+    public long nanos(Phase phase) {
+        switch (phase) {
+            case QUEUED:
+                return queuedNanos;
+            case INTERCEPTORS:
+                return between(startNs, firstAttemptNs);
+            case RETRIES:
+                return between(firstAttemptNs, attemptNs);
+            case CONNECTION:
+                return between(attemptNs, networkNs);
+            case REQUEST_WRITE:
+                return between(networkNs, writtenNs);
+            case TIME_TO_FIRST_BYTE:
+                return between(writtenNs != UNSET ? writtenNs : networkNs, headersNs);
+            case BODY_READ:
+                return between(headersNs, bodyReadNs);
+            case DESERIALIZATION:
+                return deserializationNanos;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return the time from the start of the call to the response body read, in nanoseconds,
+     * or 0 if the body is not read yet
+     */
+    public long totalNanos() {
+        return between(startNs, bodyReadNs);
+    }
+
+    private static long between(long from, long to) {
+        if (from == UNSET || to == UNSET) {
+            return 0;
+        }
+        return Math.max(0, to - from);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(phase.name().toLowerCase()).append('=')
+                    .append(TimeUnit.NANOSECONDS.toMicros(nanos(phase))).append("us");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Starts the {@link CallTimeline} of each call through an HTTP client, and
+ * records the time asynchronous calls wait in the queue of its dispatcher,
+ * from being enqueued to starting. The calls are timed while queued when
+ * created through {@link #callFactory(Call.Factory)}, and this interceptor
+ * must be the first application interceptor of the client to see the
+ * requests as they were enqueued.
+ */
+public final class CallTimelineInterceptor implements Interceptor {
+    /** The recorder of the measurements. */
+    private final MetricsRecorder metrics;
+    /** When the calls waiting in the queue were enqueued, by request. */
+    private final ConcurrentMap<Request, Long> enqueued;
+
+    /**
+     * Initializes an instance of {@link CallTimelineInterceptor} class.
+     *
+     * @param metrics the recorder of the measurements
+     */
+    public CallTimelineInterceptor(MetricsRecorder metrics) {
+        if (metrics == null) {
+            throw new NullPointerException("metrics == null");
+        }
+        this.metrics = metrics;
+        this.enqueued = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the recorder of the measurements
+     */
+    public MetricsRecorder metrics() {
+        return metrics;
+    }
+
+    /**
+     * Wraps a call factory so that the calls it creates are timed while they are queued.
+     *
+     * @param callFactory the call factory of the HTTP client
+     * @return the wrapped call factory
+     */
+    public Call.Factory callFactory(final Call.Factory callFactory) {
+        return new Call.Factory() {
+            @Override
+            public Call newCall(Request request) {
+                return new TimedCall(callFactory.newCall(request));
+            }
+        };
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        // Requests are compared by identity, as Request does not override equals
+        Long enqueuedNs = enqueued.remove(request);
+        long startNs = System.nanoTime();
+        long queuedNanos = 0;
+        if (enqueuedNs != null) {
+            queuedNanos = startNs - enqueuedNs;
+            metrics.recordQueueWait(request.url().host(), queuedNanos);
+        }
+        CallTimeline previous = new CallTimeline(metrics, queuedNanos, startNs).bind();
+        try {
+            return chain.proceed(request);
+        } finally {
+            CallTimeline.restore(previous);
+        }
+    }
+
+    /**
+     * A call recording when it is enqueued.
+     */
+    private final class TimedCall implements Call {
+        /** The call of the HTTP client. */
+        private final Call call;
+
+        TimedCall(Call call) {
+            this.call = call;
+        }
+
+        @Override
+        public Request request() {
+            return call.request();
+        }
+
+        @Override
+        public Response execute() throws IOException {
+            return call.execute();
+        }
+
+        @Override
+        public void enqueue(final Callback callback) {
+            final Request request = call.request();
+            enqueued.put(request, System.nanoTime());
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call failed, IOException e) {
+                    // The call may fail or be canceled before it starts
+                    enqueued.remove(request);
+                    callback.onFailure(TimedCall.this, e);
+                }
+
+                @Override
+                public void onResponse(Call succeeded, Response response) throws IOException {
+                    callback.onResponse(TimedCall.this, response);
+                }
+            });
+        }
+
+        @Override
+        public void cancel() {
+            call.cancel();
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return call.isExecuted();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return call.isCanceled();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import okhttp3.Protocol;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the connection pool and the dispatcher of an HTTP
+ * client, with the connections tracked by a {@link ConnectionTracker}.
+ */
+public final class ConnectionStats {
+    /** The number of idle connections in the pool. */
+    private final int idleConnections;
+    /** The number of connections in the pool. */
+    private final int totalConnections;
+    /** The number of connections opened. */
+    private final long connectionsOpened;
+    /** The number of requests sent. */
+    private final long requests;
+    /** The number of requests sent on a connection used before. */
+    private final long reusedRequests;
+    /** The number of connections opened by protocol. */
+    private final Map<Protocol, Long> protocolCounts;
+    /** The number of running calls by host. */
+    private final Map<String, Integer> runningCalls;
+    /** The number of queued calls by host. */
+    private final Map<String, Integer> queuedCalls;
+    /** The maximum number of calls running at once. */
+    private final int maxRequests;
+    /** The maximum number of calls running at once per host. */
+    private final int maxRequestsPerHost;
+
+    ConnectionStats(int idleConnections, int totalConnections, long connectionsOpened, long requests,
+                    long reusedRequests, Map<Protocol, Long> protocolCounts, Map<String, Integer> runningCalls,
+                    Map<String, Integer> queuedCalls, int maxRequests, int maxRequestsPerHost) {
+        this.idleConnections = idleConnections;
+        this.totalConnections = totalConnections;
+        this.connectionsOpened = connectionsOpened;
+        this.requests = requests;
+        this.reusedRequests = reusedRequests;
+        this.protocolCounts = Collections.unmodifiableMap(protocolCounts);
+        this.runningCalls = Collections.unmodifiableMap(runningCalls);
+        this.queuedCalls = Collections.unmodifiableMap(queuedCalls);
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * @return the number of idle connections in the pool
+     */
+    public int idleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * @return the number of connections in the pool, idle or in use
+     */
+    public int totalConnections() {
+        return totalConnections;
+    }
+
+    /**
+     * @return the number of connections opened so far
+     */
+    public long connectionsOpened() {
+        return connectionsOpened;
+    }
+
+    /**
+     * @return the number of connections opened then evicted from the pool, or closed
+     */
+    public long connectionsEvicted() {
+        return Math.max(0, connectionsOpened - totalConnections);
+    }
+
+    /**
+     * @return the number of requests sent so far
+     */
+    public long requests() {
+        return requests;
+    }
+
+    /**
+     * @return the share of the requests sent on a connection used before, between 0 and 1
+     */
+    public double reuseRatio() {
+        return requests == 0 ? 0 : (double) reusedRequests / requests;
+    }
+
+    /**
+     * @return the number of connections opened by protocol
+     */
+    public Map<Protocol, Long> protocolCounts() {
+        return protocolCounts;
+    }
+
+    /**
+     * @return the number of running calls by host
+     */
+    public Map<String, Integer> runningCalls() {
+        return runningCalls;
+    }
+
+    /**
+     * @return the number of calls queued in the dispatcher by host
+     */
+    public Map<String, Integer> queuedCalls() {
+        return queuedCalls;
+    }
+
+    /**
+     * @return the maximum number of calls the dispatcher runs at once
+     */
+    public int maxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * @return the maximum number of calls the dispatcher runs at once per host
+     */
+    public int maxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("connections=%d idle=%d opened=%d evicted=%d reuse=%.2f protocols=%s running=%s queued=%s",
+                totalConnections, idleConnections, connectionsOpened, connectionsEvicted(), reuseRatio(),
+                protocolCounts, runningCalls, queuedCalls);
+    }
+}
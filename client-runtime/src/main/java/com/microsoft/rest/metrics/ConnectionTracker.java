@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import com.google.common.collect.MapMaker;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A network interceptor tracking the connections the requests of an HTTP
+ * client go through: how many were opened, with which protocol, and how
+ * often they are reused. Together with the connection pool and the
+ * dispatcher of the client, it makes up the {@link ConnectionStats}.
+ */
+public final class ConnectionTracker implements Interceptor {
+    /** The connections seen so far, weakly held by identity so that closed connections are collected. */
+    private final ConcurrentMap<Connection, Boolean> connections;
+    /** The number of connections opened. */
+    private final AtomicLong connectionsOpened;
+    /** The number of connections opened by protocol. */
+    private final ConcurrentMap<Protocol, AtomicLong> protocols;
+    /** The number of requests sent. */
+    private final AtomicLong requests;
+    /** The number of requests sent on a connection used before. */
+    private final AtomicLong reusedRequests;
+
+    /**
+     * Initializes an instance of {@link ConnectionTracker} class.
+     */
+    public ConnectionTracker() {
+        this.connections = new MapMaker().weakKeys().makeMap();
+        this.connectionsOpened = new AtomicLong();
+        this.protocols = new ConcurrentHashMap<>();
+        this.requests = new AtomicLong();
+        this.reusedRequests = new AtomicLong();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Connection connection = chain.connection();
+        if (connection != null) {
+            requests.incrementAndGet();
+            // A reused connection is found without locking; only a new one is added
+            if (connections.get(connection) == null && connections.putIfAbsent(connection, Boolean.TRUE) == null) {
+                connectionsOpened.incrementAndGet();
+                AtomicLong count = protocols.get(connection.protocol());
+                if (count == null) {
+                    count = new AtomicLong();
+                    AtomicLong existing = protocols.putIfAbsent(connection.protocol(), count);
+                    if (existing != null) {
+                        count = existing;
+                    }
+                }
+                count.incrementAndGet();
+            } else {
+                reusedRequests.incrementAndGet();
+            }
+        }
+        return chain.proceed(chain.request());
+    }
+
+    /**
+     * Takes a snapshot of the connections and calls of an HTTP client this
+     * interceptor is a network interceptor of.
+     *
+     * @param httpClient the HTTP client
+     * @return the snapshot
+     */
+    public ConnectionStats snapshot(OkHttpClient httpClient) {
+        Dispatcher dispatcher = httpClient.dispatcher();
+        Map<Protocol, Long> protocolCounts = new EnumMap<>(Protocol.class);
+        for (Map.Entry<Protocol, AtomicLong> count : protocols.entrySet()) {
+            protocolCounts.put(count.getKey(), count.getValue().get());
+        }
+        return new ConnectionStats(
+                httpClient.connectionPool().idleConnectionCount(),
+                httpClient.connectionPool().connectionCount(),
+                connectionsOpened.get(),
+                requests.get(),
+                reusedRequests.get(),
+                protocolCounts,
+                callsByHost(dispatcher.runningCalls()),
+                callsByHost(dispatcher.queuedCalls()),
+                dispatcher.getMaxRequests(),
+                dispatcher.getMaxRequestsPerHost());
+    }
+
+    private static Map<String, Integer> callsByHost(List<Call> calls) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Call call : calls) {
+            String host = call.request().url().host();
+            Integer count = counts.get(host);
+            counts.put(host, count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Wraps the interceptor of a set of credentials to record the time it takes
+ * to authenticate each request, which is the time until it passes the request
+ * on. This includes acquiring or refreshing a token.
+ */
+public final class CredentialsTimingInterceptor implements Interceptor {
+    /** The interceptor of the credentials. */
+    private final Interceptor credentialsInterceptor;
+    /** The recorder of the measurements. */
+    private final MetricsRecorder metrics;
+
+    /**
+     * Initializes an instance of {@link CredentialsTimingInterceptor} class.
+     *
+     * @param credentialsInterceptor the interceptor of the credentials
+     * @param metrics the recorder of the measurements
+     */
+    public CredentialsTimingInterceptor(Interceptor credentialsInterceptor, MetricsRecorder metrics) {
+        if (credentialsInterceptor == null) {
+            throw new NullPointerException("credentialsInterceptor == null");
+        }
+        if (metrics == null) {
+            throw new NullPointerException("metrics == null");
+        }
+        this.credentialsInterceptor = credentialsInterceptor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the interceptor of the credentials
+     */
+    public Interceptor credentialsInterceptor() {
+        return credentialsInterceptor;
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final long startNs = System.nanoTime();
+        return credentialsInterceptor.intercept(new Chain() {
+            private boolean recorded;
+
+            @Override
+            public Request request() {
+                return chain.request();
+            }
+
+            @Override
+            public Response proceed(Request request) throws IOException {
+                if (!recorded) {
+                    recorded = true;
+                    metrics.recordTokenAcquisition(request.url().host(), System.nanoTime() - startNs);
+                }
+                return chain.proceed(request);
+            }
+
+            @Override
+            public Connection connection() {
+                return chain.connection();
+            }
+        });
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values with a bounded relative error,
+ * in the manner of HdrHistogram. Values below 128 are counted exactly; larger
+ * values are counted in buckets whose width is at most 1/64th of the values
+ * they hold. The values up to 2^42, about 51 days in microseconds, are tracked;
+ * larger values are counted as 2^42 - 1.
+ */
+public final class Histogram {
+    /** The number of bits of the values counted exactly. */
+    private static final int SUB_BUCKET_BITS = 7;
+    /** The number of values counted exactly. */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** The number of buckets per power of two past the exact values. */
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    /** The number of bits of the tracked values. */
+    private static final int VALUE_BITS = 42;
+    /** The highest value tracked. */
+    public static final long HIGHEST_TRACKABLE_VALUE = (1L << VALUE_BITS) - 1;
+    /** The number of buckets. */
+    static final int BUCKETS = SUB_BUCKETS + (VALUE_BITS - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    /** The counts of the buckets. */
+    private final AtomicLongArray counts;
+    /** The sum of the values recorded. */
+    private final AtomicLong sum;
+    /** The lowest value recorded. */
+    private final AtomicLong min;
+    /** The highest value recorded. */
+    private final AtomicLong max;
+
+    /**
+     * Initializes an empty instance of {@link Histogram} class.
+     */
+    public Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.sum = new AtomicLong();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(-1);
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value; negative values are recorded as 0
+     */
+    public void record(long value) {
+        long clamped = Math.min(Math.max(value, 0), HIGHEST_TRACKABLE_VALUE);
+        counts.incrementAndGet(indexOf(clamped));
+        sum.addAndGet(clamped);
+        long current = min.get();
+        while (clamped < current && !min.compareAndSet(current, clamped)) {
+            current = min.get();
+        }
+        current = max.get();
+        while (clamped > current && !max.compareAndSet(current, clamped)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return a snapshot of the values recorded so far
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        if (count == 0) {
+            return new HistogramSnapshot(copy, 0, 0, 0, 0);
+        }
+        return new HistogramSnapshot(copy, count, sum.get(), min.get(), max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) ((value >>> shift) - HALF_SUB_BUCKETS);
+    }
+
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+/**
+ * An immutable snapshot of the values recorded in a {@link Histogram}.
+ */
+public final class HistogramSnapshot {
+    /** The counts of the buckets. */
+    private final long[] counts;
+    /** The number of values recorded. */
+    private final long count;
+    /** The sum of the values recorded. */
+    private final long sum;
+    /** The lowest value recorded. */
+    private final long min;
+    /** The highest value recorded. */
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long count, long sum, long min, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the lowest value recorded, or 0 if none was
+     */
+    public long min() {
+        return min;
+    }
+
+    /**
+     * @return the highest value recorded, or 0 if none was
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * @return the mean of the values recorded, or 0 if none was
+     */
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Gets the value below or at which a percentage of the recorded values are.
+     * The value is exact below 128, and within 1/64th above.
+     *
+     * @param percentile the percentage, between 0 and 100
+     * @return the value at the percentile, or 0 if no value was recorded
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.max(min, Math.min(max, Histogram.highestValueAt(i)));
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", min=" + min + ", p50=" + valueAtPercentile(50) + ", p99="
+                + valueAtPercentile(99) + ", max=" + max;
+    }
+}
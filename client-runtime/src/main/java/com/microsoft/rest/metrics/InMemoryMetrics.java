@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link MetricsRecorder} keeping the measurements in memory, with the
+ * latencies in {@link Histogram}s at microsecond resolution. Recording never
+ * blocks; use {@link #snapshot()} to read the measurements.
+ */
+public final class InMemoryMetrics implements MetricsRecorder {
+    /** The measurements of the operations, by host then operation. */
+    private final ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> operations;
+    /** The times the credentials took to authenticate the requests, by host. */
+    private final ConcurrentMap<String, Histogram> tokenAcquisitions;
+    /** The times the calls waited in the queue of the dispatcher, by host. */
+    private final ConcurrentMap<String, Histogram> queueWaits;
+
+    /**
+     * Initializes an instance of {@link InMemoryMetrics} class with no measurement.
+     */
+    public InMemoryMetrics() {
+        this.operations = new ConcurrentHashMap<>();
+        this.tokenAcquisitions = new ConcurrentHashMap<>();
+        this.queueWaits = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void recordCall(String host, String operation, int statusCode, long latencyNanos) {
+        OperationMetrics metrics = operation(host, operation);
+        metrics.latencies.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        AtomicLong count = metrics.statusCounts.get(statusCode);
+        if (count == null) {
+            count = new AtomicLong();
+            AtomicLong existing = metrics.statusCounts.putIfAbsent(statusCode, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public void recordBytes(String host, String operation, long requestBytes, long responseBytes) {
+        OperationMetrics metrics = operation(host, operation);
+        metrics.requestBytes.addAndGet(requestBytes);
+        metrics.responseBytes.addAndGet(responseBytes);
+    }
+
+    @Override
+    public void recordRetry(String host, String operation) {
+        operation(host, operation).retries.incrementAndGet();
+    }
+
+    @Override
+    public void recordTokenAcquisition(String host, long nanos) {
+        histogram(tokenAcquisitions, host).record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @Override
+    public void recordQueueWait(String host, long nanos) {
+        histogram(queueWaits, host).record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @Override
+    public void recordPhase(String host, String operation, CallTimeline.Phase phase, long nanos) {
+        AtomicReferenceArray<Histogram> phases = operation(host, operation).phases;
+        Histogram histogram = phases.get(phase.ordinal());
+        if (histogram == null) {
+            phases.compareAndSet(phase.ordinal(), null, new Histogram());
+            histogram = phases.get(phase.ordinal());
+        }
+        histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * @return a snapshot of the measurements so far
+     */
+    public MetricsSnapshot snapshot() {
+        List<OperationSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentMap<String, OperationMetrics>> host : operations.entrySet()) {
+            for (Map.Entry<String, OperationMetrics> operation : host.getValue().entrySet()) {
+                snapshots.add(operation.getValue().snapshot(host.getKey(), operation.getKey()));
+            }
+        }
+        return new MetricsSnapshot(snapshots, snapshot(tokenAcquisitions), snapshot(queueWaits));
+    }
+
+    private OperationMetrics operation(String host, String operation) {
+        ConcurrentMap<String, OperationMetrics> hostOperations = operations.get(host);
+        if (hostOperations == null) {
+            hostOperations = new ConcurrentHashMap<>();
+            ConcurrentMap<String, OperationMetrics> existing = operations.putIfAbsent(host, hostOperations);
+            if (existing != null) {
+                hostOperations = existing;
+            }
+        }
+        OperationMetrics metrics = hostOperations.get(operation);
+        if (metrics == null) {
+            metrics = new OperationMetrics();
+            OperationMetrics existing = hostOperations.putIfAbsent(operation, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    private static Histogram histogram(ConcurrentMap<String, Histogram> histograms, String host) {
+        Histogram histogram = histograms.get(host);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram existing = histograms.putIfAbsent(host, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    private static Map<String, HistogramSnapshot> snapshot(ConcurrentMap<String, Histogram> histograms) {
+        Map<String, HistogramSnapshot> snapshots = new HashMap<>();
+        for (Map.Entry<String, Histogram> histogram : histograms.entrySet()) {
+            snapshots.put(histogram.getKey(), histogram.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * The measurements of an operation on a host.
+     */
+    private static final class OperationMetrics {
+        /** The latencies of the attempts in microseconds. */
+        private final Histogram latencies = new Histogram();
+        /** The number of attempts by status code. */
+        private final ConcurrentMap<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<>();
+        /** The total size of the request bodies. */
+        private final AtomicLong requestBytes = new AtomicLong();
+        /** The total size of the response bodies read. */
+        private final AtomicLong responseBytes = new AtomicLong();
+        /** The number of retries. */
+        private final AtomicLong retries = new AtomicLong();
+        /** The durations of the phases of the calls in microseconds, created when first recorded. */
+        private final AtomicReferenceArray<Histogram> phases =
+                new AtomicReferenceArray<>(CallTimeline.Phase.values().length);
+
+        OperationSnapshot snapshot(String host, String operation) {
+            Map<Integer, Long> counts = new HashMap<>();
+            for (Map.Entry<Integer, AtomicLong> count : statusCounts.entrySet()) {
+                counts.put(count.getKey(), count.getValue().get());
+            }
+            Map<CallTimeline.Phase, HistogramSnapshot> phaseSnapshots = new EnumMap<>(CallTimeline.Phase.class);
+            for (CallTimeline.Phase phase : CallTimeline.Phase.values()) {
+                Histogram histogram = phases.get(phase.ordinal());
+                if (histogram != null) {
+                    phaseSnapshots.put(phase, histogram.snapshot());
+                }
+            }
+            return new OperationSnapshot(host, operation, latencies.snapshot(), counts,
+                    requestBytes.get(), responseBytes.get(), retries.get(), phaseSnapshots);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * An interceptor recording the latency, status code and body sizes of each
+ * attempt of the requests in a {@link MetricsRecorder}, and emits them as
+ * {@link RuntimeEvents}. Placed after the retry
+ * handler, it records every attempt separately, and marks the attempts on
+ * the {@link CallTimeline} of the call.
+ */
+public final class MetricsInterceptor implements Interceptor {
+    /** The header carrying the logging context of the generated service methods. */
+    private static final String LOGGING_HEADER = "x-ms-logging-context";
+
+    /** The recorder of the measurements. */
+    private final MetricsRecorder metrics;
+
+    /**
+     * Initializes an instance of {@link MetricsInterceptor} class.
+     *
+     * @param metrics the recorder of the measurements
+     */
+    public MetricsInterceptor(MetricsRecorder metrics) {
+        if (metrics == null) {
+            throw new NullPointerException("metrics == null");
+        }
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the recorder of the measurements
+     */
+    public MetricsRecorder metrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the operation of a request: the logging context of the generated
+     * service method, or the HTTP method when there is none.
+     *
+     * @param request the request
+     * @return the operation of the request
+     */
+    public static String operationOf(Request request) {
+        String context = request.header(LOGGING_HEADER);
+        return context != null ? context : request.method();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        final String host = request.url().host();
+        final String operation = operationOf(request);
+        final long requestBytes = request.body() != null ? Math.max(0, request.body().contentLength()) : 0;
+        final CallTimeline timeline = CallTimeline.current();
+        if (timeline != null) {
+            timeline.onAttempt(request, host, operation);
+        }
+
+        final String method = request.method();
+        final long startNs = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            long elapsedNs = System.nanoTime() - startNs;
+            metrics.recordCall(host, operation, 0, elapsedNs);
+            metrics.recordBytes(host, operation, requestBytes, 0);
+            RuntimeEvents.exchange(method, host, operation, 0, requestBytes, 0, elapsedNs);
+            throw e;
+        }
+        final int statusCode = response.code();
+        metrics.recordCall(host, operation, statusCode, System.nanoTime() - startNs);
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            metrics.recordBytes(host, operation, requestBytes, 0);
+            RuntimeEvents.exchange(method, host, operation, statusCode, requestBytes, 0, System.nanoTime() - startNs);
+            return response;
+        }
+        ForwardingSource counted = new ForwardingSource(body.source()) {
+            private long responseBytes;
+            private boolean recorded;
+
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read == -1) {
+                    record();
+                } else {
+                    responseBytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    record();
+                }
+            }
+
+            private void record() {
+                if (!recorded) {
+                    recorded = true;
+                    metrics.recordBytes(host, operation, requestBytes, responseBytes);
+                    RuntimeEvents.exchange(method, host, operation, statusCode, requestBytes, responseBytes,
+                            System.nanoTime() - startNs);
+                    if (timeline != null) {
+                        timeline.onBodyRead();
+                    }
+                }
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(counted)))
+                .build();
+    }
+}
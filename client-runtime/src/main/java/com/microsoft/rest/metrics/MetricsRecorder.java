@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+/**
+ * Receives the measurements of the HTTP traffic of a {@link com.microsoft.rest.RestClient}.
+ * Implement this interface to forward the measurements to a metrics library;
+ * {@link InMemoryMetrics} keeps them in memory.
+ *
+ * The methods are called on the threads sending the requests, so they should
+ * return quickly and must be thread-safe. The operation of a request is the
+ * logging context of the generated service method, or the HTTP method when
+ * there is none.
+ */
+public interface MetricsRecorder {
+    /**
+     * Records an attempt of a request.
+     *
+     * @param host the host of the request
+     * @param operation the operation of the request
+     * @param statusCode the status code of the response, or 0 if the attempt failed without a response
+     * @param latencyNanos the time from sending the request to receiving the response headers, in nanoseconds
+     */
+    void recordCall(String host, String operation, int statusCode, long latencyNanos);
+
+    /**
+     * Records the bytes of the bodies of an attempt, once its response body is read or closed.
+     *
+     * @param host the host of the request
+     * @param operation the operation of the request
+     * @param requestBytes the size of the request body, or 0 if unknown
+     * @param responseBytes the number of bytes read from the response body
+     */
+    void recordBytes(String host, String operation, long requestBytes, long responseBytes);
+
+    /**
+     * Records a retry of a request.
+     *
+     * @param host the host of the request
+     * @param operation the operation of the request
+     */
+    void recordRetry(String host, String operation);
+
+    /**
+     * Records the time the credentials took to authenticate a request, acquiring a token for instance.
+     *
+     * @param host the host of the request
+     * @param nanos the time in nanoseconds
+     */
+    void recordTokenAcquisition(String host, long nanos);
+
+    /**
+     * Records the time an asynchronous call waited in the queue of the dispatcher.
+     *
+     * @param host the host of the request
+     * @param nanos the time in nanoseconds
+     */
+    void recordQueueWait(String host, long nanos);
+
+    /**
+     * Records the duration of a phase of a call, as broken down by its {@link CallTimeline}.
+     *
+     * @param host the host of the request
+     * @param operation the operation of the request
+     * @param phase the phase
+     * @param nanos the time in nanoseconds
+     */
+    void recordPhase(String host, String operation, CallTimeline.Phase phase, long nanos);
+}
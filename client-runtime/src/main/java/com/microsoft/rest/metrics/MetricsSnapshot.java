@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the measurements kept by an {@link InMemoryMetrics}.
+ */
+public final class MetricsSnapshot {
+    /** The measurements of the operations. */
+    private final List<OperationSnapshot> operations;
+    /** The times the credentials took to authenticate the requests, by host, in microseconds. */
+    private final Map<String, HistogramSnapshot> tokenAcquisitionMicros;
+    /** The times the calls waited in the queue of the dispatcher, by host, in microseconds. */
+    private final Map<String, HistogramSnapshot> queueWaitMicros;
+
+    MetricsSnapshot(List<OperationSnapshot> operations, Map<String, HistogramSnapshot> tokenAcquisitionMicros,
+                    Map<String, HistogramSnapshot> queueWaitMicros) {
+        this.operations = Collections.unmodifiableList(operations);
+        this.tokenAcquisitionMicros = Collections.unmodifiableMap(tokenAcquisitionMicros);
+        this.queueWaitMicros = Collections.unmodifiableMap(queueWaitMicros);
+    }
+
+    /**
+     * @return the measurements of the operations
+     */
+    public List<OperationSnapshot> operations() {
+        return operations;
+    }
+
+    /**
+     * Gets the measurements of an operation on a host.
+     *
+     * @param host the host
+     * @param operation the operation
+     * @return the measurements, or null if the operation was not called on the host
+     */
+    public OperationSnapshot operation(String host, String operation) {
+        for (OperationSnapshot snapshot : operations) {
+            if (snapshot.host().equals(host) && snapshot.operation().equals(operation)) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the times the credentials took to authenticate the requests, by host, in microseconds
+     */
+    public Map<String, HistogramSnapshot> tokenAcquisitionMicros() {
+        return tokenAcquisitionMicros;
+    }
+
+    /**
+     * @return the times the asynchronous calls waited in the queue of the dispatcher, by host, in microseconds
+     */
+    public Map<String, HistogramSnapshot> queueWaitMicros() {
+        return queueWaitMicros;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+/**
+ * A network interceptor marking on the {@link CallTimeline} of each call when
+ * its connection is ready, when its request body is written and when its
+ * response headers are received. It should be the last network interceptor
+ * of the client, closest to the wire.
+ */
+public final class NetworkTimingInterceptor implements Interceptor {
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final CallTimeline timeline = CallTimeline.current();
+        Request request = chain.request();
+        if (timeline == null) {
+            return chain.proceed(request);
+        }
+        timeline.onNetworkStart();
+        final RequestBody body = request.body();
+        if (body != null) {
+            request = request.newBuilder().method(request.method(), new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return body.contentType();
+                }
+
+                @Override
+                public long contentLength() throws IOException {
+                    return body.contentLength();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    body.writeTo(sink);
+                    sink.flush();
+                    timeline.onRequestWritten();
+                }
+            }).build();
+        }
+        Response response = chain.proceed(request);
+        timeline.onHeaders();
+        return response;
+    }
+}
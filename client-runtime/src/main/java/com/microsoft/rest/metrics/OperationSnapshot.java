@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the measurements of an operation on a host.
+ */
+public final class OperationSnapshot {
+    /** The host. */
+    private final String host;
+    /** The operation. */
+    private final String operation;
+    /** The latencies of the attempts in microseconds. */
+    private final HistogramSnapshot latencyMicros;
+    /** The number of attempts by status code. */
+    private final Map<Integer, Long> statusCounts;
+    /** The total size of the request bodies. */
+    private final long requestBytes;
+    /** The total size of the response bodies read. */
+    private final long responseBytes;
+    /** The number of retries. */
+    private final long retries;
+    /** The durations of the phases of the calls in microseconds. */
+    private final Map<CallTimeline.Phase, HistogramSnapshot> phaseMicros;
+
+    OperationSnapshot(String host, String operation, HistogramSnapshot latencyMicros, Map<Integer, Long> statusCounts,
+                      long requestBytes, long responseBytes, long retries,
+                      Map<CallTimeline.Phase, HistogramSnapshot> phaseMicros) {
+        this.host = host;
+        this.operation = operation;
+        this.latencyMicros = latencyMicros;
+        this.statusCounts = Collections.unmodifiableMap(statusCounts);
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.retries = retries;
+        this.phaseMicros = Collections.unmodifiableMap(phaseMicros);
+    }
+
+    /**
+     * @return the host
+     */
+    public String host() {
+        return host;
+    }
+
+    /**
+     * @return the operation
+     */
+    public String operation() {
+        return operation;
+    }
+
+    /**
+     * @return the latencies of the attempts in microseconds
+     */
+    public HistogramSnapshot latencyMicros() {
+        return latencyMicros;
+    }
+
+    /**
+     * @return the number of attempts by status code, 0 standing for the attempts failed without a response
+     */
+    public Map<Integer, Long> statusCounts() {
+        return statusCounts;
+    }
+
+    /**
+     * @return the total size of the request bodies in bytes
+     */
+    public long requestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return the total number of bytes read from the response bodies
+     */
+    public long responseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @return the number of retries
+     */
+    public long retries() {
+        return retries;
+    }
+
+    /**
+     * @return the durations of the phases of the calls in microseconds, for the phases recorded
+     */
+    public Map<CallTimeline.Phase, HistogramSnapshot> phaseMicros() {
+        return phaseMicros;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+/**
+ * Receives the events of the runtime registered with {@link RuntimeEvents}.
+ * Override the methods of the events to receive, to commit them to a
+ * profiler for instance, such as the JDK Flight Recorder on runtimes that
+ * have it.
+ *
+ * The methods are called on the threads doing the work, so they should
+ * return quickly and must be thread-safe.
+ */
+public abstract class RuntimeEventListener {
+    /**
+     * Called when an HTTP exchange completes, once its response body is read or closed.
+     *
+     * @param method the HTTP method
+     * @param host the host of the request
+     * @param operation the operation of the request
+     * @param statusCode the status code of the response, or 0 if the exchange failed without a response
+     * @param requestBytes the size of the request body, or 0 if unknown
+     * @param responseBytes the number of bytes read from the response body
+     * @param durationNanos the time from sending the request to reading the response body, in nanoseconds
+     */
+    public void onExchange(String method, String host, String operation, int statusCode,
+                           long requestBytes, long responseBytes, long durationNanos) {
+    }
+
+    /**
+     * Called when the retry handler retries a request.
+     *
+     * @param method the HTTP method
+     * @param host the host of the request
+     * @param operation the operation of the request
+     */
+    public void onRetry(String method, String host, String operation) {
+    }
+
+    /**
+     * Called when a set of credentials acquires a token.
+     *
+     * @param resource the resource the token is for
+     * @param durationNanos the time the acquisition took, in nanoseconds
+     */
+    public void onTokenAcquired(String resource, long durationNanos) {
+    }
+
+    /**
+     * Called when a set of credentials caching its tokens serves one from its cache.
+     *
+     * @param resource the resource the token is for
+     */
+    public void onTokenCacheHit(String resource) {
+    }
+
+    /**
+     * Called when a long running operation is polled.
+     *
+     * @param url the URL of the operation
+     * @param previousStatus the status of the operation before the poll
+     * @param status the status of the operation after the poll
+     * @param durationNanos the time the poll took, in nanoseconds
+     */
+    public void onPoll(String url, String previousStatus, String status, long durationNanos) {
+    }
+
+    /**
+     * Called when a paged list fetches a page.
+     *
+     * @param nextPageLink the link the page is fetched from
+     * @param itemCount the number of items in the page
+     * @param durationNanos the time the fetch took, in nanoseconds
+     */
+    public void onPageFetched(String nextPageLink, int itemCount, long durationNanos) {
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The events of the runtime: the HTTP exchanges, the retries, the token
+ * acquisitions, the polls of the long running operations and the page
+ * fetches of the paged lists. The events are sent to the listener
+ * registered with {@link #withListener(RuntimeEventListener)}; with none,
+ * emitting an event costs a volatile read. A listener throwing does not
+ * fail the call, poll or page fetch emitting the event; the exception is
+ * logged and dropped.
+ *
+ * The HTTP exchanges are emitted by the clients measuring their traffic,
+ * set up with {@link com.microsoft.rest.RestClient.Builder#withMetrics(MetricsRecorder)}.
+ */
+public final class RuntimeEvents {
+    /** The logger of the exceptions thrown by the listener. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuntimeEvents.class);
+    /** The listener of the events, or null when there is none. */
+    private static volatile RuntimeEventListener listener;
+
+    private RuntimeEvents() {
+    }
+
+    /**
+     * Registers the listener of the events, replacing the current one.
+     *
+     * @param eventListener the listener, or null to stop listening
+     */
+    public static void withListener(RuntimeEventListener eventListener) {
+        listener = eventListener;
+    }
+
+    /**
+     * @return the listener of the events, or null if there is none
+     */
+    public static RuntimeEventListener listener() {
+        return listener;
+    }
+
+    /**
+     * @return true if a listener receives the events; check it before gathering the data of an event
+     */
+    public static boolean enabled() {
+        return listener != null;
+    }
+
+    /**
+     * Emits the completion of an HTTP exchange.
+     *
+     * @param method the HTTP method
+     * @param host the host of the request
+     * @param operation the operation of the request
+     * @param statusCode the status code of the response, or 0 if the exchange failed without a response
+     * @param requestBytes the size of the request body, or 0 if unknown
+     * @param responseBytes the number of bytes read from the response body
+     * @param durationNanos the time from sending the request to reading the response body, in nanoseconds
+     */
+    public static void exchange(String method, String host, String operation, int statusCode,
+                                long requestBytes, long responseBytes, long durationNanos) {
+        RuntimeEventListener current = listener;
+        if (current != null) {
+            try {
+                current.onExchange(method, host, operation, statusCode, requestBytes, responseBytes, durationNanos);
+            } catch (RuntimeException e) {
+                listenerFailed("exchange", e);
+            }
+        }
+    }
+
+    /**
+     * Emits a retry of a request.
+     *
+     * @param method the HTTP method
+     * @param host the host of the request
+     * @param operation the operation of the request
+     */
+    public static void retry(String method, String host, String operation) {
+        RuntimeEventListener current = listener;
+        if (current != null) {
+            try {
+                current.onRetry(method, host, operation);
+            } catch (RuntimeException e) {
+                listenerFailed("retry", e);
+            }
+        }
+    }
+
+    /**
+     * Emits a token acquisition.
+     *
+     * @param resource the resource the token is for
+     * @param durationNanos the time the acquisition took, in nanoseconds
+     */
+    public static void tokenAcquired(String resource, long durationNanos) {
+        RuntimeEventListener current = listener;
+        if (current != null) {
+            try {
+                current.onTokenAcquired(resource, durationNanos);
+            } catch (RuntimeException e) {
+                listenerFailed("tokenAcquired", e);
+            }
+        }
+    }
+
+    /**
+     * Emits a token served from the cache of a set of credentials. The
+     * credentials caching their tokens call it.
+     *
+     * @param resource the resource the token is for
+     */
+    public static void tokenCacheHit(String resource) {
+        RuntimeEventListener current = listener;
+        if (current != null) {
+            try {
+                current.onTokenCacheHit(resource);
+            } catch (RuntimeException e) {
+                listenerFailed("tokenCacheHit", e);
+            }
+        }
+    }
+
+    /**
+     * Emits a poll of a long running operation.
+     *
+     * @param url the URL of the operation
+     * @param previousStatus the status of the operation before the poll
+     * @param status the status of the operation after the poll
+     * @param durationNanos the time the poll took, in nanoseconds
+     */
+    public static void poll(String url, String previousStatus, String status, long durationNanos) {
+        RuntimeEventListener current = listener;
+        if (current != null) {
+            try {
+                current.onPoll(url, previousStatus, status, durationNanos);
+            } catch (RuntimeException e) {
+                listenerFailed("poll", e);
+            }
+        }
+    }
+
+    /**
+     * Emits the fetch of a page by a paged list.
+     *
+     * @param nextPageLink the link the page is fetched from
+     * @param itemCount the number of items in the page
+     * @param durationNanos the time the fetch took, in nanoseconds
+     */
+    public static void pageFetched(String nextPageLink, int itemCount, long durationNanos) {
+        RuntimeEventListener current = listener;
+        if (current != null) {
+            try {
+                current.onPageFetched(nextPageLink, itemCount, durationNanos);
+            } catch (RuntimeException e) {
+                listenerFailed("pageFetched", e);
+            }
+        }
+    }
+
+    private static void listenerFailed(String event, RuntimeException e) {
+        LOGGER.warn("The runtime event listener failed on " + event, e);
+    }
+}
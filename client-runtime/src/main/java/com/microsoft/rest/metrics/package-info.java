@@ -0,0 +1,5 @@
+/**
+ * The package contains classes that measure the HTTP traffic of a REST client
+ * and keep the measurements in memory or forward them to a metrics library.
+ */
+package com.microsoft.rest.metrics;
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.retry;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A circuit breaker per host, stopping the retries to a host after consecutive
+ * failures. Once open, the circuit of a host lets a single trial retry through
+ * after the open duration; the circuit closes again if a request to the host
+ * succeeds, and stays open otherwise. First attempts of requests are never
+ * rejected; their outcomes update the circuits.
+ */
+public final class CircuitBreaker {
+    /**
+     * The states of the circuit of a host.
+     */
+    public enum State {
+        /** Retries to the host are allowed. */
+        CLOSED,
+        /** Retries to the host are rejected. */
+        OPEN,
+        /** A trial retry to the host is allowed. */
+        HALF_OPEN
+    }
+
+    /** The default number of consecutive failures opening a circuit. */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    /** The default time a circuit stays open before a trial retry, in seconds. */
+    public static final int DEFAULT_OPEN_DURATION_SECONDS = 30;
+
+    /** The number of consecutive failures opening a circuit. */
+    private final int failureThreshold;
+    /** The time a circuit stays open before a trial retry, in nanoseconds. */
+    private final long openNanos;
+    /** The circuits of the hosts. */
+    private final ConcurrentMap<String, Circuit> circuits;
+    /** The number of retries rejected so far. */
+    private final AtomicLong rejected;
+
+    /**
+     * Initializes an instance of {@link CircuitBreaker} class with the default
+     * failure threshold and open duration.
+     */
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link CircuitBreaker} class.
+     *
+     * @param failureThreshold the number of consecutive failures opening a circuit
+     * @param openDuration the time a circuit stays open before a trial retry
+     * @param unit the time unit of the open duration
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold < 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+        this.circuits = new ConcurrentHashMap<>();
+        this.rejected = new AtomicLong();
+    }
+
+    /**
+     * Checks whether a retry can be sent to a host.
+     *
+     * @param host the host
+     * @return true if the retry can be sent; false if the circuit of the host is open
+     */
+    public boolean allowRetry(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null || circuit.allowRetry(System.nanoTime())) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records a successful request to a host.
+     *
+     * @param host the host
+     */
+    public void onSuccess(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit != null) {
+            circuit.onSuccess();
+        }
+    }
+
+    /**
+     * Records a failed request to a host.
+     *
+     * @param host the host
+     */
+    public void onFailure(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = new Circuit();
+            Circuit existing = circuits.putIfAbsent(host, circuit);
+            if (existing != null) {
+                circuit = existing;
+            }
+        }
+        circuit.onFailure(System.nanoTime());
+    }
+
+    /**
+     * Gets the state of the circuit of a host.
+     *
+     * @param host the host
+     * @return the state of the circuit
+     */
+    public State state(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            return State.CLOSED;
+        }
+        return circuit.state();
+    }
+
+    /**
+     * @return a snapshot of the states of the circuits of the hosts with recorded failures
+     */
+    public Map<String, State> states() {
+        Map<String, State> states = new HashMap<>();
+        for (Map.Entry<String, Circuit> circuit : circuits.entrySet()) {
+            states.put(circuit.getKey(), circuit.getValue().state());
+        }
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * @return the number of retries rejected because a circuit was open
+     */
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * The circuit of a host.
+     */
+    private final class Circuit {
+        /** The current state. */
+        private State state = State.CLOSED;
+        /** The consecutive failures while closed. */
+        private int failures;
+        /** When the circuit opened or let the last trial retry through. */
+        private long since;
+
+        synchronized boolean allowRetry(long now) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            // Let a trial through once open for long enough, and again if
+            // the last trial did not complete within the open duration
+            if (now - since >= openNanos) {
+                state = State.HALF_OPEN;
+                since = now;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void onSuccess() {
+            state = State.CLOSED;
+            failures = 0;
+        }
+
+        synchronized void onFailure(long now) {
+            if (state == State.HALF_OPEN || (state == State.CLOSED && ++failures >= failureThreshold)) {
+                state = State.OPEN;
+                since = now;
+                failures = 0;
+            }
+        }
+
+        synchronized State state() {
+            return state;
+        }
+    }
+}
@@ -6,12 +6,37 @@
 
 package com.microsoft.rest.retry;
 
+import okhttp3.Request;
 import okhttp3.Response;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * A retry strategy with backoff parameters for calculating the exponential delay between retries.
+ * The delays are randomized so that clients failing together do not retry together.
  */
 public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
+    /**
+     * The ways to randomize the exponential delay between retries.
+     */
+    public enum Jitter {
+        /**
+         * Waits a random time between the minimum backoff and an exponentially
+         * growing ceiling of minBackoff + deltaBackoff * 2^n, capped at the
+         * maximum backoff.
+         */
+        FULL,
+        /**
+         * Waits a random time between the minimum backoff and three times the
+         * previous delay, capped at the maximum backoff. The delta backoff is
+         * not used.
+         */
+        DECORRELATED
+    }
+
     /**
      * Represents the default amount of time used when calculating a random delta in the exponential
      * delay between retries.
@@ -27,6 +52,14 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
      * delay between retries.
      */
     public static final int DEFAULT_MIN_BACKOFF = 1000;
+    /**
+     * The factor by which a decorrelated delay can grow from the previous one.
+     */
+    private static final int DECORRELATED_GROWTH = 3;
+    /**
+     * The largest exponent used in the exponential delay, to keep it from overflowing.
+     */
+    private static final int MAX_BACKOFF_EXPONENT = 30;
 
     /**
      * The value that will be used to calculate a random delta in the exponential delay
@@ -45,6 +78,22 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
      * The maximum number of retry attempts.
      */
     private final int retryCount;
+    /**
+     * The way to randomize the delay between retries.
+     */
+    private final Jitter jitter;
+    /**
+     * The maximum number of retry attempts when the server is throttling.
+     */
+    private int throttledRetryCount;
+    /**
+     * Whether PUT and DELETE requests are retried after transport failures.
+     */
+    private boolean idempotentWriteRetries;
+    /**
+     * The longest delay requested by the server that a retry waits for.
+     */
+    private long maxServerDelay = DEFAULT_MAX_SERVER_DELAY;
 
     /**
      * Initializes a new instance of the {@link ExponentialBackoffRetryStrategy} class.
@@ -80,16 +129,108 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
      */
     public ExponentialBackoffRetryStrategy(String name, int retryCount, int minBackoff, int maxBackoff,
                                               int deltaBackoff, boolean firstFastRetry) {
+        this(name, retryCount, minBackoff, maxBackoff, deltaBackoff, firstFastRetry, Jitter.FULL);
+    }
+
+    /**
+     * Initializes a new instance of the {@link ExponentialBackoffRetryStrategy} class.
+     *
+     * @param name The name of the retry strategy.
+     * @param retryCount The maximum number of retry attempts.
+     * @param minBackoff The minimum backoff time.
+     * @param maxBackoff The maximum backoff time.
+     * @param deltaBackoff The value that will be used to calculate a random delta in the exponential delay
+     *                     between retries.
+     * @param firstFastRetry true to immediately retry in the first attempt; otherwise, false. The subsequent
+     *                       retries will remain subject to the configured retry interval.
+     * @param jitter The way to randomize the delay between retries.
+     */
+    public ExponentialBackoffRetryStrategy(String name, int retryCount, int minBackoff, int maxBackoff,
+                                              int deltaBackoff, boolean firstFastRetry, Jitter jitter) {
         super(name, firstFastRetry);
+        if (jitter == null) {
+            throw new NullPointerException("jitter == null");
+        }
         this.retryCount = retryCount;
+        this.throttledRetryCount = retryCount;
         this.minBackoff = minBackoff;
         this.maxBackoff = maxBackoff;
         this.deltaBackoff = deltaBackoff;
+        this.jitter = jitter;
+    }
+
+    /**
+     * @return the way the delay between retries is randomized
+     */
+    public Jitter jitter() {
+        return jitter;
+    }
+
+    /**
+     * @return the maximum number of retry attempts when the server is throttling
+     */
+    public int throttledRetryCount() {
+        return throttledRetryCount;
+    }
+
+    /**
+     * Sets the maximum number of retry attempts when the server is throttling with
+     * a 429 response. Default is the maximum number of retry attempts of other errors.
+     *
+     * @param throttledRetryCount the maximum number of retry attempts
+     * @return the strategy itself
+     */
+    public ExponentialBackoffRetryStrategy withThrottledRetryCount(int throttledRetryCount) {
+        this.throttledRetryCount = throttledRetryCount;
+        return this;
+    }
+
+    /**
+     * @return true if PUT and DELETE requests are retried after transport failures
+     */
+    public boolean idempotentWriteRetries() {
+        return idempotentWriteRetries;
+    }
+
+    /**
+     * Sets whether PUT and DELETE requests are retried after transport failures.
+     * These are idempotent by definition, but a service may not implement them
+     * so. Default is false; GET, HEAD, OPTIONS and TRACE requests are always retried.
+     *
+     * @param idempotentWriteRetries true to retry PUT and DELETE requests
+     * @return the strategy itself
+     */
+    public ExponentialBackoffRetryStrategy withIdempotentWriteRetries(boolean idempotentWriteRetries) {
+        this.idempotentWriteRetries = idempotentWriteRetries;
+        return this;
+    }
+
+    @Override
+    public long maxServerDelayMillis() {
+        return maxServerDelay;
+    }
+
+    /**
+     * Sets the longest delay requested by the server through the Retry-After
+     * headers that a retry waits for. A response asking for a longer delay is
+     * returned without retrying it or pausing its host. Default is
+     * {@link #DEFAULT_MAX_SERVER_DELAY}.
+     *
+     * @param maxServerDelay the longest delay in milliseconds
+     * @return the strategy itself
+     */
+    public ExponentialBackoffRetryStrategy withMaxServerDelayMillis(long maxServerDelay) {
+        if (maxServerDelay < 0) {
+            throw new IllegalArgumentException("maxServerDelay < 0: " + maxServerDelay);
+        }
+        this.maxServerDelay = maxServerDelay;
+        return this;
     }
 
     /**
      * Returns if a request should be retried based on the retry count, current response,
-     * and the current strategy.
+     * and the current strategy. Throttled requests are retried up to the throttled
+     * retry count.
      *
      * @param retryCount The current retry attempt count.
      * @param response The exception that caused the retry conditions to occur.
@@ -98,8 +239,58 @@ public final class ExponentialBackoffRetryStrategy extends RetryStrategy {
     @Override
     public boolean shouldRetry(int retryCount, Response response) {
         int code = response.code();
-        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 2 LINES
+        //CHECKSTYLE IGNORE MagicNumber FOR NEXT 5 LINES
+        if (code == 429) {
+            return retryCount < this.throttledRetryCount;
+        }
         return retryCount < this.retryCount
                 && (code == 408 || (code >= 500 && code != 501 && code != 505));
     }
+
+    @Override
+    public boolean isRetriable(Request request) {
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "TRACE":
+                return true;
+            case "PUT":
+            case "DELETE":
+                return idempotentWriteRetries;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public boolean shouldRetry(int retryCount, Request request, IOException exception) {
+        // Interruptions other than timeouts come from canceled calls
+        if (exception instanceof InterruptedIOException && !(exception instanceof SocketTimeoutException)) {
+            return false;
+        }
+        return retryCount < this.retryCount && isRetriable(request);
+    }
+
+    @Override
+    public long retryDelayMillis(int retryCount, Response response, long previousDelayMillis) {
+        int backoffCount = retryCount;
+        if (isFastFirstRetry()) {
+            if (retryCount == 0) {
+                return 0;
+            }
+            backoffCount--;
+        }
+        long ceiling;
+        if (jitter == Jitter.DECORRELATED) {
+            ceiling = Math.max(minBackoff, previousDelayMillis * DECORRELATED_GROWTH);
+        } else {
+            ceiling = minBackoff + (long) deltaBackoff * (1L << Math.min(backoffCount, MAX_BACKOFF_EXPONENT));
+        }
+        ceiling = Math.min(ceiling, maxBackoff);
+        if (ceiling <= minBackoff) {
+            return ceiling;
+        }
+        return minBackoff + ThreadLocalRandom.current().nextLong(ceiling - minBackoff + 1);
+    }
 }
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.retry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the hosts that asked the client to hold off, through a throttling
+ * response or a Retry-After header, and until when. The retry pipeline
+ * records a pause when a host asks for one, and every call to that host waits
+ * for the pause to end before it is sent.
+ */
+public final class HostPauses {
+    /** The end of the pause of each paused host, in {@link System#nanoTime()} units. */
+    private final ConcurrentMap<String, Long> deadlines;
+
+    /**
+     * Initializes an instance of {@link HostPauses} class with no paused host.
+     */
+    public HostPauses() {
+        this.deadlines = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Pauses the calls to a host. If the host is already paused for longer,
+     * the current pause is kept.
+     *
+     * @param host the host to pause
+     * @param delayMillis the length of the pause in milliseconds
+     */
+    public void pause(String host, long delayMillis) {
+        if (delayMillis <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        while (true) {
+            Long current = deadlines.get(host);
+            if (current == null) {
+                if (deadlines.putIfAbsent(host, deadline) == null) {
+                    return;
+                }
+            } else if (current - deadline >= 0 || deadlines.replace(host, current, deadline)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the time left before the calls to a host can be sent.
+     *
+     * @param host the host
+     * @return the time left in milliseconds, or 0 if the host is not paused
+     */
+    public long remainingMillis(String host) {
+        Long deadline = deadlines.get(host);
+        if (deadline == null) {
+            return 0;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            deadlines.remove(host, deadline);
+            return 0;
+        }
+        // Round up, so that waiting the returned time always ends the pause
+        return TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+    }
+
+    /**
+     * @return true if no host has been paused since the last pauses ended
+     */
+    public boolean isEmpty() {
+        return deadlines.isEmpty();
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.retry;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the retries of a client at a ratio of its successful requests over a
+ * sliding window, plus a minimum number of retries per window. When most
+ * requests fail, the retries stop adding load to the failing services.
+ */
+public final class RetryBudget {
+    /** The default ratio of retries to successful requests. */
+    public static final double DEFAULT_RATIO = 0.2;
+    /** The default number of retries allowed in a window regardless of the successful requests. */
+    public static final int DEFAULT_MIN_RETRIES = 10;
+    /** The default length of the sliding window in seconds. */
+    public static final int DEFAULT_WINDOW_SECONDS = 10;
+    /** The number of buckets the window is divided in. */
+    private static final int BUCKETS = 10;
+
+    /** The ratio of retries to successful requests. */
+    private final double ratio;
+    /** The number of retries allowed in a window regardless of the successful requests. */
+    private final int minRetries;
+    /** The length of a bucket in nanoseconds. */
+    private final long bucketNanos;
+    /** The successful requests in each bucket. */
+    private final long[] successes;
+    /** The retries in each bucket. */
+    private final long[] retries;
+    /** The source of the time. */
+    private final Ticker ticker;
+    /** The time the budget was created, the origin of the buckets, as read from the ticker. */
+    private final long originNanos;
+    /** The bucket last written to, in bucket lengths since the budget was created. */
+    private long lastTick;
+    /** The number of retries rejected so far. */
+    private final AtomicLong rejected;
+
+    /**
+     * Initializes an instance of {@link RetryBudget} class with the default ratio,
+     * minimum retries and window.
+     */
+    public RetryBudget() {
+        this(DEFAULT_RATIO, DEFAULT_MIN_RETRIES, DEFAULT_WINDOW_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Initializes an instance of {@link RetryBudget} class.
+     *
+     * @param ratio the ratio of retries to successful requests
+     * @param minRetries the number of retries allowed in a window regardless of the successful requests
+     * @param window the length of the sliding window
+     * @param unit the time unit of the window
+     */
+    public RetryBudget(double ratio, int minRetries, long window, TimeUnit unit) {
+        this(ratio, minRetries, window, unit, Ticker.systemTicker());
+    }
+
+    /**
+     * Initializes an instance of {@link RetryBudget} class reading the time from a ticker.
+     *
+     * @param ratio the ratio of retries to successful requests
+     * @param minRetries the number of retries allowed in a window regardless of the successful requests
+     * @param window the length of the sliding window
+     * @param unit the time unit of the window
+     * @param ticker the source of the time, in nanoseconds from an arbitrary origin
+     */
+    public RetryBudget(double ratio, int minRetries, long window, TimeUnit unit, Ticker ticker) {
+        if (ticker == null) {
+            throw new NullPointerException("ticker == null");
+        }
+        if (ratio < 0) {
+            throw new IllegalArgumentException("ratio < 0");
+        }
+        if (minRetries < 0) {
+            throw new IllegalArgumentException("minRetries < 0");
+        }
+        if (unit.toNanos(window) < BUCKETS) {
+            throw new IllegalArgumentException("window is too short");
+        }
+        this.ratio = ratio;
+        this.minRetries = minRetries;
+        this.bucketNanos = unit.toNanos(window) / BUCKETS;
+        this.successes = new long[BUCKETS];
+        this.retries = new long[BUCKETS];
+        this.ticker = ticker;
+        // the origin of the ticker is arbitrary and may be negative, so count the buckets from now
+        this.originNanos = ticker.read();
+        this.lastTick = 0;
+        this.rejected = new AtomicLong();
+    }
+
+    /**
+     * Records a successful request, which adds to the retries allowed.
+     */
+    public synchronized void onSuccess() {
+        successes[advance()]++;
+    }
+
+    /**
+     * Takes a retry from the budget if there is one left.
+     *
+     * @return true if the retry can be sent; false if the budget is exhausted
+     */
+    public synchronized boolean tryAcquire() {
+        int bucket = advance();
+        if (sum(retries) + 1 > allowed()) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        retries[bucket]++;
+        return true;
+    }
+
+    /**
+     * @return the number of retries left in the current window
+     */
+    public synchronized long available() {
+        advance();
+        return Math.max(0, (long) Math.floor(allowed() - sum(retries)));
+    }
+
+    /**
+     * @return the number of retries rejected because the budget was exhausted
+     */
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    private double allowed() {
+        return ratio * sum(successes) + minRetries;
+    }
+
+    /**
+     * Clears the buckets that slid out of the window.
+     *
+     * @return the index of the current bucket
+     */
+    private int advance() {
+        long tick = (ticker.read() - originNanos) / bucketNanos;
+        for (long t = Math.max(lastTick + 1, tick - BUCKETS + 1); t <= tick; t++) {
+            int bucket = (int) (t % BUCKETS);
+            successes[bucket] = 0;
+            retries[bucket] = 0;
+        }
+        if (tick > lastTick) {
+            lastTick = tick;
+        }
+        return (int) (lastTick % BUCKETS);
+    }
+
+    private static long sum(long[] buckets) {
+        long sum = 0;
+        for (long value : buckets) {
+            sum += value;
+        }
+        return sum;
+    }
+}
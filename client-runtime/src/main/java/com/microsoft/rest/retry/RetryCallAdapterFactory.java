@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.retry;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava.HttpException;
+import retrofit2.adapter.rxjava.Result;
+import rx.Completable;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Single;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A call adapter factory that retries the calls of Retrofit services returning
+ * RxJava types. The delay between retries is waited on a {@link Scheduler}
+ * instead of on the thread running the call, and the retry is sent from the
+ * scheduler. The wrapped types are adapted by the next call adapter factory
+ * in the Retrofit instance.
+ *
+ * The retries follow the configuration of a {@link RetryHandler}: they wait at
+ * least the delay requested by the server, calls wait for the pauses of their
+ * hosts before being sent, and the retry budget and circuit breaker of the
+ * handler apply. The pause of a parameterized host is only known once its
+ * requests resolved it.
+ *
+ * The Retrofit instance must use a {@link RetryCallFactory}, so that the retried
+ * calls are not retried again by the {@link RetryHandler} of the HTTP client.
+ */
+public final class RetryCallAdapterFactory extends CallAdapter.Factory {
+    /** The handler whose configuration the retries follow. */
+    private final RetryHandler retryHandler;
+    /** The scheduler to wait for the retries on. */
+    private final Scheduler scheduler;
+
+    /**
+     * Initializes an instance of {@link RetryCallAdapterFactory} class waiting
+     * for the retries on {@link Schedulers#io()}.
+     *
+     * @param retryStrategy the strategy deciding which calls to retry and when
+     */
+    public RetryCallAdapterFactory(RetryStrategy retryStrategy) {
+        this(new RetryHandler(retryStrategy), Schedulers.io());
+    }
+
+    /**
+     * Initializes an instance of {@link RetryCallAdapterFactory} class.
+     *
+     * @param retryHandler the handler whose configuration the retries follow
+     * @param scheduler the scheduler to wait for the retries on
+     */
+    public RetryCallAdapterFactory(RetryHandler retryHandler, Scheduler scheduler) {
+        if (retryHandler == null) {
+            throw new NullPointerException("retryHandler == null");
+        }
+        if (scheduler == null) {
+            throw new NullPointerException("scheduler == null");
+        }
+        this.retryHandler = retryHandler;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return the handler whose configuration the retries follow
+     */
+    public RetryHandler retryHandler() {
+        return retryHandler;
+    }
+
+    @Override
+    public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        Class<?> rawType = getRawType(returnType);
+        if (rawType != Observable.class && rawType != Single.class && rawType != Completable.class) {
+            return null;
+        }
+        return new RetryCallAdapter(retrofit.nextCallAdapter(this, returnType, annotations), rawType);
+    }
+
+    /**
+     * Gets the HTTP response carried by an item emitted by a Retrofit call.
+     *
+     * @param item the emitted item
+     * @return the HTTP response, or null if the item does not carry one
+     */
+    private static Response<?> responseOf(Object item) {
+        if (item instanceof Response) {
+            return (Response<?>) item;
+        }
+        if (item instanceof Result && !((Result<?>) item).isError()) {
+            return ((Result<?>) item).response();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Observable<Object> toObservable(Object adapted) {
+        if (adapted instanceof Single) {
+            return ((Single<Object>) adapted).toObservable();
+        }
+        if (adapted instanceof Completable) {
+            return ((Completable) adapted).toObservable();
+        }
+        return (Observable<Object>) adapted;
+    }
+
+    private static void close(Response<?> response) {
+        try {
+            if (response.errorBody() != null) {
+                response.errorBody().close();
+            }
+            if (response.body() instanceof Closeable) {
+                ((Closeable) response.body()).close();
+            }
+        } catch (IOException e) {
+            // The response is discarded anyway
+        }
+    }
+
+    /**
+     * Adapts the calls with the next call adapter and adds the retries to the result.
+     */
+    private final class RetryCallAdapter implements CallAdapter<Object> {
+        /** The next call adapter for the return type. */
+        private final CallAdapter<?> delegate;
+        /** The RxJava type to return. */
+        private final Class<?> rawType;
+
+        RetryCallAdapter(CallAdapter<?> delegate, Class<?> rawType) {
+            this.delegate = delegate;
+            this.rawType = rawType;
+        }
+
+        @Override
+        public Type responseType() {
+            return delegate.responseType();
+        }
+
+        @Override
+        public <R> Object adapt(final Call<R> call) {
+            Observable<Object> retried = Observable.defer(new Func0<Observable<Object>>() {
+                @Override
+                public Observable<Object> call() {
+                    // One set of attempts per subscription, as each one sends the call anew
+                    return new Attempts(call, delegate).observable();
+                }
+            });
+            if (rawType == Single.class) {
+                return retried.toSingle();
+            }
+            if (rawType == Completable.class) {
+                return retried.toCompletable();
+            }
+            return retried;
+        }
+    }
+
+    /**
+     * The attempts of a call for one subscription.
+     */
+    private final class Attempts {
+        /** The call to send. */
+        private final Call<?> call;
+        /** The next call adapter for the return type. */
+        private final CallAdapter<?> delegate;
+        /** The state of the retries. */
+        private final RetryContext context;
+
+        Attempts(Call<?> call, CallAdapter<?> delegate) {
+            this.call = call;
+            this.delegate = delegate;
+            this.context = new RetryContext();
+        }
+
+        Observable<Object> observable() {
+            Observable<Object> attempts = toObservable(delegate.adapt(new ContextCall<>(call, context)))
+                    .flatMap(new Func1<Object, Observable<Object>>() {
+                        @Override
+                        public Observable<Object> call(Object item) {
+                            return checkItem(item);
+                        }
+                    })
+                    .retryWhen(new Func1<Observable<? extends Throwable>, Observable<?>>() {
+                        @Override
+                        public Observable<?> call(Observable<? extends Throwable> errors) {
+                            return errors.flatMap(new Func1<Throwable, Observable<Long>>() {
+                                @Override
+                                public Observable<Long> call(Throwable error) {
+                                    return retryAfter(error);
+                                }
+                            });
+                        }
+                    });
+            HostPauses pauses = retryHandler.pauses();
+            if (!pauses.isEmpty()) {
+                long pause = pauses.remainingMillis(call.request().url().host());
+                if (pause > 0) {
+                    return attempts.delaySubscription(pause, TimeUnit.MILLISECONDS, scheduler);
+                }
+            }
+            return attempts;
+        }
+
+        /**
+         * Turns an item carrying a response or failure to retry into a retry signal.
+         */
+        private Observable<Object> checkItem(Object item) {
+            Response<?> response = responseOf(item);
+            if (response != null && shouldRetry(response)) {
+                close(response);
+                return Observable.error(new RetrySignal(response.raw()));
+            }
+            if (item instanceof Result && ((Result<?>) item).error() instanceof IOException
+                    && shouldRetry((IOException) ((Result<?>) item).error())) {
+                return Observable.error(new RetrySignal(null));
+            }
+            return Observable.just(item);
+        }
+
+        /**
+         * Schedules a retry after an error, or forwards the error if it is not to retry.
+         */
+        private Observable<Long> retryAfter(Throwable error) {
+            okhttp3.Response response;
+            if (error instanceof RetrySignal) {
+                response = ((RetrySignal) error).response;
+            } else if (error instanceof HttpException && shouldRetry(((HttpException) error).response())) {
+                close(((HttpException) error).response());
+                response = ((HttpException) error).response().raw();
+            } else if (error instanceof IOException && shouldRetry((IOException) error)) {
+                response = null;
+            } else {
+                return Observable.error(error);
+            }
+            HostPauses pauses = retryHandler.pauses();
+            long delay = RetryHandler.retryDelayMillis(retryHandler.strategy(), pauses,
+                    context.retryCount(), response, context.lastDelayMillis());
+            context.onRetry(delay);
+            Request request = response != null ? response.request() : call.request();
+            retryHandler.onRetry(request);
+            String host = request.url().host();
+            return Observable.timer(Math.max(delay, pauses.remainingMillis(host)), TimeUnit.MILLISECONDS, scheduler);
+        }
+
+        private boolean shouldRetry(Response<?> response) {
+            okhttp3.Response raw = response.raw();
+            context.withRequestId(raw.request().header("x-ms-client-request-id"));
+            retryHandler.onResponse(raw);
+            return retryHandler.strategy().shouldRetry(context.retryCount(), raw)
+                    && !RetryHandler.exceedsMaxServerDelay(retryHandler.strategy(), raw)
+                    && retryHandler.admitRetry(raw.request().url().host());
+        }
+
+        private boolean shouldRetry(IOException failure) {
+            Request request = call.request();
+            retryHandler.onFailure(request.url().host(), failure);
+            return retryHandler.strategy().shouldRetry(context.retryCount(), request, failure)
+                    && retryHandler.admitRetry(request.url().host());
+        }
+    }
+
+    /**
+     * A Retrofit call binding a retry context to the thread creating its HTTP calls.
+     *
+     * @param <T> the type of the response body
+     */
+    private static final class ContextCall<T> implements Call<T> {
+        /** The call to bind the context for. */
+        private final Call<T> call;
+        /** The context to bind. */
+        private final RetryContext context;
+
+        ContextCall(Call<T> call, RetryContext context) {
+            this.call = call;
+            this.context = context;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            RetryContext previous = context.bind();
+            try {
+                return call.execute();
+            } finally {
+                RetryContext.restore(previous);
+            }
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            RetryContext previous = context.bind();
+            try {
+                call.enqueue(callback);
+            } finally {
+                RetryContext.restore(previous);
+            }
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return call.isExecuted();
+        }
+
+        @Override
+        public void cancel() {
+            call.cancel();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return call.isCanceled();
+        }
+
+        @Override
+        public Call<T> clone() {
+            return new ContextCall<>(call.clone(), context);
+        }
+
+        @Override
+        public Request request() {
+            RetryContext previous = context.bind();
+            try {
+                return call.request();
+            } finally {
+                RetryContext.restore(previous);
+            }
+        }
+    }
+
+    /**
+     * Signals a response or failure to retry through the error channel of the call.
+     */
+    private static final class RetrySignal extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /** The response to retry, or null if the call failed without a response. */
+        private final transient okhttp3.Response response;
+
+        RetrySignal(okhttp3.Response response) {
+            super("Retry", null, false, false);
+            this.response = response;
+        }
+    }
+}
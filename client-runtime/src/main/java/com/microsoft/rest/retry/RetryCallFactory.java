@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.retry;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+import java.util.Iterator;
+
+/**
+ * The call factory of a Retrofit instance whose calls may have their retries
+ * scheduled by {@link RetryCallAdapterFactory}. Such calls are sent through a
+ * copy of the HTTP client without the {@link RetryHandler}, sharing its
+ * connection pool and dispatcher, and all their attempts carry the request ID
+ * of the first one. Other calls are sent through the HTTP client as is.
+ */
+public final class RetryCallFactory implements Call.Factory {
+    /** The header carrying the request ID. */
+    private static final String REQUEST_ID_HEADER = "x-ms-client-request-id";
+
+    /** The HTTP client to send the calls through. */
+    private final OkHttpClient httpClient;
+    /** The HTTP client without retry handlers. */
+    private final OkHttpClient httpClientWithoutRetries;
+
+    /**
+     * Initializes an instance of {@link RetryCallFactory} class.
+     *
+     * @param httpClient the HTTP client to send the calls through
+     */
+    public RetryCallFactory(OkHttpClient httpClient) {
+        if (httpClient == null) {
+            throw new NullPointerException("httpClient == null");
+        }
+        this.httpClient = httpClient;
+        OkHttpClient.Builder builder = httpClient.newBuilder();
+        Iterator<Interceptor> interceptors = builder.interceptors().iterator();
+        while (interceptors.hasNext()) {
+            if (interceptors.next() instanceof RetryHandler) {
+                interceptors.remove();
+            }
+        }
+        this.httpClientWithoutRetries = builder.build();
+    }
+
+    /**
+     * @return the HTTP client the calls are sent through
+     */
+    public OkHttpClient httpClient() {
+        return httpClient;
+    }
+
+    @Override
+    public Call newCall(Request request) {
+        RetryContext context = RetryContext.current();
+        if (context == null) {
+            return httpClient.newCall(request);
+        }
+        Request attempt = request;
+        if (context.requestId() != null && request.header(REQUEST_ID_HEADER) == null) {
+            attempt = request.newBuilder().header(REQUEST_ID_HEADER, context.requestId()).build();
+        }
+        return httpClientWithoutRetries.newCall(attempt);
+    }
+}
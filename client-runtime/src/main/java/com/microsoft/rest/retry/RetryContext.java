@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest.retry;
+
+/**
+ * The state of a call whose retries are scheduled by {@link RetryCallAdapterFactory}.
+ * While an attempt of the call creates its HTTP call, the context is bound to the
+ * current thread so that {@link RetryCallFactory} can route the attempt around
+ * the {@link RetryHandler}.
+ */
+final class RetryContext {
+    /** The context of the attempt being created on the current thread. */
+    private static final ThreadLocal<RetryContext> CURRENT = new ThreadLocal<>();
+
+    /** The number of retries scheduled so far. */
+    private volatile int retryCount;
+    /** The delay before the last retry in milliseconds. */
+    private volatile long lastDelayMillis;
+    /** The request ID of the first attempt, reused by the retries. */
+    private volatile String requestId;
+
+    /**
+     * @return the context bound to the current thread, or null if there is none
+     */
+    static RetryContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds this context to the current thread.
+     *
+     * @return the context bound before, to restore with {@link #restore(RetryContext)}
+     */
+    RetryContext bind() {
+        RetryContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * Restores the context bound to the current thread before {@link #bind()}.
+     *
+     * @param previous the context returned by {@link #bind()}
+     */
+    static void restore(RetryContext previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    int retryCount() {
+        return retryCount;
+    }
+
+    long lastDelayMillis() {
+        return lastDelayMillis;
+    }
+
+    String requestId() {
+        return requestId;
+    }
+
+    void onRetry(long delayMillis) {
+        this.lastDelayMillis = delayMillis;
+        this.retryCount++;
+    }
+
+    void withRequestId(String requestId) {
+        if (this.requestId == null) {
+            this.requestId = requestId;
+        }
+    }
+}
@@ -6,14 +6,53 @@
 
 package com.microsoft.rest.retry;
 
+import com.microsoft.rest.metrics.MetricsInterceptor;
+import com.microsoft.rest.metrics.MetricsRecorder;
+import com.microsoft.rest.metrics.RuntimeEvents;
+import okhttp3.ConnectionPool;
+import okhttp3.FormBody;
 import okhttp3.Interceptor;
+import okhttp3.MultipartBody;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.Buffer;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.PortUnreachableException;
+import java.net.SocketException;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
 
 /**
  * An instance of this interceptor placed in the request pipeline handles retriable errors.
+ *
+ * Interceptors run synchronously, so the handler waits for the delay computed by
+ * the retry strategy on the thread running the call. Calls of the Retrofit
+ * services of a {@link com.microsoft.rest.RestClient} returning RxJava types
+ * bypass this handler; their retries are scheduled by
+ * {@link RetryCallAdapterFactory} without holding a thread while waiting.
+ *
+ * A retry waits at least the delay requested by the server through the
+ * Retry-After headers. Such delays, and throttling responses, pause all the
+ * calls to the host through the {@link HostPauses} of the handler. A response
+ * asking for a longer delay than {@link RetryStrategy#maxServerDelayMillis()}
+ * is returned as is, without pausing the host.
+ *
+ * Optionally, a {@link RetryBudget} caps the retries at a ratio of the
+ * successful requests, and a {@link CircuitBreaker} stops the retries to hosts
+ * failing repeatedly. A retry rejected by either of them returns the response
+ * of the last attempt.
+ *
+ * Requests failing without a response, after a connection reset for instance,
+ * are retried if the strategy deems them retriable, which is usually the case
+ * of idempotent requests. Their bodies are buffered beforehand so that they can
+ * be sent again.
  */
 public final class RetryHandler implements Interceptor {
     /**
@@ -33,11 +72,47 @@ public final class RetryHandler implements Interceptor {
      * Represents the default minimum backoff time.
      */
     private static final int DEFAULT_MIN_BACKOFF = 1000;
+    /**
+     * The status code of throttling responses.
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+    /**
+     * The status code of request timeout responses.
+     */
+    private static final int REQUEST_TIMEOUT = 408;
+    /**
+     * The lowest status code of server errors.
+     */
+    private static final int SERVER_ERROR = 500;
+    /**
+     * The largest request body buffered to be replayed after transport failures.
+     */
+    private static final long MAX_BUFFERED_BODY = 4 * 1024 * 1024;
 
     /**
      * The retry strategy to use.
      */
     private RetryStrategy retryStrategy;
+    /**
+     * The pauses requested by the hosts.
+     */
+    private final HostPauses pauses;
+    /**
+     * The budget of the retries, or null if the retries are not capped.
+     */
+    private volatile RetryBudget retryBudget;
+    /**
+     * The circuit breaker of the hosts, or null if the retries are never stopped.
+     */
+    private volatile CircuitBreaker circuitBreaker;
+    /**
+     * The connection pool to evict the idle connections of after connection failures.
+     */
+    private volatile ConnectionPool connectionPool;
+    /**
+     * The recorder of the retries, or null if the retries are not recorded.
+     */
+    private volatile MetricsRecorder metrics;
 
     /**
      * @return the strategy used by this handler
@@ -46,16 +121,96 @@ public final class RetryHandler implements Interceptor {
         return retryStrategy;
     }
 
+    /**
+     * @return the pauses requested by the hosts
+     */
+    public HostPauses pauses() {
+        return pauses;
+    }
+
+    /**
+     * @return the budget of the retries, or null if the retries are not capped
+     */
+    public RetryBudget retryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Sets the budget capping the retries.
+     *
+     * @param retryBudget the budget of the retries, or null to not cap the retries.
+     * @return the handler itself.
+     */
+    public RetryHandler withRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+        return this;
+    }
+
+    /**
+     * @return the circuit breaker of the hosts, or null if the retries are never stopped
+     */
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the circuit breaker stopping the retries to failing hosts.
+     *
+     * @param circuitBreaker the circuit breaker, or null to never stop the retries.
+     * @return the handler itself.
+     */
+    public RetryHandler withCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    /**
+     * @return the connection pool whose idle connections are evicted after connection failures
+     */
+    public ConnectionPool connectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Sets the connection pool of the HTTP client, whose idle connections are
+     * evicted after connection failures.
+     *
+     * @param connectionPool the connection pool, or null to not evict connections.
+     * @return the handler itself.
+     */
+    public RetryHandler withConnectionPool(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+        return this;
+    }
+
+    /**
+     * @return the recorder of the retries, or null if the retries are not recorded
+     */
+    public MetricsRecorder metrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the recorder of the retries.
+     *
+     * @param metrics the recorder of the retries, or null to not record the retries.
+     * @return the handler itself.
+     */
+    public RetryHandler withMetrics(MetricsRecorder metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
     /**
      * Initialized an instance of {@link RetryHandler} class.
      * Sets default retry strategy base on Exponential Backoff.
      */
     public RetryHandler() {
-        this.retryStrategy = new ExponentialBackoffRetryStrategy(
+        this(new ExponentialBackoffRetryStrategy(
                 DEFAULT_NUMBER_OF_ATTEMPTS,
                 DEFAULT_MIN_BACKOFF,
                 DEFAULT_MAX_BACKOFF,
-                DEFAULT_BACKOFF_DELTA);
+                DEFAULT_BACKOFF_DELTA));
     }
 
     /**
@@ -64,27 +219,218 @@ public final class RetryHandler implements Interceptor {
      * @param retryStrategy retry strategy to use.
      */
     public RetryHandler(RetryStrategy retryStrategy) {
+        this(retryStrategy, new HostPauses());
+    }
+
+    /**
+     * Initialized an instance of {@link RetryHandler} class.
+     *
+     * @param retryStrategy retry strategy to use.
+     * @param pauses the pauses requested by the hosts, shared with other handlers.
+     */
+    public RetryHandler(RetryStrategy retryStrategy, HostPauses pauses) {
+        if (pauses == null) {
+            throw new NullPointerException("pauses == null");
+        }
         this.retryStrategy = retryStrategy;
+        this.pauses = pauses;
     }
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        Request request = chain.request();
-
-        // try the request
-        Response response = chain.proceed(request);
+        Request request = replayable(chain.request());
+        String host = request.url().host();
 
+        // try the request once the host allows it
+        sleep(pauses.remainingMillis(host));
         int tryCount = 0;
-        while (retryStrategy.shouldRetry(tryCount, response)) {
+        long delay = 0;
+        while (true) {
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                onFailure(host, e);
+                if (!retryStrategy.shouldRetry(tryCount, request, e) || !admitRetry(host)) {
+                    throw e;
+                }
+                delay = retryDelayMillis(retryStrategy, pauses, tryCount, null, delay);
+                tryCount++;
+                onRetry(request);
+                sleep(Math.max(delay, pauses.remainingMillis(host)));
+                continue;
+            }
+            onResponse(response);
+            if (!retryStrategy.shouldRetry(tryCount, response) || exceedsMaxServerDelay(retryStrategy, response)
+                    || !admitRetry(host)) {
+                // otherwise just pass the response on
+                return response;
+            }
+            delay = retryDelayMillis(retryStrategy, pauses, tryCount, response, delay);
             tryCount++;
+            onRetry(request);
             if (response.body() != null) {
                 response.body().close();
             }
-            // retry the request
-            response = chain.proceed(request);
+            sleep(Math.max(delay, pauses.remainingMillis(host)));
+        }
+    }
+
+    /**
+     * Buffers the body of a request that may be sent again after a transport
+     * failure, so that it can be written more than once.
+     *
+     * @param request the request
+     * @return the request with a replayable body
+     * @throws IOException thrown when the body fails to be read
+     */
+    private Request replayable(Request request) throws IOException {
+        RequestBody body = request.body();
+        if (body == null || body instanceof FormBody || body instanceof MultipartBody
+                || !retryStrategy.isRetriable(request)) {
+            return request;
+        }
+        long length = body.contentLength();
+        if (length < 0 || length > MAX_BUFFERED_BODY) {
+            return request;
+        }
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return request.newBuilder()
+                .method(request.method(), RequestBody.create(body.contentType(), buffer.readByteString()))
+                .build();
+    }
+
+    /**
+     * Records a transport failure in the circuit breaker. After a failure of
+     * an established connection, such as a reset, a broken pipe or an early
+     * end of stream, the idle connections of the pool are evicted, since they
+     * have likely gone stale together. Failures to open a new connection say
+     * nothing of the pooled ones, and leave them alone.
+     *
+     * @param host the host of the failed request
+     * @param failure the transport failure
+     */
+    void onFailure(String host, IOException failure) {
+        CircuitBreaker breaker = this.circuitBreaker;
+        if (breaker != null) {
+            breaker.onFailure(host);
+        }
+        ConnectionPool pool = this.connectionPool;
+        if (pool != null && isStaleConnection(failure)) {
+            pool.evictAll();
+        }
+    }
+
+    private static boolean isStaleConnection(IOException failure) {
+        if (failure instanceof ConnectException || failure instanceof NoRouteToHostException
+                || failure instanceof BindException || failure instanceof PortUnreachableException
+                || failure instanceof SSLHandshakeException) {
+            return false;
+        }
+        return failure instanceof SocketException || failure instanceof SSLException
+                || failure instanceof EOFException || failure.getCause() instanceof EOFException;
+    }
+
+    /**
+     * Records the outcome of an attempt in the retry budget and the circuit breaker.
+     * Server errors, timeouts and throttling are failures.
+     *
+     * @param response the response of the attempt
+     */
+    void onResponse(Response response) {
+        int code = response.code();
+        boolean failed = code >= SERVER_ERROR || code == REQUEST_TIMEOUT || code == TOO_MANY_REQUESTS;
+        RetryBudget budget = this.retryBudget;
+        if (budget != null && !failed) {
+            budget.onSuccess();
+        }
+        CircuitBreaker breaker = this.circuitBreaker;
+        if (breaker != null) {
+            String host = response.request().url().host();
+            if (failed) {
+                breaker.onFailure(host);
+            } else {
+                breaker.onSuccess(host);
+            }
+        }
+    }
+
+    /**
+     * Records a retry in the metrics and emits it as a runtime event.
+     *
+     * @param request the request to retry
+     */
+    void onRetry(Request request) {
+        MetricsRecorder recorder = this.metrics;
+        if (recorder != null) {
+            recorder.recordRetry(request.url().host(), MetricsInterceptor.operationOf(request));
+        }
+        RuntimeEvents.retry(request.method(), request.url().host(), MetricsInterceptor.operationOf(request));
+    }
+
+    /**
+     * Checks with the circuit breaker and the retry budget whether a retry can be sent.
+     *
+     * @param host the host to send the retry to
+     * @return true if the retry can be sent
+     */
+    boolean admitRetry(String host) {
+        CircuitBreaker breaker = this.circuitBreaker;
+        if (breaker != null && !breaker.allowRetry(host)) {
+            return false;
         }
+        RetryBudget budget = this.retryBudget;
+        return budget == null || budget.tryAcquire();
+    }
+
+    /**
+     * Checks whether the server asked for a longer delay before a retry than the
+     * strategy waits for.
+     *
+     * @param retryStrategy the retry strategy
+     * @param response the response to retry
+     * @return true if the response is not to be retried because of the delay
+     */
+    static boolean exceedsMaxServerDelay(RetryStrategy retryStrategy, Response response) {
+        return RetryStrategy.retryAfterMillis(response) > retryStrategy.maxServerDelayMillis();
+    }
 
-        // otherwise just pass the original response on
-        return response;
+    /**
+     * Computes the delay before a retry, which is at least the one requested by
+     * the server. Pauses the host of the response if the server is throttling
+     * or requested a delay.
+     *
+     * @param retryStrategy the retry strategy
+     * @param pauses the pauses requested by the hosts
+     * @param retryCount the current retry attempt count
+     * @param response the response to retry, or null if the request failed without a response
+     * @param previousDelayMillis the delay before the previous retry in milliseconds, or 0
+     * @return the delay before the retry in milliseconds
+     */
+    static long retryDelayMillis(RetryStrategy retryStrategy, HostPauses pauses,
+                                 int retryCount, Response response, long previousDelayMillis) {
+        long delay = retryStrategy.retryDelayMillis(retryCount, response, previousDelayMillis);
+        if (response == null) {
+            return delay;
+        }
+        long serverDelay = RetryStrategy.retryAfterMillis(response);
+        if (serverDelay >= 0 || response.code() == TOO_MANY_REQUESTS) {
+            delay = Math.max(delay, serverDelay);
+            pauses.pause(response.request().url().host(), delay);
+        }
+        return delay;
+    }
+
+    private static void sleep(long delayMillis) throws InterruptedIOException {
+        if (delayMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry the request");
+        }
     }
 }
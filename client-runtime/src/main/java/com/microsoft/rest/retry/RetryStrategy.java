@@ -6,8 +6,13 @@
 
 package com.microsoft.rest.retry;
 
+import okhttp3.Request;
 import okhttp3.Response;
 
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Represents a retry strategy that determines the number of retry attempts and the interval
  * between retries.
@@ -27,6 +32,10 @@ public abstract class RetryStrategy {
      * whereas subsequent retries will remain subject to the retry interval.
      */
     public static final boolean DEFAULT_FIRST_FAST_RETRY = true;
+    /**
+     * Represents the default longest delay requested by the server that a retry waits for, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_SERVER_DELAY = 1000 * 60;
 
     /**
      * The name of the retry strategy.
@@ -60,6 +69,98 @@ public abstract class RetryStrategy {
      */
     public abstract boolean shouldRetry(int retryCount, Response response);
 
+    /**
+     * Returns if a request can be sent again after failing without a response,
+     * usually because it is idempotent. The default implementation returns false.
+     *
+     * @param request The request.
+     * @return true if the request can be sent again; false otherwise.
+     */
+    public boolean isRetriable(Request request) {
+        return false;
+    }
+
+    /**
+     * Returns if a request failing without a response should be retried based on
+     * the retry count, the failure, and the current strategy. The default
+     * implementation never retries.
+     *
+     * @param retryCount The current retry attempt count.
+     * @param request The request that failed.
+     * @param exception The transport failure, such as a connection reset.
+     * @return true if the request should be retried; false otherwise.
+     */
+    public boolean shouldRetry(int retryCount, Request request, IOException exception) {
+        return false;
+    }
+
+    /**
+     * Returns the time to wait before retrying a request. The first retry is
+     * immediate if fast first retry is enabled; every other retry waits
+     * {@link #DEFAULT_RETRY_INTERVAL} milliseconds.
+     *
+     * @param retryCount The current retry attempt count.
+     * @param response The response that caused the retry, or null if the request failed without a response.
+     * @param previousDelayMillis The delay before the previous retry in milliseconds, or 0 for the first retry.
+     * @return the delay before the retry in milliseconds.
+     */
+    public long retryDelayMillis(int retryCount, Response response, long previousDelayMillis) {
+        if (retryCount == 0 && isFastFirstRetry()) {
+            return 0;
+        }
+        return DEFAULT_RETRY_INTERVAL;
+    }
+
+    /**
+     * Gets the longest delay requested by the server through the Retry-After
+     * headers that a retry waits for. A response asking for a longer delay is
+     * returned to the caller without retrying it or pausing its host. The
+     * default implementation returns {@link #DEFAULT_MAX_SERVER_DELAY}.
+     *
+     * @return the longest delay in milliseconds.
+     */
+    public long maxServerDelayMillis() {
+        return DEFAULT_MAX_SERVER_DELAY;
+    }
+
+    /**
+     * Gets the delay before a retry requested by the server in a response, through
+     * the 'x-ms-retry-after-ms', 'retry-after-ms' or 'Retry-After' headers.
+     *
+     * @param response the response to read the headers from.
+     * @return the delay in milliseconds, or -1 if the server did not request one.
+     */
+    public static long retryAfterMillis(Response response) {
+        long delay = parseDelay(response.header("x-ms-retry-after-ms"));
+        if (delay < 0) {
+            delay = parseDelay(response.header("retry-after-ms"));
+        }
+        if (delay < 0) {
+            String retryAfter = response.header("Retry-After");
+            delay = parseDelay(retryAfter);
+            if (delay >= 0) {
+                delay = TimeUnit.SECONDS.toMillis(delay);
+            } else if (retryAfter != null) {
+                Date date = response.headers().getDate("Retry-After");
+                if (date != null) {
+                    delay = Math.max(0, date.getTime() - System.currentTimeMillis());
+                }
+            }
+        }
+        return delay;
+    }
+
+    private static long parseDelay(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     /**
      * Gets the name of the retry strategy.
      *
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.BaseUrlHandler;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BaseUrlHandlerTests {
+    private static OkHttpClient clientCapturing(final List<Request> requests) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(new BaseUrlHandler())
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        requests.add(chain.request());
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+    }
+
+    @Test
+    public void replacesHostParameters() throws Exception {
+        List<Request> requests = new ArrayList<>();
+        OkHttpClient client = clientCapturing(requests);
+        for (String account : new String[] { "first", "second", "first" }) {
+            client.newCall(new Request.Builder()
+                    .url("https://{accountName}.{suffix}/containers/c1?comp=list")
+                    .header("x-ms-parameterized-host", "{accountName}, " + account + ", {suffix}, blob.core.windows.net")
+                    .build()).execute();
+        }
+        Assert.assertEquals("https://first.blob.core.windows.net/containers/c1?comp=list", requests.get(0).url().toString());
+        Assert.assertEquals("https://second.blob.core.windows.net/containers/c1?comp=list", requests.get(1).url().toString());
+        Assert.assertEquals("https://first.blob.core.windows.net/containers/c1?comp=list", requests.get(2).url().toString());
+        Assert.assertNull(requests.get(0).header("x-ms-parameterized-host"));
+    }
+
+    @Test
+    public void removesRedundantProtocol() throws Exception {
+        List<Request> requests = new ArrayList<>();
+        OkHttpClient client = clientCapturing(requests);
+        client.newCall(new Request.Builder()
+                .url("https://{vaultBaseUrl}/secrets/s1")
+                .header("x-ms-parameterized-host", "{vaultBaseUrl}, http://myvault.vault.azure.net:8443")
+                .build()).execute();
+        Assert.assertEquals("http://myvault.vault.azure.net:8443/secrets/s1", requests.get(0).url().toString());
+    }
+
+    @Test
+    public void replacementWithPath() throws Exception {
+        List<Request> requests = new ArrayList<>();
+        OkHttpClient client = clientCapturing(requests);
+        client.newCall(new Request.Builder()
+                .url("https://{Endpoint}/face/v1.0/detect")
+                .header("x-ms-parameterized-host", "{Endpoint}, https://westus.contoso.com/prefix")
+                .build()).execute();
+        Assert.assertEquals("https://westus.contoso.com/prefix/face/v1.0/detect", requests.get(0).url().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingReplacementValue() throws Exception {
+        clientCapturing(new ArrayList<Request>()).newCall(new Request.Builder()
+                .url("https://{accountName}.blob.core.windows.net")
+                .header("x-ms-parameterized-host", "{accountName}")
+                .build()).execute();
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.CustomHeadersInterceptor;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CustomHeadersInterceptorTests {
+    private static OkHttpClient clientCapturing(CustomHeadersInterceptor interceptor, final List<Request> requests) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(interceptor)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        requests.add(chain.request());
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+    }
+
+    @Test
+    public void customHeadersReplaceRequestHeaders() throws Exception {
+        CustomHeadersInterceptor interceptor = new CustomHeadersInterceptor("x-ms-foo", "bar")
+                .addHeader("Accept-Language", "en-US")
+                .addHeader("accept-language", "fr-FR");
+        List<Request> requests = new ArrayList<>();
+        clientCapturing(interceptor, requests).newCall(new Request.Builder()
+                .url("http://localhost")
+                .header("X-MS-FOO", "original")
+                .header("x-ms-other", "kept")
+                .build()).execute();
+        Request request = requests.get(0);
+        Assert.assertEquals(1, request.headers("x-ms-foo").size());
+        Assert.assertEquals("bar", request.header("x-ms-foo"));
+        Assert.assertEquals("kept", request.header("x-ms-other"));
+        Assert.assertEquals(1, request.headers("accept-language").size());
+        Assert.assertEquals("fr-FR", request.header("accept-language"));
+    }
+
+    @Test
+    public void modificationsApplyToSubsequentRequests() throws Exception {
+        CustomHeadersInterceptor interceptor = new CustomHeadersInterceptor();
+        List<Request> requests = new ArrayList<>();
+        OkHttpClient client = clientCapturing(interceptor, requests);
+        Request request = new Request.Builder().url("http://localhost").build();
+        client.newCall(request).execute();
+        interceptor.replaceHeader("x-ms-foo", "bar");
+        client.newCall(request).execute();
+        interceptor.removeHeader("x-ms-foo");
+        client.newCall(request).execute();
+        Assert.assertNull(requests.get(0).header("x-ms-foo"));
+        Assert.assertEquals("bar", requests.get(1).header("x-ms-foo"));
+        Assert.assertNull(requests.get(2).header("x-ms-foo"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void headersAreReadOnly() {
+        new CustomHeadersInterceptor("x-ms-foo", "bar").headers().get("x-ms-foo").add("baz");
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.interceptors.AsyncLogWriter;
+import com.microsoft.rest.interceptors.LogSampler;
+import com.microsoft.rest.interceptors.LoggingInterceptor;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LoggingInterceptorTests {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    @Test
+    public void logsLineByLine() throws Exception {
+        final List<String> lines = new ArrayList<>();
+        LoggingInterceptor interceptor = new LoggingInterceptor(LogLevel.BODY_AND_HEADERS) {
+            @Override
+            protected void log(Logger logger, String s) {
+                lines.add(s);
+            }
+        };
+        OkHttpClient client = clientResponding(interceptor, 200);
+        Response response = client.newCall(new Request.Builder()
+                .url("http://localhost/items")
+                .header("x-ms-version", "2017-01-01")
+                .post(RequestBody.create(JSON, "{\"name\":\"item\"}"))
+                .build()).execute();
+        Assert.assertEquals("{\"id\":200}", response.body().string());
+
+        Assert.assertEquals("--> POST http://localhost/items", lines.get(0));
+        Assert.assertTrue(lines.contains("x-ms-version: 2017-01-01"));
+        Assert.assertTrue(lines.contains("15-byte body:\n{\"name\":\"item\"}"));
+        Assert.assertTrue(lines.contains("--> END POST"));
+        Assert.assertTrue(lines.get(lines.size() - 3).startsWith("<-- 200 OK http://localhost/items ("));
+        Assert.assertEquals("<-- END HTTP", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void logsBodiesUpToLimit() throws Exception {
+        final List<String> lines = new ArrayList<>();
+        LoggingInterceptor interceptor = new LoggingInterceptor(LogLevel.BODY) {
+            @Override
+            protected void log(Logger logger, String s) {
+                lines.add(s);
+            }
+        }.withMaxBodyBytes(10);
+        final String body = new String(new char[100]).replace('\0', 'a');
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(interceptor)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .message("OK")
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), body))
+                                .build();
+                    }
+                })
+                .build();
+        Response response = client.newCall(new Request.Builder()
+                .url("http://localhost")
+                .put(RequestBody.create(MediaType.parse("text/plain"), body))
+                .build()).execute();
+        Assert.assertTrue(lines.contains("100-byte body, truncated to 10 bytes:\naaaaaaaaaa"));
+        Assert.assertNotEquals("<-- END HTTP", lines.get(lines.size() - 1));
+
+        // The response body is logged as it is read, and reaches the caller whole
+        Assert.assertEquals(body, response.body().string());
+        Assert.assertEquals("100-byte body, truncated to 10 bytes:\naaaaaaaaaa", lines.get(lines.size() - 2));
+        Assert.assertEquals("<-- END HTTP", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void structuredLoggingSamplesExchanges() throws Exception {
+        AsyncLogWriter writer = new AsyncLogWriter(16);
+        try {
+            LoggingInterceptor interceptor = new LoggingInterceptor(LogLevel.BODY_AND_HEADERS)
+                    .withWriter(writer)
+                    .withSampler(new LogSampler(0, 1));
+            OkHttpClient client = clientResponding(interceptor, 200, 200, 500, 200, 503);
+            for (int i = 0; i < 5; i++) {
+                Response response = client.newCall(new Request.Builder()
+                        .url("http://localhost/items")
+                        .post(RequestBody.create(JSON, "{\"name\":\"item\"}"))
+                        .build()).execute();
+                // The capture leaves the body to the caller
+                Assert.assertEquals("{\"id\":" + response.code() + "}", response.body().string());
+            }
+            writer.flush();
+            Assert.assertEquals(2, writer.writtenCount());
+            Assert.assertEquals(0, writer.droppedCount());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void structuredLoggingDropsAfterClose() throws Exception {
+        AsyncLogWriter writer = new AsyncLogWriter(3);
+        Assert.assertEquals(4, writer.capacity());
+        OkHttpClient client = clientResponding(new LoggingInterceptor(LogLevel.BASIC).withWriter(writer), 200, 200);
+        client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        writer.close();
+        client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals(1, writer.writtenCount());
+        Assert.assertEquals(1, writer.droppedCount());
+    }
+
+    @Test
+    public void structuredLoggingCountsExchangesOfferedWhileClosing() throws Exception {
+        final AsyncLogWriter writer = new AsyncLogWriter(1024);
+        final int calls = 200;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int[] codes = new int[calls];
+            Arrays.fill(codes, 200);
+            final OkHttpClient client = clientResponding(new LoggingInterceptor(LogLevel.BASIC).withWriter(writer), codes);
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < calls; i++) {
+                            client.newCall(new Request.Builder().url("http://localhost").build()).execute().close();
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(5);
+        writer.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // An exchange is either written or dropped, even when offered as the writer closes
+        Assert.assertEquals(4 * calls, writer.writtenCount() + writer.droppedCount());
+    }
+
+    private static OkHttpClient clientResponding(LoggingInterceptor interceptor, final int... codes) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(interceptor)
+                .addInterceptor(new Interceptor() {
+                    private int count = 0;
+
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        int code = codes[count++];
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(code)
+                                .message(code < 400 ? "OK" : "Error")
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(JSON, "{\"id\":" + code + "}"))
+                                .build();
+                    }
+                })
+                .build();
+    }
+}
@@ -0,0 +1,381 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.metrics.CallTimeline;
+import com.microsoft.rest.metrics.CallTimelineInterceptor;
+import com.microsoft.rest.metrics.ConnectionStats;
+import com.microsoft.rest.metrics.ConnectionTracker;
+import com.microsoft.rest.metrics.CredentialsTimingInterceptor;
+import com.microsoft.rest.metrics.Histogram;
+import com.microsoft.rest.metrics.HistogramSnapshot;
+import com.microsoft.rest.metrics.InMemoryMetrics;
+import com.microsoft.rest.metrics.MetricsInterceptor;
+import com.microsoft.rest.metrics.MetricsSnapshot;
+import com.microsoft.rest.metrics.NetworkTimingInterceptor;
+import com.microsoft.rest.metrics.OperationSnapshot;
+import com.microsoft.rest.metrics.RuntimeEventListener;
+import com.microsoft.rest.metrics.RuntimeEvents;
+import com.microsoft.rest.retry.ExponentialBackoffRetryStrategy;
+import com.microsoft.rest.retry.RetryHandler;
+import com.microsoft.rest.serializer.JacksonAdapter;
+import okhttp3.Connection;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.Route;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsTests {
+    @Test
+    public void histogramPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(10000, snapshot.count());
+        Assert.assertEquals(1, snapshot.min());
+        Assert.assertEquals(10000, snapshot.max());
+        Assert.assertEquals(5000.5, snapshot.mean(), 0.001);
+        Assert.assertEquals(100, snapshot.valueAtPercentile(1));
+        Assert.assertEquals(5000, snapshot.valueAtPercentile(50), 5000 / 64);
+        Assert.assertEquals(9900, snapshot.valueAtPercentile(99), 9900 / 64);
+        Assert.assertEquals(10000, snapshot.valueAtPercentile(100));
+        Assert.assertEquals(0, new Histogram().snapshot().valueAtPercentile(50));
+    }
+
+    @Test
+    public void recordsAttemptsRetriesAndTokens() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new CredentialsTimingInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        try {
+                            Thread.sleep(5);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return chain.proceed(chain.request().newBuilder().header("Authorization", "Bearer token").build());
+                    }
+                }, metrics))
+                .addInterceptor(new RetryHandler(new ExponentialBackoffRetryStrategy(3, 0, 0, 0)).withMetrics(metrics))
+                .addInterceptor(new MetricsInterceptor(metrics))
+                .addInterceptor(new Interceptor() {
+                    private int count = 0;
+
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        int code = count++ == 0 ? 503 : 200;
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(code)
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), "pong"))
+                                .build();
+                    }
+                })
+                .build();
+        Response response = client.newCall(new Request.Builder()
+                .url("http://localhost/ping")
+                .header("x-ms-logging-context", "Pings ping")
+                .post(RequestBody.create(MediaType.parse("text/plain"), "ping!"))
+                .build()).execute();
+        Assert.assertEquals("pong", response.body().string());
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        OperationSnapshot operation = snapshot.operation("localhost", "Pings ping");
+        Assert.assertNotNull(operation);
+        Assert.assertEquals(2, operation.latencyMicros().count());
+        Assert.assertEquals(Long.valueOf(1), operation.statusCounts().get(503));
+        Assert.assertEquals(Long.valueOf(1), operation.statusCounts().get(200));
+        Assert.assertEquals(1, operation.retries());
+        Assert.assertEquals(10, operation.requestBytes());
+        Assert.assertEquals(4, operation.responseBytes());
+        HistogramSnapshot tokens = snapshot.tokenAcquisitionMicros().get("localhost");
+        Assert.assertEquals(1, tokens.count());
+        Assert.assertTrue(tokens.min() >= 5000);
+    }
+
+    @Test
+    public void restClientMeasuresTrafficWhenAsked() {
+        RestClient unmeasured = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .build();
+        Assert.assertNull(unmeasured.metrics());
+        for (Interceptor interceptor : unmeasured.httpClient().interceptors()) {
+            Assert.assertFalse(interceptor instanceof MetricsInterceptor);
+            Assert.assertFalse(interceptor instanceof CallTimelineInterceptor);
+        }
+
+        RestClient restClient = unmeasured.newBuilder().withMetrics(new InMemoryMetrics()).build();
+        Assert.assertTrue(restClient.metrics() instanceof InMemoryMetrics);
+        Assert.assertTrue(restClient.metricsSnapshot().operations().isEmpty());
+        Assert.assertSame(restClient.metrics(), restClient.newBuilder().build().metrics());
+
+        unmeasured = restClient.newBuilder().withMetrics(null).build();
+        Assert.assertNull(unmeasured.metricsSnapshot());
+        for (Interceptor interceptor : unmeasured.httpClient().interceptors()) {
+            Assert.assertFalse(interceptor instanceof MetricsInterceptor);
+        }
+    }
+
+    @Test
+    public void recordsTimelineOfCalls() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new CallTimelineInterceptor(metrics))
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        sleep(5);
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .addInterceptor(new MetricsInterceptor(metrics))
+                // Stands for the network interceptor without a server to connect to
+                .addInterceptor(new NetworkTimingInterceptor())
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        sleep(10);
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("application/json"), "{\"name\":\"pong\"}"))
+                                .build();
+                    }
+                })
+                .build();
+        CallOptions options = new CallOptions().withLogLevel(LogLevel.BASIC);
+        Response raw = client.newCall(new Request.Builder()
+                .url("http://localhost/ping")
+                .header("x-ms-logging-context", "Pings get")
+                .tag(options)
+                .build()).execute();
+        // Retrofit buffers the body before handing it to the response builder
+        ResponseBody body = ResponseBody.create(raw.body().contentType(), raw.body().bytes());
+        ServiceResponse<Object> response = new ServiceResponseBuilder.Factory()
+                .<Object, RestException>newInstance(new JacksonAdapter())
+                .register(200, Object.class)
+                .build(retrofit2.Response.success(body, raw));
+        Assert.assertEquals(Collections.singletonMap("name", "pong"), response.body());
+
+        CallTimeline timeline = response.timeline();
+        Assert.assertNotNull(timeline);
+        Assert.assertTrue(timeline.nanos(CallTimeline.Phase.INTERCEPTORS) >= 5000000);
+        Assert.assertTrue(timeline.nanos(CallTimeline.Phase.TIME_TO_FIRST_BYTE) >= 10000000);
+        Assert.assertEquals(0, timeline.nanos(CallTimeline.Phase.QUEUED));
+        Assert.assertEquals(0, timeline.nanos(CallTimeline.Phase.RETRIES));
+        Assert.assertTrue(timeline.totalNanos() >= 15000000);
+        // the request keeps its tag
+        Assert.assertSame(timeline, CallTimeline.of(raw.request()));
+        Assert.assertSame(options, raw.request().tag());
+
+        OperationSnapshot operation = metrics.snapshot().operation("localhost", "Pings get");
+        Assert.assertEquals(CallTimeline.Phase.values().length, operation.phaseMicros().size());
+        Assert.assertEquals(1, operation.phaseMicros().get(CallTimeline.Phase.DESERIALIZATION).count());
+        Assert.assertTrue(operation.phaseMicros().get(CallTimeline.Phase.TIME_TO_FIRST_BYTE).min() >= 10000);
+    }
+
+    @Test
+    public void emitsRuntimeEvents() throws Exception {
+        final List<String> events = new ArrayList<>();
+        RuntimeEvents.withListener(new RuntimeEventListener() {
+            @Override
+            public void onExchange(String method, String host, String operation, int statusCode,
+                                   long requestBytes, long responseBytes, long durationNanos) {
+                events.add("exchange " + method + " " + host + " " + statusCode + " " + responseBytes);
+            }
+
+            @Override
+            public void onRetry(String method, String host, String operation) {
+                events.add("retry " + method + " " + host);
+            }
+        });
+        try {
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .addInterceptor(new RetryHandler(new ExponentialBackoffRetryStrategy(3, 0, 0, 0)))
+                    .addInterceptor(new MetricsInterceptor(new InMemoryMetrics()))
+                    .addInterceptor(new Interceptor() {
+                        private int count = 0;
+
+                        @Override
+                        public Response intercept(Chain chain) throws IOException {
+                            return new Response.Builder()
+                                    .request(chain.request())
+                                    .code(count++ == 0 ? 503 : 200)
+                                    .protocol(Protocol.HTTP_1_1)
+                                    .body(ResponseBody.create(MediaType.parse("text/plain"), "pong"))
+                                    .build();
+                        }
+                    })
+                    .build();
+            client.newCall(new Request.Builder().url("http://localhost/ping").build()).execute().body().string();
+        } finally {
+            RuntimeEvents.withListener(null);
+        }
+        Assert.assertEquals(Arrays.asList(
+                "retry GET localhost", "exchange GET localhost 503 0", "exchange GET localhost 200 4"), events);
+        Assert.assertFalse(RuntimeEvents.enabled());
+    }
+
+    @Test
+    public void failingListenerDoesNotFailCalls() throws Exception {
+        RuntimeEvents.withListener(new RuntimeEventListener() {
+            @Override
+            public void onExchange(String method, String host, String operation, int statusCode,
+                                   long requestBytes, long responseBytes, long durationNanos) {
+                throw new IllegalStateException("listener");
+            }
+        });
+        try {
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .addInterceptor(new MetricsInterceptor(new InMemoryMetrics()))
+                    .addInterceptor(new Interceptor() {
+                        @Override
+                        public Response intercept(Chain chain) throws IOException {
+                            return new Response.Builder()
+                                    .request(chain.request())
+                                    .code(200)
+                                    .protocol(Protocol.HTTP_1_1)
+                                    .body(ResponseBody.create(MediaType.parse("text/plain"), "pong"))
+                                    .build();
+                        }
+                    })
+                    .build();
+            Assert.assertEquals("pong", client.newCall(new Request.Builder()
+                    .url("http://localhost/ping").build()).execute().body().string());
+            RuntimeEvents.tokenAcquired("https://management.azure.com/", 1);
+        } finally {
+            RuntimeEvents.withListener(null);
+        }
+    }
+
+    @Test
+    public void tracksConnections() throws Exception {
+        ConnectionTracker tracker = new ConnectionTracker();
+        Connection http1 = new FakeConnection(Protocol.HTTP_1_1);
+        Connection http2 = new FakeConnection(Protocol.HTTP_2);
+        for (Connection connection : new Connection[] {http1, http1, http1, http2}) {
+            tracker.intercept(new FakeChain(connection));
+        }
+        OkHttpClient client = new OkHttpClient.Builder().addNetworkInterceptor(tracker).build();
+        ConnectionStats stats = tracker.snapshot(client);
+        Assert.assertEquals(2, stats.connectionsOpened());
+        Assert.assertEquals(2, stats.connectionsEvicted());
+        Assert.assertEquals(4, stats.requests());
+        Assert.assertEquals(0.5, stats.reuseRatio(), 0.001);
+        Assert.assertEquals(Long.valueOf(1), stats.protocolCounts().get(Protocol.HTTP_1_1));
+        Assert.assertEquals(Long.valueOf(1), stats.protocolCounts().get(Protocol.HTTP_2));
+        Assert.assertTrue(stats.runningCalls().isEmpty());
+        Assert.assertEquals(64, stats.maxRequests());
+    }
+
+    @Test
+    public void restClientReportsConnectionStats() {
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .build();
+        Assert.assertEquals(0, restClient.connectionStats().totalConnections());
+        List<ConnectionStats> stats = restClient.connectionStats(1, TimeUnit.MILLISECONDS)
+                .take(2).toList().toBlocking().single();
+        Assert.assertEquals(2, stats.size());
+        int trackers = 0;
+        for (Interceptor interceptor : restClient.newBuilder().build().httpClient().networkInterceptors()) {
+            if (interceptor instanceof ConnectionTracker) {
+                trackers++;
+            }
+        }
+        Assert.assertEquals(1, trackers);
+    }
+
+    private static final class FakeConnection implements Connection {
+        private final Protocol protocol;
+
+        FakeConnection(Protocol protocol) {
+            this.protocol = protocol;
+        }
+
+        @Override
+        public Route route() {
+            return null;
+        }
+
+        @Override
+        public Socket socket() {
+            return null;
+        }
+
+        @Override
+        public Handshake handshake() {
+            return null;
+        }
+
+        @Override
+        public Protocol protocol() {
+            return protocol;
+        }
+    }
+
+    private static final class FakeChain implements Interceptor.Chain {
+        private final Connection connection;
+        private final Request request = new Request.Builder().url("http://localhost").build();
+
+        FakeChain(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        @Override
+        public Response proceed(Request request) {
+            return new Response.Builder()
+                    .request(request)
+                    .code(200)
+                    .protocol(connection.protocol())
+                    .build();
+        }
+
+        @Override
+        public Connection connection() {
+            return connection;
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
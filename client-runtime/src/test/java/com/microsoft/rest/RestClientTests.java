@@ -14,13 +14,19 @@ import com.microsoft.rest.protocol.ResponseBuilder;
 import com.microsoft.rest.protocol.SerializerAdapter;
 import com.microsoft.rest.serializer.JacksonAdapter;
 import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import org.junit.Assert;
 import org.junit.Test;
+import retrofit2.Call;
 import retrofit2.Converter;
+import retrofit2.http.GET;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -167,4 +173,126 @@ public class RestClientTests {
         }
         Assert.assertNotEquals(restClient.httpClient().connectTimeoutMillis(), newClient.httpClient().connectTimeoutMillis());
     }
+
+    @Test
+    public void callOptionsShareHttpResources() throws Exception {
+        final List<Request> requests = new ArrayList<>();
+        Interceptor capture = new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                requests.add(chain.request());
+                return new Response.Builder().request(chain.request()).code(200).protocol(Protocol.HTTP_1_1).build();
+            }
+        };
+        RestClient restClient = new RestClient.Builder()
+            .withBaseUrl("http://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .withReadTimeout(10, TimeUnit.SECONDS)
+            .build();
+        restClient.headers().addHeader("x-ms-custom", "client");
+        RestClient callClient = restClient.withCallOptions(new CallOptions()
+            .withHeader("x-ms-custom", "call")
+            .withLogLevel(LogLevel.BASIC)
+            .withReadTimeout(1, TimeUnit.MINUTES));
+        RestClient nestedClient = callClient.withCallOptions(new CallOptions().withHeader("x-ms-other", "nested"));
+
+        Assert.assertSame(restClient.httpClient().connectionPool(), callClient.httpClient().connectionPool());
+        Assert.assertSame(restClient.httpClient().dispatcher(), callClient.httpClient().dispatcher());
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(10), restClient.httpClient().readTimeoutMillis());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(1), callClient.httpClient().readTimeoutMillis());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(1), nestedClient.httpClient().readTimeoutMillis());
+        Assert.assertEquals(callClient.retrofit().baseUrl(), restClient.retrofit().baseUrl());
+        Assert.assertEquals(LogLevel.NONE, restClient.logLevel());
+        Assert.assertEquals(LogLevel.BASIC, callClient.logLevel());
+        Assert.assertEquals(LogLevel.BASIC, nestedClient.logLevel());
+        // a view does not change the client it was created from
+        try {
+            callClient.headers();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            nestedClient.withLogLevel(LogLevel.BODY);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(LogLevel.NONE, restClient.logLevel());
+
+        Request request = new Request.Builder().url("http://localhost").build();
+        // the capturing interceptor goes after the interceptors of the REST clients
+        restClient.httpClient().newBuilder().addInterceptor(capture).build().newCall(request).execute();
+        callClient.httpClient().newBuilder().addInterceptor(capture).build().newCall(request).execute();
+        nestedClient.httpClient().newBuilder().addInterceptor(capture).build().newCall(request).execute();
+        restClient.httpClient().newBuilder().addInterceptor(capture).build().newCall(request.newBuilder().tag(new CallOptions().withHeader("x-ms-custom", "tag")).build()).execute();
+
+        Assert.assertEquals("client", requests.get(0).header("x-ms-custom"));
+        Assert.assertNull(CallOptions.fromRequest(requests.get(0)));
+        Assert.assertEquals("call", requests.get(1).header("x-ms-custom"));
+        Assert.assertEquals(LogLevel.BASIC, CallOptions.fromRequest(requests.get(1)).logLevel());
+        Assert.assertEquals("call", requests.get(2).header("x-ms-custom"));
+        Assert.assertEquals("nested", requests.get(2).header("x-ms-other"));
+        Assert.assertEquals("tag", requests.get(3).header("x-ms-custom"));
+    }
+
+    private interface PingService {
+        @GET("ping")
+        Call<Void> ping();
+    }
+
+    @Test
+    public void serviceProxiesAreCached() {
+        RestClient restClient = new RestClient.Builder()
+            .withBaseUrl("http://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .build();
+        PingService service = restClient.service(PingService.class);
+        Assert.assertSame(service, restClient.service(PingService.class));
+        Assert.assertNotSame(service, restClient.withCallOptions(new CallOptions()).service(PingService.class));
+    }
+
+    @Test
+    public void callOptionsViewsShareServices() throws Exception {
+        final List<Request> requests = new ArrayList<>();
+        RestClient restClient = new RestClient.Builder()
+            .withBaseUrl("http://localhost")
+            .withSerializerAdapter(new JacksonAdapter())
+            .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+            .withInterceptor(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    requests.add(chain.request());
+                    return new Response.Builder().request(chain.request()).code(200).protocol(Protocol.HTTP_1_1)
+                        .body(ResponseBody.create(null, "")).build();
+                }
+            })
+            .build();
+        RestClient callClient = restClient.withCallOptions(new CallOptions().withLogLevel(LogLevel.BASIC));
+        RestClient nestedClient = callClient.withCallOptions(new CallOptions().withLogLevel(LogLevel.HEADERS));
+        PingService service = restClient.service(PingService.class);
+        Call<Void> call = callClient.service(PingService.class).ping();
+        service.ping().execute();
+        call.execute();
+        call.clone().execute();
+        nestedClient.service(PingService.class).ping().execute();
+
+        Assert.assertNull(CallOptions.fromRequest(requests.get(0)));
+        Assert.assertEquals(LogLevel.BASIC, CallOptions.fromRequest(requests.get(1)).logLevel());
+        Assert.assertEquals(LogLevel.BASIC, CallOptions.fromRequest(requests.get(2)).logLevel());
+        Assert.assertEquals(LogLevel.HEADERS, CallOptions.fromRequest(requests.get(3)).logLevel());
+
+        // a view has its own Retrofit only when asked for one
+        callClient.retrofit().create(PingService.class).ping().execute();
+        Assert.assertEquals(LogLevel.BASIC, CallOptions.fromRequest(requests.get(4)).logLevel());
+
+        // closing a view leaves the resources of the root client alone
+        callClient.close();
+        Assert.assertFalse(restClient.httpClient().dispatcher().executorService().isShutdown());
+        service.ping().execute();
+        Assert.assertEquals(6, requests.size());
+        restClient.close();
+    }
 }
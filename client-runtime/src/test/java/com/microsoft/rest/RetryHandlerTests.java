@@ -6,26 +6,50 @@
 
 package com.microsoft.rest;
 
+import com.google.common.base.Ticker;
+import com.microsoft.rest.retry.CircuitBreaker;
+import com.microsoft.rest.retry.ExponentialBackoffRetryStrategy;
+import com.microsoft.rest.retry.RetryBudget;
 import com.microsoft.rest.retry.RetryHandler;
+import com.microsoft.rest.retry.RetryStrategy;
+import com.microsoft.rest.serializer.JacksonAdapter;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.Interceptor;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
 import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import rx.Observable;
 
 public class RetryHandlerTests {
     @Test
     public void exponentialRetryEndOn501() throws Exception {
         OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
         Retrofit.Builder retrofitBuilder = new Retrofit.Builder();
-        clientBuilder.addInterceptor(new RetryHandler());
+        clientBuilder.addInterceptor(new RetryHandler(new ExponentialBackoffRetryStrategy(3, 1, 5, 1)));
         clientBuilder.addInterceptor(new Interceptor() {
             // Send 408, 500, 502, all retried, with a 501 ending
             private int[] codes = new int[]{408, 500, 502, 501};
@@ -50,7 +74,7 @@ public class RetryHandlerTests {
     public void exponentialRetryMax() throws Exception {
         OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
         Retrofit.Builder retrofitBuilder = new Retrofit.Builder();
-        clientBuilder.addInterceptor(new RetryHandler());
+        clientBuilder.addInterceptor(new RetryHandler(new ExponentialBackoffRetryStrategy(3, 1, 5, 1)));
         clientBuilder.addInterceptor(new Interceptor() {
             // Send 500 until max retry is hit
             private int count = 0;
@@ -70,4 +94,372 @@ public class RetryHandlerTests {
                 new Request.Builder().url("http://localhost").get().build()).execute();
         Assert.assertEquals(500, response.code());
     }
+
+    @Test
+    public void exponentialBackoffDelays() {
+        ExponentialBackoffRetryStrategy full = new ExponentialBackoffRetryStrategy(
+                "full", 5, 100, 1000, 100, true, ExponentialBackoffRetryStrategy.Jitter.FULL);
+        ExponentialBackoffRetryStrategy decorrelated = new ExponentialBackoffRetryStrategy(
+                "decorrelated", 5, 100, 1000, 100, false, ExponentialBackoffRetryStrategy.Jitter.DECORRELATED);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(0, full.retryDelayMillis(0, null, 0));
+            long delay = full.retryDelayMillis(1, null, 0);
+            Assert.assertTrue(delay >= 100 && delay <= 200);
+            delay = full.retryDelayMillis(3, null, 0);
+            Assert.assertTrue(delay >= 100 && delay <= 500);
+            delay = full.retryDelayMillis(10, null, 0);
+            Assert.assertTrue(delay >= 100 && delay <= 1000);
+
+            delay = decorrelated.retryDelayMillis(0, null, 0);
+            Assert.assertEquals(100, delay);
+            delay = decorrelated.retryDelayMillis(1, null, 200);
+            Assert.assertTrue(delay >= 100 && delay <= 600);
+            delay = decorrelated.retryDelayMillis(2, null, 900);
+            Assert.assertTrue(delay >= 100 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void retryAfterHeaders() {
+        Request request = new Request.Builder().url("http://localhost").build();
+        Response.Builder builder = new Response.Builder().request(request).code(429).protocol(Protocol.HTTP_1_1);
+        Assert.assertEquals(-1, RetryStrategy.retryAfterMillis(builder.build()));
+        Assert.assertEquals(1500, RetryStrategy.retryAfterMillis(builder.header("x-ms-retry-after-ms", "1500").build()));
+        builder.removeHeader("x-ms-retry-after-ms");
+        Assert.assertEquals(3000, RetryStrategy.retryAfterMillis(builder.header("Retry-After", "3").build()));
+        long delay = RetryStrategy.retryAfterMillis(builder
+                .header("Retry-After", "Fri, 31 Dec 1999 23:59:59 GMT").build());
+        Assert.assertEquals(0, delay);
+    }
+
+    @Test
+    public void throttledRetryWaitsForServer() throws Exception {
+        final RetryHandler retryHandler = new RetryHandler(
+                new ExponentialBackoffRetryStrategy(1, 1, 5, 1).withThrottledRetryCount(2));
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(retryHandler)
+                .addInterceptor(new Interceptor() {
+                    private int count = 0;
+
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(count++ < 2 ? 429 : 200)
+                                .header("x-ms-retry-after-ms", "100")
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        long start = System.nanoTime();
+        Response response = client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertEquals(200, response.code());
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+
+        // other calls to a paused host hold off
+        retryHandler.pauses().pause("localhost", 100);
+        start = System.nanoTime();
+        client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertEquals(0, retryHandler.pauses().remainingMillis("localhost"));
+    }
+
+    @Test
+    public void oversizedRetryAfterIsNotWaited() throws Exception {
+        final RetryHandler retryHandler = new RetryHandler(
+                new ExponentialBackoffRetryStrategy(3, 0, 0, 0).withMaxServerDelayMillis(1000));
+        final String[] retryAfter = {"86400"};
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(retryHandler)
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(429)
+                                .header("Retry-After", retryAfter[0])
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        for (String value : new String[]{"86400", "999999999999999999", "Fri, 31 Dec 9999 23:59:59 GMT"}) {
+            retryAfter[0] = value;
+            long start = System.nanoTime();
+            Response response = client.newCall(new Request.Builder().url("http://localhost").build()).execute();
+            // the throttling response is returned at once, without pausing the host
+            Assert.assertEquals(429, response.code());
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            Assert.assertTrue(retryHandler.pauses().isEmpty());
+        }
+    }
+
+    private static OkHttpClient clientResponding(RetryHandler retryHandler, final int... codes) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(retryHandler)
+                .addInterceptor(new Interceptor() {
+                    private int count = 0;
+
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(codes[Math.min(count++, codes.length - 1)])
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+    }
+
+    @Test
+    public void retryBudgetCapsRetries() throws Exception {
+        RetryBudget budget = new RetryBudget(0.5, 1, 1, TimeUnit.MINUTES);
+        RetryHandler retryHandler = new RetryHandler(new ExponentialBackoffRetryStrategy(3, 0, 0, 0))
+                .withRetryBudget(budget);
+        Request request = new Request.Builder().url("http://localhost").build();
+
+        // 1 retry allowed with no successful request
+        Assert.assertEquals(500, clientResponding(retryHandler, 500).newCall(request).execute().code());
+        Assert.assertEquals(1, budget.rejectedCount());
+        Assert.assertEquals(0, budget.available());
+        // 2 successful requests allow 1 more retry
+        Assert.assertEquals(200, clientResponding(retryHandler, 200).newCall(request).execute().code());
+        Assert.assertEquals(200, clientResponding(retryHandler, 200).newCall(request).execute().code());
+        Assert.assertEquals(1, budget.available());
+        Assert.assertEquals(200, clientResponding(retryHandler, 503, 200).newCall(request).execute().code());
+        Assert.assertEquals(0, budget.available());
+    }
+
+    @Test
+    public void retryBudgetWithNegativeClock() {
+        final AtomicLong now = new AtomicLong(-TimeUnit.HOURS.toNanos(5) - 7);
+        RetryBudget budget = new RetryBudget(0.5, 1, 10, TimeUnit.SECONDS, new Ticker() {
+            @Override
+            public long read() {
+                return now.get();
+            }
+        });
+        budget.onSuccess();
+        budget.onSuccess();
+        Assert.assertEquals(2, budget.available());
+        Assert.assertTrue(budget.tryAcquire());
+        Assert.assertEquals(1, budget.available());
+
+        // the window slides past the successes and the retry
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        Assert.assertEquals(1, budget.available());
+        Assert.assertTrue(budget.tryAcquire());
+        Assert.assertFalse(budget.tryAcquire());
+    }
+
+    @Test
+    public void circuitBreakerStopsRetries() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(2, 100, TimeUnit.MILLISECONDS);
+        RetryHandler retryHandler = new RetryHandler(new ExponentialBackoffRetryStrategy(3, 0, 0, 0))
+                .withCircuitBreaker(breaker);
+        Request request = new Request.Builder().url("http://localhost").build();
+
+        // the second failure opens the circuit, rejecting the second retry
+        Assert.assertEquals(500, clientResponding(retryHandler, 500).newCall(request).execute().code());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state("localhost"));
+        Assert.assertEquals(1, breaker.rejectedCount());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state("example.com"));
+
+        // a successful trial retry closes it
+        Thread.sleep(150);
+        Assert.assertEquals(200, clientResponding(retryHandler, 500, 200).newCall(request).execute().code());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state("localhost"));
+        Assert.assertEquals(1, breaker.rejectedCount());
+    }
+
+    @Test
+    public void transportFailuresRetriedWhenIdempotent() throws Exception {
+        final List<String> bodies = new ArrayList<>();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new RetryHandler(new ExponentialBackoffRetryStrategy(3, 0, 0, 0)
+                        .withIdempotentWriteRetries(true)))
+                .addInterceptor(new Interceptor() {
+                    private int count = 0;
+
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        if (chain.request().body() != null) {
+                            Buffer buffer = new Buffer();
+                            chain.request().body().writeTo(buffer);
+                            bodies.add(buffer.readUtf8());
+                        }
+                        if (count++ % 2 == 0) {
+                            throw new SocketException("Connection reset");
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .build();
+                    }
+                })
+                .build();
+        // a body that can only be written once
+        RequestBody body = new RequestBody() {
+            private boolean written;
+
+            @Override
+            public MediaType contentType() {
+                return MediaType.parse("text/plain");
+            }
+
+            @Override
+            public long contentLength() {
+                return 4;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                Assert.assertFalse(written);
+                written = true;
+                sink.writeUtf8("body");
+            }
+        };
+        Assert.assertEquals(200, client.newCall(new Request.Builder()
+                .url("http://localhost").get().build()).execute().code());
+        Assert.assertEquals(200, client.newCall(new Request.Builder()
+                .url("http://localhost").put(body).build()).execute().code());
+        Assert.assertEquals(2, bodies.size());
+        Assert.assertEquals("body", bodies.get(0));
+        Assert.assertEquals("body", bodies.get(1));
+        try {
+            client.newCall(new Request.Builder().url("http://localhost")
+                    .post(RequestBody.create(MediaType.parse("text/plain"), "body")).build()).execute();
+            Assert.fail();
+        } catch (SocketException e) {
+            Assert.assertEquals("Connection reset", e.getMessage());
+        }
+    }
+
+    @Test
+    public void connectFailuresKeepPooledConnections() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread serving = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = server.accept()) {
+                    BufferedSource source = Okio.buffer(Okio.source(socket));
+                    while (!source.readUtf8LineStrict().isEmpty()) {
+                        // skip the request headers
+                    }
+                    BufferedSink sink = Okio.buffer(Okio.sink(socket));
+                    sink.writeUtf8("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n").flush();
+                    // keep the connection open until the client is done
+                    source.exhausted();
+                } catch (IOException e) {
+                    // the test fails on the client side
+                }
+            }
+        });
+        serving.start();
+        ServerSocket closed = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        int unreachablePort = closed.getLocalPort();
+        closed.close();
+        try {
+            final RetryHandler retryHandler = new RetryHandler(new ExponentialBackoffRetryStrategy(1, 0, 0, 0));
+            OkHttpClient client = new OkHttpClient.Builder().addInterceptor(retryHandler).build();
+            retryHandler.withConnectionPool(client.connectionPool());
+            client.newCall(new Request.Builder()
+                    .url("http://127.0.0.1:" + server.getLocalPort()).build()).execute().close();
+            Assert.assertEquals(1, client.connectionPool().idleConnectionCount());
+
+            // a host refusing connections leaves the connections to the other hosts pooled
+            try {
+                client.newCall(new Request.Builder().url("http://127.0.0.1:" + unreachablePort).build()).execute();
+                Assert.fail();
+            } catch (ConnectException e) {
+                Assert.assertEquals(1, client.connectionPool().idleConnectionCount());
+            }
+
+            // a reset connection evicts them
+            OkHttpClient resetting = client.newBuilder().addInterceptor(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    throw new SocketException("Connection reset");
+                }
+            }).build();
+            try {
+                resetting.newCall(new Request.Builder().url("http://localhost").build()).execute();
+                Assert.fail();
+            } catch (SocketException e) {
+                Assert.assertEquals(0, client.connectionPool().idleConnectionCount());
+            }
+        } finally {
+            server.close();
+            serving.join(1000);
+        }
+    }
+
+    private interface PingService {
+        @GET("ping")
+        Observable<retrofit2.Response<ResponseBody>> ping();
+    }
+
+    @Test
+    public void observableRetriesAreScheduled() throws Exception {
+        final List<String> requestIds = new ArrayList<>();
+        final List<Thread> threads = new ArrayList<>();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withRetryStrategy(new ExponentialBackoffRetryStrategy(null, 2, 10, 20, 10, false))
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        requestIds.add(chain.request().header("x-ms-client-request-id"));
+                        threads.add(Thread.currentThread());
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(requestIds.size() < 3 ? 503 : 200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), "pong"))
+                                .build();
+                    }
+                })
+                .build();
+        retrofit2.Response<ResponseBody> response = restClient.service(PingService.class).ping().toBlocking().single();
+        Assert.assertEquals(200, response.code());
+        Assert.assertEquals(3, requestIds.size());
+        Assert.assertEquals(requestIds.get(0), requestIds.get(1));
+        Assert.assertEquals(requestIds.get(0), requestIds.get(2));
+        Assert.assertSame(Thread.currentThread(), threads.get(0));
+        Assert.assertNotSame(Thread.currentThread(), threads.get(2));
+    }
+
+    @Test
+    public void observableRetriesTransportFailures() throws Exception {
+        final List<String> requestIds = new ArrayList<>();
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("http://localhost")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .withRetryStrategy(new ExponentialBackoffRetryStrategy(null, 2, 10, 20, 10, false))
+                .withInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        requestIds.add(chain.request().header("x-ms-client-request-id"));
+                        if (requestIds.size() == 1) {
+                            throw new SocketException("Connection reset");
+                        }
+                        return new Response.Builder()
+                                .request(chain.request())
+                                .code(200)
+                                .protocol(Protocol.HTTP_1_1)
+                                .body(ResponseBody.create(MediaType.parse("text/plain"), "pong"))
+                                .build();
+                    }
+                })
+                .build();
+        retrofit2.Response<ResponseBody> response = restClient.service(PingService.class).ping().toBlocking().single();
+        Assert.assertEquals(200, response.code());
+        Assert.assertEquals(2, requestIds.size());
+    }
 }
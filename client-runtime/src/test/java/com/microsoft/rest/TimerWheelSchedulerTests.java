@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.rest;
+
+import com.microsoft.rest.serializer.JacksonAdapter;
+import org.junit.Assert;
+import org.junit.Test;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Action1;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimerWheelSchedulerTests {
+    @Test
+    public void firesManyTimersWhenDue() throws Exception {
+        // A small wheel makes the longer delays go round it several times
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(5, TimeUnit.MILLISECONDS, 8, null);
+        try {
+            final int timers = 1000;
+            final CountDownLatch fired = new CountDownLatch(timers);
+            final AtomicInteger early = new AtomicInteger();
+            final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            for (int i = 0; i < timers; i++) {
+                final long delay = i % 200;
+                final long start = System.nanoTime();
+                Observable.timer(delay, TimeUnit.MILLISECONDS, scheduler).subscribe(new Action1<Long>() {
+                    @Override
+                    public void call(Long tick) {
+                        if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                            early.incrementAndGet();
+                        }
+                        threads.add(Thread.currentThread().getName());
+                        fired.countDown();
+                    }
+                });
+            }
+            Assert.assertTrue(fired.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, early.get());
+            Assert.assertFalse(threads.contains(Thread.currentThread().getName()));
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void skipsCancelledTasks() throws Exception {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(5, TimeUnit.MILLISECONDS, 8, null);
+        try {
+            final AtomicInteger runs = new AtomicInteger();
+            final CountDownLatch done = new CountDownLatch(1);
+            Scheduler.Worker worker = scheduler.createWorker();
+            Subscription cancelled = worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    runs.incrementAndGet();
+                }
+            }, 20, TimeUnit.MILLISECONDS);
+            worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    done.countDown();
+                }
+            }, 60, TimeUnit.MILLISECONDS);
+            cancelled.unsubscribe();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, runs.get());
+
+            worker.unsubscribe();
+            Assert.assertTrue(worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    runs.incrementAndGet();
+                }
+            }).isUnsubscribed());
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void restClientOwnsTimerScheduler() {
+        RestClient restClient = new RestClient.Builder()
+                .withBaseUrl("https://management.azure.com/")
+                .withSerializerAdapter(new JacksonAdapter())
+                .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                .build();
+        Assert.assertTrue(restClient.timerScheduler() instanceof TimerWheelScheduler);
+        RestClient derived = restClient.newBuilder().build();
+        Assert.assertSame(restClient.timerScheduler(), derived.timerScheduler());
+
+        // Only the client that created the scheduler closes it
+        derived.close();
+        Assert.assertFalse(restClient.timerScheduler().createWorker().schedule(new Action0() {
+            @Override
+            public void call() {
+            }
+        }, 1, TimeUnit.SECONDS).isUnsubscribed());
+        restClient.close();
+        try {
+            restClient.timerScheduler().createWorker().schedule(new Action0() {
+                @Override
+                public void call() {
+                }
+            }, 1, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void givenSchedulerIsNotClosed() {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler();
+        try {
+            RestClient restClient = new RestClient.Builder()
+                    .withBaseUrl("https://management.azure.com/")
+                    .withSerializerAdapter(new JacksonAdapter())
+                    .withResponseBuilderFactory(new ServiceResponseBuilder.Factory())
+                    .withTimerScheduler(scheduler)
+                    .build();
+            restClient.close();
+            final AtomicInteger errors = new AtomicInteger();
+            Observable.timer(1, TimeUnit.SECONDS, scheduler).subscribe(new Action1<Long>() {
+                @Override
+                public void call(Long tick) {
+                }
+            }, new Action1<Throwable>() {
+                @Override
+                public void call(Throwable throwable) {
+                    errors.incrementAndGet();
+                }
+            });
+            Assert.assertEquals(0, errors.get());
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void timerOnClosedSchedulerFails() {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler();
+        scheduler.close();
+        final AtomicInteger errors = new AtomicInteger();
+        Observable.timer(1, TimeUnit.SECONDS, scheduler).subscribe(new Action1<Long>() {
+            @Override
+            public void call(Long tick) {
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                if (throwable instanceof RejectedExecutionException) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+        Assert.assertEquals(1, errors.get());
+    }
+}